@@ -0,0 +1,71 @@
+package Main;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import model.MediaEntry;
+import restserver.server.ResponseCompression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the bytes on the wire and the CPU time of gzip and deflate compression
+ * for media list responses of different sizes and compression levels.
+ * It needs no database, e.g. java Main.CompressionBenchmark
+ */
+public class CompressionBenchmark {
+    private static final int[] ENTRY_COUNTS = {5, 20, 100, 1000, 10000};
+    private static final int[] LEVELS = {1, 6, 9};
+    private static final long MIN_NANOS_PER_CASE = 200_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        System.out.printf("%8s %10s %-8s %5s %10s %7s %12s%n",
+                "entries", "bytes", "encoding", "level", "wire", "ratio", "us/response");
+        for (int count : ENTRY_COUNTS) {
+            byte[] body = objectMapper.writeValueAsBytes(mediaEntries(count));
+            for (String encoding : new String[] {ResponseCompression.GZIP, ResponseCompression.DEFLATE}) {
+                for (int level : LEVELS) {
+                    // warm up the JIT before measuring
+                    for (int i = 0; i < 20; i++) ResponseCompression.compress(body, encoding, level);
+
+                    int wire = 0;
+                    int rounds = 0;
+                    long start = System.nanoTime();
+                    long elapsed;
+                    do {
+                        wire = ResponseCompression.compress(body, encoding, level).length;
+                        rounds++;
+                        elapsed = System.nanoTime() - start;
+                    } while (elapsed < MIN_NANOS_PER_CASE);
+
+                    System.out.printf("%8d %10d %-8s %5d %10d %6.1f%% %12.1f%n", count, body.length, encoding, level,
+                            wire, 100.0 * wire / body.length, elapsed / 1000.0 / rounds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates media entries with descriptions of realistic length and repetition.
+     */
+    private static List<MediaEntry> mediaEntries(int count) {
+        String[] types = {"movie", "series", "game"};
+        List<MediaEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MediaEntry entry = new MediaEntry();
+            entry.setMediaentryid(i + 1);
+            entry.setCreatorId(i % 50 + 1);
+            entry.setTitle("Media entry " + i);
+            entry.setDescription("A story about " + types[i % 3] + " number " + i + ". The plot follows a group of friends "
+                    + "who find something unexpected, with a soundtrack everybody remembers and a twist in act " + (i % 3 + 1) + ".");
+            entry.setMediaType(types[i % 3]);
+            entry.setGenres(List.of("Action", i % 2 == 0 ? "Drama" : "Comedy"));
+            entry.setReleaseYear(1980 + i % 45);
+            entry.setAgeRestriction(i % 4 * 6);
+            entry.setAvgscore((i % 50) / 10.0);
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,63 @@
+package Main;
+
+import database.DataAccessException;
+import database.DatabaseManager;
+import persistence.ExportFormat;
+import persistence.MediaEntryRepository;
+import restserver.server.ResponseCompression;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Exports all media entries with their genres and rating aggregates for analytics.
+ * The rows are streamed from the database to the output, memory use does not grow with the catalog.
+ *
+ * Usage: java Main.ExportMediaEntries [csv|ndjson] [file] [--gzip] [--title=..] [--genre=..]
+ * [--mediaType=..] [--releaseYear=..] [--ageRestriction=..] [--minRating=..]
+ * Without a file the export is written to standard output.
+ */
+public class ExportMediaEntries {
+
+    public static void main(String[] args) {
+        ExportFormat format = ExportFormat.NDJSON;
+        String file = null;
+        boolean gzip = false;
+        Map<String, Object> filters = new HashMap<>();
+        int position = 0;
+        for (String arg : args) {
+            if (arg.equals("--gzip")) {
+                gzip = true;
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                String name = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                boolean number = name.equals("releaseYear") || name.equals("ageRestriction") || name.equals("minRating");
+                filters.put(name, number ? Integer.parseInt(value) : value);
+            } else if (position++ == 0) {
+                format = ExportFormat.parse(arg);
+            } else {
+                file = arg;
+            }
+        }
+
+        try (OutputStream out = open(file, gzip)) {
+            long rows = MediaEntryRepository.getInstance().exportMediaEntries(filters, format, out);
+            System.err.println(rows + " media entries exported.");
+        } catch (IOException | DataAccessException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.INSTANCE.shutdown();
+        }
+    }
+
+    private static OutputStream open(String file, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(file == null ? System.out : new FileOutputStream(file), 65536);
+        return gzip ? ResponseCompression.compressor(out, ResponseCompression.GZIP, Deflater.BEST_SPEED, 65536) : out;
+    }
+}
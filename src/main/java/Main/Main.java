@@ -1,5 +1,7 @@
 package Main;
 
+import database.DatabaseManager;
+import database.MigrationRunner;
 import restserver.server.Server;
 
 import java.io.IOException;
@@ -9,14 +11,17 @@ import java.io.IOException;
  */
 public class Main {
     /**
-     * Starts the server and prints a message to the console.
+     * Brings the database schema up to date, starts the server and prints a message to the console.
      *
      * @param args not used
      * @throws IOException if the server cannot start
      */
     public static void main(String[] args) throws IOException {
+        new MigrationRunner().runAtStartup();
         Server server = new Server();
         server.start();
-        System.out.println("Server is running at http://localhost:8080");
+        // Closes the pooled database connections when the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseManager.INSTANCE::shutdown));
+        System.out.println("Server is running at http://localhost:" + server.getPort());
     }
 }
\ No newline at end of file
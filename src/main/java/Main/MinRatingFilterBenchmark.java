@@ -0,0 +1,58 @@
+package Main;
+
+import database.DataAccessException;
+import database.DatabaseManager;
+import model.MediaEntry;
+import persistence.MediaEntryRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the rows transferred by the media search with a minimum rating filter:
+ * filtering the fetched rows in Java (as before) against filtering in the database.
+ * Run it against a database with realistic data, e.g. java Main.MinRatingFilterBenchmark 4
+ */
+public class MinRatingFilterBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int minRating = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        MediaEntryRepository repository = MediaEntryRepository.getInstance();
+        try {
+            Map<String, Object> filters = new HashMap<>();
+            Map<String, Object> filtersWithRating = new HashMap<>(Map.of("minRating", minRating));
+
+            // warm up the connection pool and the query plans
+            repository.fullSearchAndFilterMediaEntries(filters, "score");
+            repository.fullSearchAndFilterMediaEntries(filtersWithRating, "score");
+
+            long rowsInJava = 0;
+            long matchesInJava = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                List<MediaEntry> all = repository.fullSearchAndFilterMediaEntries(filters, "score");
+                rowsInJava = all.size();
+                matchesInJava = all.stream().filter(m -> m.getAvgscore() >= minRating).count();
+            }
+            long javaMillis = (System.nanoTime() - start) / 1_000_000 / ROUNDS;
+
+            long rowsInSql = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                rowsInSql = repository.fullSearchAndFilterMediaEntries(filtersWithRating, "score").size();
+            }
+            long sqlMillis = (System.nanoTime() - start) / 1_000_000 / ROUNDS;
+
+            System.out.println("minRating " + minRating + ", " + matchesInJava + " matching media entries");
+            System.out.println("filter in Java: " + rowsInJava + " rows transferred, " + javaMillis + " ms per search");
+            System.out.println("filter in SQL:  " + rowsInSql + " rows transferred, " + sqlMillis + " ms per search");
+        } catch (DataAccessException e) {
+            System.out.println("DataAccessException: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.INSTANCE.shutdown();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package Main;
+
+import database.DataAccessException;
+import database.DatabaseManager;
+import persistence.RatingRepository;
+
+/**
+ * Recomputes the rating aggregates stored on media entries and profiles.
+ * Run it once after upgrading an existing database, or whenever the
+ * aggregates have to be repaired.
+ */
+public class RepairRatingAggregates {
+    public static void main(String[] args) {
+        try {
+            int repaired = RatingRepository.getInstance().rebuildRatingAggregates();
+            System.out.println("Rating aggregates rebuilt, " + repaired + " rows corrected.");
+        } catch (DataAccessException e) {
+            System.out.println("DataAccessException: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            DatabaseManager.INSTANCE.shutdown();
+        }
+    }
+}
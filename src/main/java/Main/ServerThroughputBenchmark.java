@@ -0,0 +1,84 @@
+package Main;
+
+import com.sun.net.httpserver.HttpHandler;
+import restserver.server.Server;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the requests per second of the server executor modes with 1 and 16 concurrent
+ * clients, when every request blocks like a slow database query.
+ * It needs no database, e.g. java Main.ServerThroughputBenchmark
+ */
+public class ServerThroughputBenchmark {
+    private static final long HANDLER_DELAY_MS = 20;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final int[] CLIENTS = {1, 16};
+
+    public static void main(String[] args) throws Exception {
+        HttpHandler slowHandler = exchange -> {
+            try {
+                Thread.sleep(HANDLER_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        };
+
+        // a single dispatcher thread could never exceed one request per handler delay
+        System.out.printf("serial limit: %.0f req/s%n", 1000.0 / HANDLER_DELAY_MS);
+        System.out.printf("%-20s %8s %10s%n", "executor", "clients", "req/s");
+        for (Server.ExecutorMode mode : Server.ExecutorMode.values()) {
+            Server server = new Server(0, 128, mode, 4, 100);
+            server.start(Map.of("/api/slow", slowHandler));
+            try {
+                measureThroughput(server, 1); // warm up
+                for (int clients : CLIENTS) {
+                    String name = mode == Server.ExecutorMode.VIRTUAL ? "virtual threads" : "platform pool (4)";
+                    System.out.printf("%-20s %8d %10.0f%n", name, clients, measureThroughput(server, clients));
+                }
+            } finally {
+                server.stop(0);
+            }
+        }
+    }
+
+    /**
+     * Sends requests from the given number of concurrent clients and returns the requests per second.
+     */
+    private static double measureThroughput(Server server, int clients) throws Exception {
+        URI uri = URI.create("http://localhost:" + server.getPort() + "/api/slow");
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                futures.add(pool.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+                        try (InputStream in = connection.getInputStream()) {
+                            in.readAllBytes();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            return clients * REQUESTS_PER_CLIENT / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import persistence.RowStream;
+import persistence.WriteResult;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+import restserver.server.Response;
+import restserver.server.StreamingResponse;
+
+import java.util.Map;
 
 /**
  * Controller class that provides access to a Jackson ObjectMapper instance, which is used for converting
@@ -24,4 +34,45 @@ public class Controller {
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a 200 response that writes the rows as a JSON array while they are read,
+     * without collecting them in a list first.
+     *
+     * @param rows the rows to write
+     * @param <T> the type of the rows
+     * @return the streaming response
+     */
+    protected <T> Response jsonArrayResponse(RowStream<T> rows) {
+        // the response buffers the output, flushing after every row would send tiny chunks
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return StreamingResponse.jsonStream(HttpStatus.OK, objectMapper, generator -> {
+            generator.writeStartArray();
+            rows.forEach(row -> writer.writeValue(generator, row));
+            generator.writeEndArray();
+        });
+    }
+
+    /**
+     * Creates the response for the outcome of a write: 200 with the message if it was applied,
+     * otherwise 404, 403, 409, 400 or 500 depending on why nothing was written.
+     *
+     * @param result the outcome of the write
+     * @param message the message for a successful write
+     * @param error the error message for a write that was not applied
+     * @return the response
+     * @throws JsonProcessingException if the body cannot be written
+     */
+    protected Response writeResultResponse(WriteResult result, String message, String error) throws JsonProcessingException {
+        HttpStatus status = switch (result) {
+            case OK -> HttpStatus.OK;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case FORBIDDEN -> HttpStatus.FORBIDDEN;
+            case DUPLICATE -> HttpStatus.CONFLICT;
+            case INVALID -> HttpStatus.BAD_REQUEST;
+            case FAILED -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        Map<String, String> body = result.isOk() ? Map.of("message", message) : Map.of("error", error);
+        return new Response(status, ContentType.JSON, objectMapper.writeValueAsString(body));
+    }
+}
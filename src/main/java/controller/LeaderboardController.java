@@ -1,14 +1,11 @@
 package controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import model.Profile;
-import model.Rating;
-import model.User;
 import restserver.http.ContentType;
 import restserver.http.HttpStatus;
 import restserver.server.Response;
+import restserver.server.StreamingResponse;
 import service.ILeaderboardService;
-import service.IRatingService;
 
 import java.util.List;
 import java.util.Map;
@@ -41,28 +38,44 @@ public class LeaderboardController extends Controller{
     }
 
     /**
-     * Gets the leaderboard as a list of profiles.
+     * Gets the first page of the leaderboard as a list of profiles.
      *
      * @return HTTP response with the leaderboard in JSON format
      */
     public Response getLeaderboard() {
+        return leaderboardResponse(leaderboardService.getLeaderboard());
+    }
+
+    /**
+     * Gets one page of the leaderboard as a list of profiles.
+     * Supports the query parameters limit and offset.
+     *
+     * @param queryParams map with the paging parameters
+     * @return HTTP response with the leaderboard in JSON format
+     */
+    public Response getLeaderboard(Map<String, String> queryParams) {
+        int limit = 0;
+        int offset = 0;
         try {
-            List<Profile> leaderboard = leaderboardService.getLeaderboard();
-            if (leaderboard == null) {
-                leaderboard = Collections.emptyList();
-            }
-            return new Response(
-                    HttpStatus.OK,
-                    ContentType.JSON,
-                    getObjectMapper().writeValueAsString(leaderboard)
-            );
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-            return new Response(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    ContentType.JSON,
-                    "{ \"message\" : \"Internal Server Error\" }"
-            );
+            if (queryParams.get("limit") != null) limit = Integer.parseInt(queryParams.get("limit"));
+            if (queryParams.get("offset") != null) offset = Integer.parseInt(queryParams.get("offset"));
+        } catch (NumberFormatException e) {
+            return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
+                    "{ \"error\" : \"Invalid number format in paging parameters\" }");
+        }
+        return leaderboardResponse(leaderboardService.getLeaderboard(limit, offset));
+    }
+
+    /**
+     * Serializes a leaderboard page.
+     *
+     * @param leaderboard the profiles, may be null
+     * @return HTTP response with the leaderboard in JSON format
+     */
+    private Response leaderboardResponse(List<Profile> leaderboard) {
+        if (leaderboard == null) {
+            leaderboard = Collections.emptyList();
         }
+        return StreamingResponse.json(HttpStatus.OK, getObjectMapper(), leaderboard);
     }
-}
\ No newline at end of file
+}
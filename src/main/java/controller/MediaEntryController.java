@@ -1,19 +1,33 @@
 package controller;
 
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import dto.ImportResultDTO;
+import dto.PageDTO;
 import model.MediaEntry;
 import model.Rating;
 import model.User;
+import persistence.ExportFormat;
+import persistence.RowStream;
+import persistence.WriteResult;
 import restserver.http.ContentType;
 import restserver.http.HttpStatus;
 import restserver.server.Response;
+import restserver.server.ResponseCompression;
+import restserver.server.StreamingResponse;
 import service.IMediaEntryService;
 import service.IUserService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 public class MediaEntryController extends Controller{
     private static IMediaEntryService mediaEntryService;
@@ -77,6 +91,66 @@ public class MediaEntryController extends Controller{
         }
     }
 
+    /**
+     * Imports many media entries, sent as a JSON array or as newline delimited JSON (NDJSON).
+     * The body is parsed while it is read and passed on entry by entry. Rows that are not
+     * valid media entries are reported with their row number; malformed JSON aborts the import.
+     *
+     * @param requestBody the request body stream
+     * @param user the user who imports the media entries
+     * @return HTTP response with the number of imported entries and the rejected rows
+     */
+    public Response importMediaEntries(InputStream requestBody, User user) {
+        RowStream<MediaEntry> mediaEntries = sink -> {
+            try (JsonParser parser = getObjectMapper().getFactory().createParser(requestBody)) {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) token = parser.nextToken();
+                while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    // a row that does not fit MediaEntry is reported, the next row can still be read
+                    JsonNode row = parser.readValueAsTree();
+                    MediaEntry mediaEntry;
+                    try {
+                        mediaEntry = getObjectMapper().treeToValue(row, MediaEntry.class);
+                    } catch (JsonProcessingException e) {
+                        mediaEntry = null;
+                    }
+                    sink.accept(mediaEntry);
+                    token = parser.nextToken();
+                }
+            }
+        };
+
+        try {
+            ImportResultDTO result = mediaEntryService.importMediaEntries(mediaEntries, user);
+            if (result != null) {
+                return new Response(
+                        HttpStatus.OK,
+                        ContentType.JSON,
+                        getObjectMapper().writeValueAsString(result)
+                );
+            }
+            return new Response(
+                    HttpStatus.CONFLICT,
+                    ContentType.JSON,
+                    getObjectMapper().writeValueAsString(Map.of("error", "MediaEntries were not imported."))
+            );
+        } catch (JsonProcessingException e) {
+            return new Response(
+                    HttpStatus.BAD_REQUEST,
+                    ContentType.JSON,
+                    "{ \"error\" : \"Invalid JSON, nothing was imported\" }"
+            );
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new Response(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    ContentType.JSON,
+                    "{ \"message\" : \"Internal Server Error\" }"
+            );
+        }
+    }
+
     /**
      * Deletes a media entry.
      *
@@ -87,21 +161,8 @@ public class MediaEntryController extends Controller{
     public Response deleteMediaEntry(int mediaEntryId, User user)
     {
         try {
-            boolean success = mediaEntryService.deleteMediaEntry(mediaEntryId, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "MediaEntry successfully deleted."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "MediaEntry was not deleted."))
-                );
-            }
+            WriteResult result = mediaEntryService.deleteMediaEntry(mediaEntryId, user);
+            return writeResultResponse(result, "MediaEntry successfully deleted.", "MediaEntry was not deleted.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -121,21 +182,8 @@ public class MediaEntryController extends Controller{
      */
     public Response favoriteMediaEntry(int mediaEntryID, User user) {
         try {
-            boolean success = mediaEntryService.favoriteMediaEntry(mediaEntryID, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "MediaEntry set as favorite."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "MediaEntry could not be set as favorite."))
-                );
-            }
+            WriteResult result = mediaEntryService.favoriteMediaEntry(mediaEntryID, user);
+            return writeResultResponse(result, "MediaEntry set as favorite.", "MediaEntry could not be set as favorite.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -155,21 +203,8 @@ public class MediaEntryController extends Controller{
      */
     public Response unFavoriteMediaEntry(int mediaEntryID, User user) {
         try {
-            boolean success = mediaEntryService.unFavoriteMediaEntry(mediaEntryID, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "MediaEntry deleted from favorites."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "MediaEntry was not deleted from favorites."))
-                );
-            }
+            WriteResult result = mediaEntryService.unFavoriteMediaEntry(mediaEntryID, user);
+            return writeResultResponse(result, "MediaEntry deleted from favorites.", "MediaEntry was not deleted from favorites.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -191,21 +226,8 @@ public class MediaEntryController extends Controller{
     public Response updateMediaEntry(int mediaEntryID, String requestBody, User user) {
         try {
             MediaEntry mediaEntry = this.getObjectMapper().readValue(requestBody, MediaEntry.class);
-            boolean success = mediaEntryService.editMediaEntry(mediaEntryID, mediaEntry, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "MediaEntry updated successfully."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "MediaEntry could not be updated."))
-                );
-            }
+            WriteResult result = mediaEntryService.editMediaEntry(mediaEntryID, mediaEntry, user);
+            return writeResultResponse(result, "MediaEntry updated successfully.", "MediaEntry could not be updated.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -231,34 +253,24 @@ public class MediaEntryController extends Controller{
             Object releaseYear = queryParams.get("releaseYear");
             Object ageRestriction = queryParams.get("ageRestriction");
             Object rating = queryParams.get("rating");
-            List<MediaEntry> list;
-            if(mediaType != null || releaseYear != null || ageRestriction != null || rating != null) {
-                int releaseYearInt = -1;
-                int ageRestrictionInt = -1;
-                int ratingInt = -1;
-                try {
-                    if(queryParams.get("releaseYear") != null) releaseYearInt = Integer.parseInt(queryParams.get("releaseYear"));
-                    if(queryParams.get("ageRestriction") != null) ageRestrictionInt = Integer.parseInt(queryParams.get("ageRestriction"));
-                    if(queryParams.get("rating") != null) ratingInt = Integer.parseInt(queryParams.get("rating"));
-                } catch (NumberFormatException e) {
-                    return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
-                            "{ \"error\" : \"Invalid number format in filter parameters\" }");
-                }
-                try {
-                    list = mediaEntryService.fullSearchAndFilterMediaEntries(title, genre, mediaType, releaseYearInt, ageRestrictionInt, ratingInt, sortBy);
-                }catch(NumberFormatException e) {
-                    e.printStackTrace();
-                    list = null;
-                }
-            }else{
-                list = mediaEntryService.searchAndFilterMediaEntries(title, genre, sortBy);
+            if (queryParams.containsKey("limit") || queryParams.containsKey("after")) {
+                return searchMediaEntriesPage(queryParams);
             }
-            if(list!=null) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(list)
-                );
+            int releaseYearInt = -1;
+            int ageRestrictionInt = -1;
+            int ratingInt = -1;
+            try {
+                if(releaseYear != null) releaseYearInt = Integer.parseInt(queryParams.get("releaseYear"));
+                if(ageRestriction != null) ageRestrictionInt = Integer.parseInt(queryParams.get("ageRestriction"));
+                if(rating != null) ratingInt = Integer.parseInt(queryParams.get("rating"));
+            } catch (NumberFormatException e) {
+                return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
+                        "{ \"error\" : \"Invalid number format in filter parameters\" }");
+            }
+            // the entries are written to the response while they are read from the database
+            RowStream<MediaEntry> rows = mediaEntryService.streamSearchAndFilterMediaEntries(title, genre, mediaType, releaseYearInt, ageRestrictionInt, ratingInt, sortBy);
+            if(rows!=null) {
+                return jsonArrayResponse(rows);
             }
 
             return new Response(
@@ -276,6 +288,94 @@ public class MediaEntryController extends Controller{
         }
     }
 
+    /**
+     * Returns one page of the searched and filtered media entries.
+     * The response contains the entries and the cursor that is passed as "after" to get the next page.
+     *
+     * @param queryParams map with search and filter parameters, limit and after
+     * @return HTTP response with a page of media entries
+     * @throws JsonProcessingException if the page cannot be serialized
+     */
+    private Response searchMediaEntriesPage(Map<String, String> queryParams) throws JsonProcessingException {
+        int releaseYear = -1;
+        int ageRestriction = -1;
+        int rating = -1;
+        int limit = 0;
+        try {
+            if (queryParams.get("releaseYear") != null) releaseYear = Integer.parseInt(queryParams.get("releaseYear"));
+            if (queryParams.get("ageRestriction") != null) ageRestriction = Integer.parseInt(queryParams.get("ageRestriction"));
+            if (queryParams.get("rating") != null) rating = Integer.parseInt(queryParams.get("rating"));
+            if (queryParams.get("limit") != null) limit = Integer.parseInt(queryParams.get("limit"));
+        } catch (NumberFormatException e) {
+            return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
+                    "{ \"error\" : \"Invalid number format in filter parameters\" }");
+        }
+
+        PageDTO<MediaEntry> page;
+        try {
+            page = mediaEntryService.searchMediaEntriesPage(queryParams.get("title"), queryParams.get("genre"),
+                    queryParams.get("mediaType"), releaseYear, ageRestriction, rating, queryParams.get("sortBy"),
+                    queryParams.get("after"), limit);
+        } catch (IllegalArgumentException e) {
+            return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
+                    getObjectMapper().writeValueAsString(Map.of("error", "Invalid cursor.")));
+        }
+
+        if (page != null) {
+            return StreamingResponse.json(HttpStatus.OK, getObjectMapper(), page);
+        }
+        return new Response(
+                HttpStatus.CONFLICT,
+                ContentType.JSON,
+                getObjectMapper().writeValueAsString(Map.of("error", "An error occurred while filtering."))
+        );
+    }
+
+    /**
+     * Exports the media entries matching the filters as CSV or NDJSON (query parameter format,
+     * default ndjson). The rows are streamed from the database to the client; with gzip=true
+     * the export is sent as a gzip file instead of plain text.
+     *
+     * @param queryParams map with filter parameters, format and gzip
+     * @return HTTP response that streams the export
+     */
+    public Response exportMediaEntries(Map<String, String> queryParams) {
+        ExportFormat format;
+        int releaseYear = -1;
+        int ageRestriction = -1;
+        int rating = -1;
+        try {
+            format = ExportFormat.parse(queryParams.getOrDefault("format", "ndjson"));
+            if (queryParams.get("releaseYear") != null) releaseYear = Integer.parseInt(queryParams.get("releaseYear"));
+            if (queryParams.get("ageRestriction") != null) ageRestriction = Integer.parseInt(queryParams.get("ageRestriction"));
+            if (queryParams.get("rating") != null) rating = Integer.parseInt(queryParams.get("rating"));
+        } catch (IllegalArgumentException e) {
+            return new Response(HttpStatus.BAD_REQUEST, ContentType.JSON,
+                    "{ \"error\" : \"Invalid format or number in export parameters\" }");
+        }
+        boolean gzip = Boolean.parseBoolean(queryParams.get("gzip"));
+
+        String title = queryParams.get("title");
+        String genre = queryParams.get("genre");
+        String mediaType = queryParams.get("mediaType");
+        int year = releaseYear;
+        int age = ageRestriction;
+        int minRating = rating;
+        ContentType contentType = gzip ? ContentType.GZIP : format == ExportFormat.CSV ? ContentType.CSV : ContentType.NDJSON;
+        StreamingResponse response = new StreamingResponse(HttpStatus.OK, contentType, out -> {
+            if (gzip) {
+                try (OutputStream gzipOut = ResponseCompression.compressor(out, ResponseCompression.GZIP, Deflater.BEST_SPEED, 8192)) {
+                    mediaEntryService.exportMediaEntries(title, genre, mediaType, year, age, minRating, format, gzipOut);
+                }
+            } else {
+                mediaEntryService.exportMediaEntries(title, genre, mediaType, year, age, minRating, format, out);
+            }
+        });
+        String fileName = "media." + format.name().toLowerCase() + (gzip ? ".gz" : "");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        return response;
+    }
+
     /**
      * Gets a media entry by its ID.
      *
@@ -329,11 +429,7 @@ public class MediaEntryController extends Controller{
             }
 
             if(mediaEntries!=null) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(mediaEntries)
-                );
+                return StreamingResponse.json(HttpStatus.OK, getObjectMapper(), mediaEntries);
             }
 
             return new Response(
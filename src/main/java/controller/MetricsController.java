@@ -0,0 +1,41 @@
+package controller;
+
+import metrics.Metrics;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+import restserver.server.Response;
+
+public class MetricsController extends Controller {
+    private static MetricsController instance;
+    private final Metrics metrics;
+
+    /**
+     * Creates a new MetricsController.
+     *
+     * @param metrics the registry to expose
+     */
+    public MetricsController(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the single instance of the MetricsController.
+     * If it does not exist, it will be created.
+     *
+     * @param metrics the registry to expose
+     * @return the MetricsController instance
+     */
+    public static MetricsController getInstance(Metrics metrics) {
+        if (instance == null) instance = new MetricsController(metrics);
+        return instance;
+    }
+
+    /**
+     * Gets all metrics in the Prometheus text format.
+     *
+     * @return HTTP response with the metrics as plain text
+     */
+    public Response getMetrics() {
+        return new Response(HttpStatus.OK, ContentType.PLAIN_TEXT, metrics.scrape());
+    }
+}
@@ -4,12 +4,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import dto.RatingHistoryDTO;
 import model.Rating;
 import model.User;
+import persistence.RowStream;
+import persistence.WriteResult;
 import restserver.http.ContentType;
 import restserver.http.HttpStatus;
 import restserver.server.Response;
 import service.IRatingService;
 
-import java.util.List;
 import java.util.Map;
 
 public class RatingController extends Controller{
@@ -47,21 +48,8 @@ public class RatingController extends Controller{
      */
     public Response likeRating(int ratingid, User user) {
         try {
-            boolean success = ratingService.likeRating(ratingid, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "Like successful."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "Like was not successful."))
-                );
-            }
+            WriteResult result = ratingService.likeRating(ratingid, user);
+            return writeResultResponse(result, "Like successful.", "Like was not successful.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -83,21 +71,8 @@ public class RatingController extends Controller{
     public Response rateMediaEntry(int mediaentryid, String requestBody, User user) {
         try {
             Rating rating = this.getObjectMapper().readValue(requestBody, Rating.class);
-            boolean success = ratingService.rateMediaEntry(mediaentryid, rating.getStars(), rating.getComment(), user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "MediaEntry successfully rated."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "Rating was not successful."))
-                );
-            }
+            WriteResult result = ratingService.rateMediaEntry(mediaentryid, rating.getStars(), rating.getComment(), user);
+            return writeResultResponse(result, "MediaEntry successfully rated.", "Rating was not successful.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -119,21 +94,8 @@ public class RatingController extends Controller{
     public Response updateRating(int ratingid, String requestBody, User user) {
         try {
             Rating rating = this.getObjectMapper().readValue(requestBody, Rating.class);
-            boolean success = ratingService.updateRating(ratingid, rating.getStars(), rating.getComment(), user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "Rating successfully updated."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "Update was not successful."))
-                );
-            }
+            WriteResult result = ratingService.updateRating(ratingid, rating.getStars(), rating.getComment(), user);
+            return writeResultResponse(result, "Rating successfully updated.", "Update was not successful.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -153,14 +115,10 @@ public class RatingController extends Controller{
      */
     public Response getRatingHistory(int userId, User user) {
         try {
-            List<RatingHistoryDTO> ratings = ratingService.getRatingHistory(userId, user);
+            RowStream<RatingHistoryDTO> ratings = ratingService.streamRatingHistory(userId, user);
 
             if(ratings!=null) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(ratings)
-                );
+                return jsonArrayResponse(ratings);
             }else{
                 return new Response(
                         HttpStatus.CONFLICT,
@@ -187,21 +145,8 @@ public class RatingController extends Controller{
      */
     public Response confirmRatingComment(int ratingid, User user) {
         try {
-            boolean success = ratingService.confirmRatingComment(ratingid, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "Rating comment confirmed."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "Rating comment could not be confirmed."))
-                );
-            }
+            WriteResult result = ratingService.confirmRatingComment(ratingid, user);
+            return writeResultResponse(result, "Rating comment confirmed.", "Rating comment could not be confirmed.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
@@ -221,21 +166,8 @@ public class RatingController extends Controller{
      */
     public Response deleteRating(int ratingid, User user) {
         try {
-            boolean success = ratingService.deleteRating(ratingid, user);
-
-            if(success) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("message", "Rating deleted."))
-                );
-            }else{
-                return new Response(
-                        HttpStatus.CONFLICT,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(Map.of("error", "Rating could not be deleted."))
-                );
-            }
+            WriteResult result = ratingService.deleteRating(ratingid, user);
+            return writeResultResponse(result, "Rating deleted.", "Rating could not be deleted.");
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return new Response(
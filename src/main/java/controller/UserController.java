@@ -6,13 +6,12 @@ import model.MediaEntry;
 import model.Profile;
 import model.Rating;
 import model.User;
+import persistence.RowStream;
 import restserver.http.ContentType;
 import restserver.http.HttpStatus;
 import restserver.server.Response;
 import service.IUserService;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 public class UserController extends Controller{
@@ -157,14 +156,10 @@ public class UserController extends Controller{
      */
     public Response getFavorites(int userId, User user) {
         try {
-            List<MediaEntry> favorites = userService.getFavorites(userId, user);
+            RowStream<MediaEntry> favorites = userService.streamFavorites(userId, user);
 
             if(favorites!=null) {
-                return new Response(
-                        HttpStatus.OK,
-                        ContentType.JSON,
-                        getObjectMapper().writeValueAsString(favorites)
-                );
+                return jsonArrayResponse(favorites);
             }else{
                 return new Response(
                         HttpStatus.CONFLICT,
@@ -1,31 +1,246 @@
 package database;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * This enum manages the database connection.
  * It uses a single instance (INSTANCE) for the whole application.
+ * Connections are taken from a bounded, validated connection pool, so closing
+ * a connection returns it to the pool instead of closing the physical connection.
+ *
+ * The pool can be configured with system properties:
+ * mrp.db.url, mrp.db.user, mrp.db.password, mrp.db.pool.minIdle, mrp.db.pool.maxSize,
+ * mrp.db.pool.idleTimeoutMs, mrp.db.pool.maxLifetimeMs, mrp.db.pool.acquireTimeoutMs
+ * and mrp.db.pool.validationTimeoutMs.
+ *
+ * Optionally a read replica can be configured with mrp.db.replica.url, mrp.db.replica.user,
+ * mrp.db.replica.password and mrp.db.replica.pool.maxSize. Reads that tolerate a short
+ * replication lag then use {@link #getReadConnection()}, see {@link ReadRouting}.
+ *
+ * Handed out connections are wrapped by {@link InstrumentedConnection}, which records their
+ * statements and cancels them when the {@link QueryDeadline} of the current request passes.
  */
 public enum DatabaseManager {
     INSTANCE;
 
+    private static final long REPLICA_RETRY_NANOS = 10_000_000_000L;
+
+    private volatile HikariDataSource dataSource;
+    private volatile HikariDataSource replicaDataSource;
+    private volatile boolean replicaChecked;
+    private volatile long replicaRetryAt = System.nanoTime();
+
     /**
-     * Creates and returns a connection to the database.
+     * Returns a pooled connection to the database.
+     * The connection has to be closed after use to return it to the pool.
+     * Inside a {@link UnitOfWork} the connection of its transaction is returned instead,
+     * closing it leaves the transaction open.
      *
      * @return a Connection to the PostgreSQL database
      */
     public Connection getConnection()
+    {
+        UnitOfWork work = UnitOfWork.current();
+        if (work != null) {
+            return work.getConnection();
+        }
+        return openConnection();
+    }
+
+    /**
+     * Takes a connection from the pool, ignoring any open unit of work.
+     *
+     * @return a Connection to the PostgreSQL database
+     */
+    Connection openConnection()
     {
         try {
-            // Uses JDBC to connect to the PostgreSQL database
-            return DriverManager.getConnection(
-                    "jdbc:postgresql://localhost:5432/swen1",
-                    "postgres",
-                    "mysecretpassword");
-        } catch (SQLException e) {
+            return InstrumentedConnection.wrap(getDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
             throw new DataAccessException("Database connection failed", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a connection for reads that tolerate a short replication lag.
+     * Inside a {@link UnitOfWork} the connection of its transaction is returned.
+     * Otherwise the connection comes from the replica pool, unless no replica is configured,
+     * the current user wrote data recently, or the replica cannot be reached.
+     * The connection has to be closed after use to return it to the pool.
+     *
+     * @return a Connection to the replica or the primary database
+     */
+    public Connection getReadConnection()
+    {
+        UnitOfWork work = UnitOfWork.current();
+        if (work != null) {
+            return work.getConnection();
+        }
+        return openReadConnection();
+    }
+
+    /**
+     * Takes a connection for reads from the replica pool, or from the primary pool
+     * if the replica must not or cannot be used, ignoring any open unit of work.
+     *
+     * @return a Connection to the replica or the primary database
+     */
+    Connection openReadConnection()
+    {
+        HikariDataSource replica = getReplicaDataSource();
+        if (replica == null || ReadRouting.mustReadPrimary() || System.nanoTime() - replicaRetryAt < 0) {
+            return openConnection();
+        }
+        try {
+            return InstrumentedConnection.wrap(replica.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            // do not wait for the replica on every read while it is down
+            replicaRetryAt = System.nanoTime() + REPLICA_RETRY_NANOS;
+            System.err.println("Replica unavailable, reading from the primary: " + e.getMessage());
+            return openConnection();
+        }
+    }
+
+    /**
+     * Checks if a read replica is configured.
+     *
+     * @return true if reads can be routed to a replica
+     */
+    public boolean hasReplica() {
+        return getReplicaDataSource() != null;
+    }
+
+    /**
+     * Checks if a read from the replica may miss a change, because it was written so recently
+     * that the replica may not have it yet; without a replica there is no such risk.
+     *
+     * @param changedAt the time of the change, from {@link ReadRouting#now()}
+     * @return true if data read from the replica may not contain the change
+     */
+    public boolean mayReadStaleData(long changedAt) {
+        return ReadRouting.withinWindow(changedAt) && hasReplica();
+    }
+
+    /**
+     * Returns the statistics of the connection pool, or null if the pool was not started yet.
+     *
+     * @return the pool statistics (active, idle, total and waiting connections)
+     */
+    public HikariPoolMXBean getPoolStats() {
+        HikariDataSource current = dataSource;
+        return current != null ? current.getHikariPoolMXBean() : null;
+    }
+
+    /**
+     * Returns the statistics of the replica pool, or null if no replica is used.
+     *
+     * @return the pool statistics of the replica
+     */
+    public HikariPoolMXBean getReplicaPoolStats() {
+        HikariDataSource current = replicaDataSource;
+        return current != null ? current.getHikariPoolMXBean() : null;
+    }
+
+    /**
+     * Closes the connection pools and all their physical connections.
+     */
+    public synchronized void shutdown() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+        if (replicaDataSource != null) {
+            replicaDataSource.close();
+            replicaDataSource = null;
+        }
+        replicaChecked = false;
+    }
+
+    /**
+     * Returns the connection pool and creates it on first use.
+     *
+     * @return the pooled DataSource
+     */
+    private HikariDataSource getDataSource() {
+        HikariDataSource current = dataSource;
+        if (current == null) {
+            synchronized (this) {
+                current = dataSource;
+                if (current == null) {
+                    current = createDataSource("mrp-pool",
+                            System.getProperty("mrp.db.url", "jdbc:postgresql://localhost:5432/swen1"),
+                            System.getProperty("mrp.db.user", "postgres"),
+                            System.getProperty("mrp.db.password", "mysecretpassword"),
+                            Integer.getInteger("mrp.db.pool.maxSize", 10), false);
+                    dataSource = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the replica pool and creates it on first use.
+     *
+     * @return the pooled DataSource of the replica, or null if no replica is configured
+     */
+    private HikariDataSource getReplicaDataSource() {
+        if (replicaChecked) return replicaDataSource;
+        synchronized (this) {
+            if (!replicaChecked) {
+                String url = System.getProperty("mrp.db.replica.url");
+                if (url != null && !url.isBlank()) {
+                    HikariDataSource replica = createDataSource("mrp-replica-pool", url,
+                            System.getProperty("mrp.db.replica.user", System.getProperty("mrp.db.user", "postgres")),
+                            System.getProperty("mrp.db.replica.password", System.getProperty("mrp.db.password", "mysecretpassword")),
+                            Integer.getInteger("mrp.db.replica.pool.maxSize", Integer.getInteger("mrp.db.pool.maxSize", 10)), true);
+                    replicaDataSource = replica;
+                }
+                replicaChecked = true;
+            }
+            return replicaDataSource;
+        }
+    }
+
+    /**
+     * Creates a connection pool, the timeouts come from the configured system properties.
+     *
+     * @param poolName the name of the pool
+     * @param url the JDBC URL of the database
+     * @param user the database user
+     * @param password the password of the user
+     * @param maxSize the maximum number of connections
+     * @param replica true for the replica pool, its connections are read-only
+     * @return a new pooled DataSource
+     */
+    private static HikariDataSource createDataSource(String poolName, String url, String user,
+                                                     String password, int maxSize, boolean replica) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+
+        // pool bounds
+        config.setMinimumIdle(Integer.getInteger("mrp.db.pool.minIdle", 2));
+        config.setMaximumPoolSize(maxSize);
+        // idle connections above minIdle are evicted, every connection is recycled after maxLifetime
+        config.setIdleTimeout(Long.getLong("mrp.db.pool.idleTimeoutMs", 600_000L));
+        config.setMaxLifetime(Long.getLong("mrp.db.pool.maxLifetimeMs", 1_800_000L));
+        // callers fail with a DataAccessException instead of waiting forever for a free connection
+        config.setConnectionTimeout(Long.getLong("mrp.db.pool.acquireTimeoutMs", 3_000L));
+        // connections are validated with Connection.isValid() before they are handed out
+        config.setValidationTimeout(Long.getLong("mrp.db.pool.validationTimeoutMs", 1_000L));
+        if (replica) {
+            config.setReadOnly(true);
+            // an unreachable replica must not stop the application, reads fall back to the primary
+            config.setInitializationFailTimeout(-1);
+        }
+        return new HikariDataSource(config);
+    }
+}
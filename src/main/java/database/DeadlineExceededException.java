@@ -0,0 +1,16 @@
+package database;
+
+/**
+ * Thrown when the time budget of the current request ran out before or during a database statement.
+ * It is not a {@link DataAccessException}, so code that handles failed queries lets it pass
+ * up to the server, which answers with 504 Gateway Timeout.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
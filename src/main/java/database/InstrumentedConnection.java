@@ -0,0 +1,222 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Wraps the connections handed out by {@link DatabaseManager} to observe their statements.
+ *
+ * For every execution it records the SQL fingerprint ({@link SqlFingerprint}), the number of bound
+ * parameters, the execution time and the rows fetched or changed. The statement is counted for
+ * the current request ({@link RequestStatements}), and executions that take at least
+ * mrp.db.slowQueryMs are written as one key=value line to the slow-query log when the statement
+ * is closed, once the rows are known. The instrumentation can be switched off with
+ * mrp.db.instrumentation=false.
+ *
+ * The wrapper also applies the {@link QueryDeadline} of the request to every execution,
+ * so statements are proxied only once.
+ */
+public final class InstrumentedConnection {
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("mrp.db.instrumentation", "true"));
+
+    // executions at least this long are logged, replaced in tests
+    static long slowQueryNanos = Long.getLong("mrp.db.slowQueryMs", 200L) * 1_000_000L;
+
+    private static final LongAdder statements = new LongAdder();
+    private static final LongAdder rows = new LongAdder();
+    private static final LongAdder slowStatements = new LongAdder();
+    private static final LongAdder executionNanos = new LongAdder();
+
+    // where slow statements are logged, replaced in tests
+    static Consumer<String> slowQueryLog = System.err::println;
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * Wraps a pooled connection. Without instrumentation and deadline it is returned as it is.
+     *
+     * @param connection the pooled connection
+     * @return the connection to hand out
+     */
+    static Connection wrap(Connection connection) {
+        if (!ENABLED && !QueryDeadline.isActive()) return connection;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        Class<?> type = method.getReturnType();
+                        Class<?> iface = type == CallableStatement.class || type == PreparedStatement.class ? type : Statement.class;
+                        return Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                                new Class<?>[] {iface}, new StatementHandler(statement, sql));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Returns the number of executed statements since the start.
+     *
+     * @return the statement count
+     */
+    public static long getStatements() {
+        return statements.sum();
+    }
+
+    /**
+     * Returns the rows fetched or changed by statements since the start.
+     *
+     * @return the row count
+     */
+    public static long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Returns how many statement executions reached the slow-query threshold.
+     *
+     * @return the number of slow statements
+     */
+    public static long getSlowStatements() {
+        return slowStatements.sum();
+    }
+
+    /**
+     * Returns the time spent executing statements since the start.
+     *
+     * @return the execution time in seconds
+     */
+    public static double getExecutionSeconds() {
+        return executionNanos.sum() / 1e9;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Observes one statement. It remembers its last execution until the next one starts or the
+     * statement is closed, because the rows of a query are only known after they were read.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final RequestStatements request = RequestStatements.current();
+        private int binds;
+
+        // the last execution
+        private boolean pending;
+        private String fingerprint;
+        private int executedBinds;
+        private long nanos;
+        private long rowCount;
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.equals("close")) {
+                finish();
+            } else if (name.equals("clearParameters")) {
+                binds = 0;
+            } else if (name.startsWith("set") && method.getDeclaringClass() != Statement.class
+                    && args != null && args.length > 0 && args[0] instanceof Integer index) {
+                // setInt, setString, ... of a PreparedStatement, their first argument is the parameter index
+                binds = Math.max(binds, index);
+            }
+            Object result = InstrumentedConnection.invoke(target, method, args);
+            if (name.equals("getResultSet") && result instanceof ResultSet resultSet && pending) {
+                return countRows(resultSet);
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finish();
+            String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+            long remaining = QueryDeadline.beforeExecute(target);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedConnection.invoke(target, method, args);
+            } catch (SQLException e) {
+                throw QueryDeadline.translate(e, remaining);
+            } finally {
+                if (ENABLED) started(sql, System.nanoTime() - start);
+            }
+            if (!ENABLED) return result;
+            if (result instanceof ResultSet resultSet) {
+                return countRows(resultSet);
+            }
+            if (result instanceof Integer count) addRows(count);
+            else if (result instanceof Long count) addRows(count);
+            else if (result instanceof int[] counts) for (int count : counts) addRows(count);
+            else if (result instanceof long[] counts) for (long count : counts) addRows(count);
+            return result;
+        }
+
+        private void started(String sql, long duration) {
+            pending = true;
+            fingerprint = SqlFingerprint.of(sql);
+            executedBinds = binds;
+            nanos = duration;
+            rowCount = 0;
+            statements.increment();
+            executionNanos.add(duration);
+            if (request != null) request.record(fingerprint, duration);
+        }
+
+        private void addRows(long count) {
+            if (count <= 0) return;
+            rowCount += count;
+            rows.add(count);
+            if (request != null) request.addRows(count);
+        }
+
+        private ResultSet countRows(ResultSet resultSet) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                        Object result = InstrumentedConnection.invoke(resultSet, method, args);
+                        if (method.getName().equals("next") && Boolean.TRUE.equals(result)) addRows(1);
+                        return result;
+                    });
+        }
+
+        /**
+         * Completes the last execution and logs it if it was slow.
+         */
+        private void finish() {
+            if (!pending) return;
+            pending = false;
+            if (nanos < slowQueryNanos) return;
+            slowStatements.increment();
+            slowQueryLog.accept("slow-query duration_ms=" + nanos / 1_000_000 + " rows=" + rowCount
+                    + " binds=" + executedBinds
+                    + (request != null ? " request=\"" + request.getName() + "\"" : "")
+                    + " fingerprint=\"" + fingerprint + "\"");
+        }
+    }
+}
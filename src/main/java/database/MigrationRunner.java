@@ -0,0 +1,215 @@
+package database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Applies the versioned schema migrations in src/main/resources/db/migration.
+ * Applied versions are recorded in the table schema_version together with a checksum
+ * of the script. Every migration runs in its own transaction and is written to be
+ * idempotent, so existing databases are upgraded without dropping data. Rows that a migration
+ * has to remove are moved to an archive table, and the notices it raises about them are logged.
+ */
+public class MigrationRunner {
+
+    /**
+     * A single migration script.
+     *
+     * @param version the version, migrations are applied in ascending order
+     * @param description short description stored in schema_version
+     * @param resource the classpath resource of the SQL script
+     */
+    record Migration(int version, String description, String resource) {}
+
+    /** All known migrations, in the order they are applied. */
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline schema", "/db/migration/V1__baseline_schema.sql"),
+            new Migration(2, "rating aggregates", "/db/migration/V2__rating_aggregates.sql"),
+            new Migration(3, "performance indexes", "/db/migration/V3__performance_indexes.sql"),
+            new Migration(4, "keyset pagination indexes", "/db/migration/V4__keyset_pagination_indexes.sql"),
+            new Migration(5, "unique rating per user", "/db/migration/V5__unique_rating_per_user.sql")
+    );
+
+    // arbitrary key, makes concurrently starting servers apply the migrations one after another
+    private static final long MIGRATION_LOCK_KEY = 4_711_2025L;
+
+    /**
+     * Migrates the database when mrp.db.migrate is true (the default),
+     * otherwise only checks that the schema is up to date.
+     *
+     * @throws DataAccessException if the schema is behind or a migration fails
+     */
+    public void runAtStartup() {
+        if (Boolean.parseBoolean(System.getProperty("mrp.db.migrate", "true"))) {
+            migrate();
+        } else {
+            validate();
+        }
+    }
+
+    /**
+     * Applies all pending migrations.
+     *
+     * @return the number of applied migrations
+     * @throws DataAccessException if a migration fails
+     */
+    public int migrate() {
+        try (Connection conn = DatabaseManager.INSTANCE.getConnection()) {
+            lock(conn, true);
+            try {
+                createVersionTable(conn);
+                List<Migration> pending = pendingMigrations(appliedVersions(conn));
+                for (Migration migration : pending) {
+                    apply(conn, migration);
+                }
+                return pending.size();
+            } finally {
+                lock(conn, false);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Database migration failed", e);
+        }
+    }
+
+    /**
+     * Checks that all migrations have been applied and were not changed afterwards.
+     *
+     * @throws DataAccessException if the schema is behind
+     */
+    public void validate() {
+        try (Connection conn = DatabaseManager.INSTANCE.getConnection()) {
+            createVersionTable(conn);
+            List<Migration> pending = pendingMigrations(appliedVersions(conn));
+            if (!pending.isEmpty()) {
+                throw new DataAccessException("Database schema is behind, pending migrations: "
+                        + pending.stream().map(Migration::version).toList()
+                        + " (start with -Dmrp.db.migrate=true to apply them)");
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Database schema validation failed", e);
+        }
+    }
+
+    /**
+     * Returns the migrations that are not applied yet.
+     *
+     * @param applied checksums of the applied migrations by version
+     * @return the pending migrations in ascending order
+     * @throws DataAccessException if an applied migration script was changed
+     */
+    static List<Migration> pendingMigrations(Map<Integer, String> applied) {
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : MIGRATIONS) {
+            String appliedChecksum = applied.get(migration.version());
+            if (appliedChecksum == null) {
+                pending.add(migration);
+            } else if (!appliedChecksum.equals(checksum(load(migration)))) {
+                throw new DataAccessException("Migration " + migration.version()
+                        + " was changed after it was applied");
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Reads the SQL script of a migration from the classpath.
+     *
+     * @param migration the migration
+     * @return the SQL script
+     */
+    static String load(Migration migration) {
+        try (InputStream in = MigrationRunner.class.getResourceAsStream(migration.resource())) {
+            if (in == null) {
+                throw new DataAccessException("Migration script not found: " + migration.resource());
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DataAccessException("Migration script could not be read: " + migration.resource(), e);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 checksum of a script.
+     *
+     * @param script the SQL script
+     * @return the hex encoded checksum
+     */
+    static String checksum(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        String script = load(migration);
+        conn.setAutoCommit(false);
+        try (Statement statement = conn.createStatement();
+             PreparedStatement record = conn.prepareStatement(
+                     "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+            statement.execute(script);
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.setString(3, checksum(script));
+            record.executeUpdate();
+            conn.commit();
+            System.out.println("Applied database migration " + migration.version() + ": " + migration.description());
+            for (SQLWarning notice = statement.getWarnings(); notice != null; notice = notice.getNextWarning()) {
+                System.out.println("Migration " + migration.version() + ": " + notice.getMessage());
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INTEGER PRIMARY KEY,
+                    description VARCHAR(255) NOT NULL,
+                    checksum VARCHAR(64) NOT NULL,
+                    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+        }
+    }
+
+    private Map<Integer, String> appliedVersions(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new TreeMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version, checksum FROM schema_version");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private void lock(Connection conn, boolean acquire) throws SQLException {
+        String sql = acquire ? "SELECT pg_advisory_lock(?)" : "SELECT pg_advisory_unlock(?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, MIGRATION_LOCK_KEY);
+            ps.executeQuery().close();
+        }
+    }
+}
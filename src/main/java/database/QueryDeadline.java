@@ -0,0 +1,113 @@
+package database;
+
+import org.postgresql.jdbc.PgStatement;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time budget of the current request for its database statements.
+ *
+ * The server starts a deadline for routes that have one, and the statements of the connections
+ * handed out by {@link DatabaseManager} ({@link InstrumentedConnection}) get the remaining time
+ * as query timeout when they are executed.
+ * If the time is up, the statement is not sent at all; if it runs out during execution, the
+ * driver cancels the statement. Both end in a {@link DeadlineExceededException}.
+ */
+public final class QueryDeadline {
+
+    /** SQLState of a statement that was canceled, by the driver's query timeout or statement_timeout. */
+    static final String QUERY_CANCELED = "57014";
+
+    private static final ThreadLocal<Long> EXPIRES_AT = new ThreadLocal<>();
+    private static final AtomicLong exceeded = new AtomicLong();
+
+    // the time in nanoseconds, replaced in tests
+    static LongSupplier clock = System::nanoTime;
+
+    private QueryDeadline() {
+    }
+
+    /**
+     * Starts a deadline for the current thread, replacing any earlier one.
+     *
+     * @param budget the time the request may spend from now on
+     */
+    public static void start(Duration budget) {
+        EXPIRES_AT.set(clock.getAsLong() + budget.toNanos());
+    }
+
+    /**
+     * Removes the deadline of the current thread.
+     */
+    public static void clear() {
+        EXPIRES_AT.remove();
+    }
+
+    /**
+     * Checks if the current thread has a deadline.
+     *
+     * @return true if statements of this thread have a time budget
+     */
+    public static boolean isActive() {
+        return EXPIRES_AT.get() != null;
+    }
+
+    /**
+     * Returns the time left until the deadline of the current thread.
+     *
+     * @return the remaining milliseconds, 0 if the deadline passed, or -1 if there is no deadline
+     */
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT.get();
+        if (expiresAt == null) return -1;
+        return Math.max(0, Duration.ofNanos(expiresAt - clock.getAsLong()).toMillis());
+    }
+
+    /**
+     * Returns how many statements were stopped by a deadline since the start.
+     *
+     * @return the number of exceeded deadlines
+     */
+    public static long getExceededCount() {
+        return exceeded.get();
+    }
+
+    /**
+     * Prepares the execution of a statement: gives it the remaining time as query timeout.
+     *
+     * @param statement the statement that is about to be executed
+     * @return the remaining milliseconds, or -1 if there is no deadline
+     * @throws DeadlineExceededException if the deadline already passed
+     * @throws SQLException if the timeout cannot be set
+     */
+    static long beforeExecute(Statement statement) throws SQLException {
+        long remaining = remainingMillis();
+        if (remaining == 0) {
+            exceeded.incrementAndGet();
+            throw new DeadlineExceededException("Request deadline passed before the statement was executed");
+        }
+        if (remaining > 0) {
+            statement.unwrap(PgStatement.class).setQueryTimeoutMs(remaining);
+        }
+        return remaining;
+    }
+
+    /**
+     * Turns the failure of a statement that was canceled at the deadline into a DeadlineExceededException.
+     *
+     * @param e the failure of the statement
+     * @param remaining the milliseconds that were left when the statement started
+     * @return the exception to throw
+     */
+    static Exception translate(SQLException e, long remaining) {
+        if (remaining > 0 && QUERY_CANCELED.equals(e.getSQLState())) {
+            exceeded.incrementAndGet();
+            return new DeadlineExceededException("Statement canceled at the request deadline", e);
+        }
+        return e;
+    }
+}
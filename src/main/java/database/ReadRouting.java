@@ -0,0 +1,99 @@
+package database;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether reads may use the replica, which lags slightly behind the primary.
+ *
+ * After a user changed data, that user's reads go to the primary for a short window,
+ * so the user always sees their own writes. The window should be longer than the usual
+ * replication lag; it can be configured with the system property mrp.db.replica.readYourWritesMs.
+ *
+ * The user of the current request is bound to the thread by the server, also on public routes
+ * when the request carries a valid token. Anonymous requests always may read from the replica.
+ */
+public final class ReadRouting {
+
+    /** How long reads of a user go to the primary after the user's last write. */
+    static final long WINDOW_NANOS = Long.getLong("mrp.db.replica.readYourWritesMs", 2_000L) * 1_000_000L;
+
+    private static final ThreadLocal<Integer> CURRENT_USER = new ThreadLocal<>();
+    private static final Map<Integer, Long> lastWrites = new ConcurrentHashMap<>();
+
+    // the time in nanoseconds, replaced in tests
+    static LongSupplier clock = System::nanoTime;
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Binds the user of the current request to the thread.
+     *
+     * @param userId the ID of the authenticated user
+     */
+    public static void bindUser(int userId) {
+        CURRENT_USER.set(userId);
+    }
+
+    /**
+     * Removes the user of the finished request from the thread.
+     */
+    public static void clear() {
+        CURRENT_USER.remove();
+    }
+
+    /**
+     * Records that the user bound to the thread wrote data. Anonymous writes are not recorded.
+     */
+    public static void recordWrite() {
+        Integer userId = CURRENT_USER.get();
+        if (userId == null) return;
+        long now = clock.getAsLong();
+        lastWrites.put(userId, now);
+        // forget users whose window is over, so the map only holds recent writers
+        if (lastWrites.size() > 1024) {
+            lastWrites.values().removeIf(time -> now - time > WINDOW_NANOS);
+        }
+    }
+
+    /**
+     * Checks if the user bound to the thread wrote data within the window.
+     *
+     * @return true if the reads of the current thread have to use the primary
+     */
+    public static boolean mustReadPrimary() {
+        Integer userId = CURRENT_USER.get();
+        if (userId == null) return false;
+        Long time = lastWrites.get(userId);
+        return time != null && clock.getAsLong() - time <= WINDOW_NANOS;
+    }
+
+    /**
+     * Returns the current time of the clock that the window is measured with.
+     *
+     * @return the time in nanoseconds, only meaningful compared to other values of this clock
+     */
+    public static long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Checks if a time of {@link #now()} lies within the window, so the replica may not have
+     * the data that was written at that time yet.
+     *
+     * @param time the time of the write
+     * @return true if the write is too recent to be on the replica for sure
+     */
+    public static boolean withinWindow(long time) {
+        return clock.getAsLong() - time <= WINDOW_NANOS;
+    }
+
+    /**
+     * Forgets all recorded writes.
+     */
+    static void reset() {
+        lastWrites.clear();
+    }
+}
@@ -0,0 +1,157 @@
+package database;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Counts the database statements of one request, recorded by {@link InstrumentedConnection}.
+ *
+ * The server opens a scope for every request. When it is closed, statements that ran more often
+ * than mrp.db.repeatedStatementThreshold times with the same fingerprint are logged, which is the
+ * pattern of an N+1 query: one statement per row of an earlier result instead of one join.
+ * Tests can open a scope themselves to assert how many statements a call needs:
+ *
+ * <pre>
+ * try (RequestStatements statements = RequestStatements.begin("leaderboard")) {
+ *     repository.getLeaderboard(10, 0);
+ *     assertEquals(1, statements.getStatementCount());
+ * }
+ * </pre>
+ */
+public final class RequestStatements implements AutoCloseable {
+
+    /** Executions of one fingerprint per request above which the request is flagged. */
+    static final int REPEAT_THRESHOLD = Integer.getInteger("mrp.db.repeatedStatementThreshold", 10);
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    // where flagged requests are logged, replaced in tests
+    static Consumer<String> log = System.err::println;
+
+    private final String name;
+    private final RequestStatements parent;
+    private final Map<String, Integer> executions = new HashMap<>();
+    private int statementCount;
+    private long rows;
+    private long nanos;
+    private boolean closed;
+
+    private RequestStatements(String name, RequestStatements parent) {
+        this.name = name;
+        this.parent = parent;
+    }
+
+    /**
+     * Starts counting the statements of the current thread.
+     *
+     * @param name the name of the request in log lines, e.g. GET /api/leaderboard
+     * @return the scope, close it when the request is done
+     */
+    public static RequestStatements begin(String name) {
+        RequestStatements statements = new RequestStatements(name, CURRENT.get());
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    /**
+     * Returns the innermost open scope of the current thread.
+     *
+     * @return the scope, or null if statements are not counted
+     */
+    public static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Records an executed statement.
+     *
+     * @param fingerprint the normalized SQL of the statement
+     * @param duration the execution time in nanoseconds
+     */
+    void record(String fingerprint, long duration) {
+        statementCount++;
+        nanos += duration;
+        executions.merge(fingerprint, 1, Integer::sum);
+    }
+
+    /**
+     * Adds rows that were fetched or changed by a statement.
+     *
+     * @param count the number of rows
+     */
+    void addRows(long count) {
+        rows += count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of executed statements.
+     *
+     * @return the statement count
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Returns how often a statement was executed.
+     *
+     * @param sql the SQL of the statement
+     * @return the number of executions of its fingerprint
+     */
+    public int getExecutions(String sql) {
+        return executions.getOrDefault(SqlFingerprint.of(sql), 0);
+    }
+
+    /**
+     * Returns the rows fetched or changed by the statements.
+     *
+     * @return the row count
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the time spent executing statements.
+     *
+     * @return the execution time in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the statements that ran more often than the threshold.
+     *
+     * @return the execution counts by fingerprint, empty if there are none
+     */
+    public Map<String, Integer> getRepeatedStatements() {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        executions.forEach((fingerprint, count) -> {
+            if (count > REPEAT_THRESHOLD) repeated.put(fingerprint, count);
+        });
+        return repeated;
+    }
+
+    /**
+     * Ends the scope, logs repeated statements and makes the outer scope active again.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (CURRENT.get() == this) {
+            if (parent != null) CURRENT.set(parent);
+            else CURRENT.remove();
+        }
+        getRepeatedStatements().forEach((fingerprint, count) -> log.accept(
+                "repeated-statement request=\"" + name + "\" executions=" + count
+                        + " statements=" + statementCount + " fingerprint=\"" + fingerprint + "\""));
+    }
+}
@@ -0,0 +1,77 @@
+package database;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalizes SQL so that executions of the same statement with different values look alike:
+ * string and number literals become ?, lists of placeholders become a single ?+ and
+ * whitespace is collapsed.
+ */
+final class SqlFingerprint {
+
+    private static final int CACHE_SIZE = 1024;
+    // the application's statements are mostly constants, so they are normalized only once
+    private static final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of a statement.
+     *
+     * @param sql the SQL text
+     * @return the normalized SQL
+     */
+    static String of(String sql) {
+        if (sql == null) return "";
+        String cached = cache.get(sql);
+        if (cached != null) return cached;
+        String fingerprint = normalize(sql);
+        if (cache.size() < CACHE_SIZE) cache.put(sql, fingerprint);
+        return fingerprint;
+    }
+
+    private static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        int n = sql.length();
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) i++;
+                if (!out.isEmpty()) out.append(' ');
+            } else if (c == '\'') {
+                // a quote inside a literal is written as two quotes
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') i += 2;
+                        else break;
+                    } else {
+                        i++;
+                    }
+                }
+                i++;
+                out.append('?');
+            } else if (Character.isDigit(c) && !out.isEmpty() && isIdentifierPart(out.charAt(out.length() - 1))) {
+                out.append(c);
+                i++;
+            } else if (Character.isDigit(c)) {
+                while (i < n && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == ';')) end--;
+        out.setLength(end);
+        return out.toString().replaceAll("\\?(?: ?, ?\\?)+", "?+");
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
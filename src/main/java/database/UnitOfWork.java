@@ -1,68 +1,339 @@
 package database;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
-public class UnitOfWork implements AutoCloseable{
+/**
+ * Database transaction that is bound to the current thread.
+ *
+ * While a unit of work is open, {@link DatabaseManager#getConnection()} returns its connection,
+ * so every repository call on this thread takes part in the same transaction, and closing that
+ * connection does not return it to the pool. The connection is only taken from the pool when
+ * the first statement needs it, and the transaction is committed once by the outermost unit:
+ *
+ * <pre>
+ * try (UnitOfWork work = new UnitOfWork()) {
+ *     repository.first(...);
+ *     repository.second(...);
+ *     work.commitTransaction();
+ * }
+ * </pre>
+ *
+ * A unit that is closed without commit rolls back. Units can be nested: a nested unit joins the
+ * transaction of the outer unit, and if it rolls back, only its own statements and those of its
+ * nested units are undone by rolling back to a savepoint that is set when it or one of its nested
+ * units first uses the connection.
+ *
+ * A read-only unit starts a READ ONLY transaction, the database rejects writes in it.
+ * Its connection is taken with {@link DatabaseManager#getReadConnection()}, so it may run on the replica.
+ *
+ * Work that must only happen once the data is visible to others, e.g. bumping cache versions,
+ * is registered with {@link #afterCommit(Runnable)}.
+ */
+public class UnitOfWork implements AutoCloseable {
 
-    private Connection connection;
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    // where the connections come from, replaced in tests
+    static Supplier<Connection> connectionSource = DatabaseManager.INSTANCE::openConnection;
+    static Supplier<Connection> readConnectionSource = DatabaseManager.INSTANCE::openReadConnection;
+
+    private final UnitOfWork parent;
+    private final Transaction transaction;
+    private final boolean readOnly;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private Savepoint savepoint;
+    private boolean touched;
+    private boolean completed;
+    private boolean closed;
+
+    /**
+     * Opens a read-write unit of work on the current thread.
+     */
     public UnitOfWork() {
-        this.connection = DatabaseManager.INSTANCE.getConnection();
+        this(false);
+    }
+
+    /**
+     * Opens a unit of work on the current thread.
+     *
+     * @param readOnly true if the unit only reads, nested in a read-write unit the hint is ignored
+     * @throws DataAccessException if a read-write unit is opened inside a read-only unit
+     */
+    public UnitOfWork(boolean readOnly) {
+        this.parent = CURRENT.get();
+        if (parent != null && parent.transaction.readOnly && !readOnly) {
+            throw new DataAccessException("A read-write unit of work cannot be nested in a read-only unit");
+        }
+        this.transaction = parent != null ? parent.transaction : new Transaction(readOnly);
+        this.readOnly = transaction.readOnly;
+        CURRENT.set(this);
+    }
+
+    /**
+     * Opens a read-only unit of work on the current thread.
+     *
+     * @return the unit of work
+     */
+    public static UnitOfWork readOnly() {
+        return new UnitOfWork(true);
+    }
+
+    /**
+     * Returns the innermost open unit of work of the current thread.
+     *
+     * @return the unit of work, or null if there is none
+     */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs an action after the outermost unit of work committed, or right away if no
+     * unit of work is open. The action is dropped if the unit it was registered in rolls back.
+     *
+     * @param action the action, e.g. a cache invalidation
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            action.run();
+        } else {
+            current.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Checks if the transaction of this unit is read-only.
+     *
+     * @return true for a read-only transaction
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Checks if this unit is nested in another unit.
+     *
+     * @return true if the unit joined the transaction of an outer unit
+     */
+    public boolean isNested() {
+        return parent != null;
+    }
+
+    /**
+     * Returns the connection of the transaction, taking it from the pool on first use.
+     * Closing the returned connection does not end the transaction.
+     *
+     * @return the connection
+     * @throws DataAccessException if the unit is not the innermost open unit or the connection fails
+     */
+    public Connection getConnection() {
+        if (closed || CURRENT.get() != this) {
+            throw new DataAccessException("UnitOfWork is not the active unit of work of this thread");
+        }
         try {
-            this.connection.setAutoCommit(false);
+            touch();
+            return transaction.participant();
         } catch (SQLException e) {
-            throw new DataAccessException("Autocommit cannot be disabled", e);
+            throw new DataAccessException("Starting the unit of work failed", e);
         }
     }
 
-    public void commitTransaction()
-    {
-        if (this.connection != null) {
-            try {
-                this.connection.commit();
-            } catch (SQLException e) {
-                throw new DataAccessException("Transaction commit unsuccessful", e);
+    /**
+     * Marks this unit and every outer unit as used, outermost first. A nested unit can only undo
+     * its own statements if they follow a savepoint, and that includes the statements of its
+     * nested units, so a unit that only delegates to nested units needs a savepoint as well.
+     */
+    private void touch() throws SQLException {
+        if (touched) return;
+        if (parent != null) {
+            parent.touch();
+            if (transaction.connection != null) {
+                savepoint = transaction.connection.setSavepoint();
             }
         }
+        touched = true;
     }
-    public void rollbackTransaction()
-    {
-        if (this.connection != null) {
+
+    /**
+     * Creates a prepared statement on the connection of the transaction.
+     *
+     * @param sql the statement
+     * @return the prepared statement
+     * @throws DataAccessException if the statement cannot be prepared
+     */
+    public PreparedStatement prepareStatement(String sql) {
+        try {
+            return getConnection().prepareStatement(sql);
+        } catch (SQLException e) {
+            throw new DataAccessException("Creating a PreparedStatement was unsuccessful", e);
+        }
+    }
+
+    /**
+     * Completes the unit. A nested unit hands its work to the outer unit,
+     * the outermost unit commits the transaction and runs the after-commit actions.
+     *
+     * @throws DataAccessException if the commit fails or the transaction was marked for rollback,
+     *         the transaction is rolled back in that case
+     */
+    public void commitTransaction() {
+        if (completed) return;
+        completed = true;
+        if (parent != null) {
+            parent.afterCommit.addAll(afterCommit);
+            return;
+        }
+        if (transaction.connection != null) {
             try {
-                this.connection.rollback();
+                if (transaction.rollbackOnly) {
+                    transaction.connection.rollback();
+                    throw new DataAccessException("Transaction was marked for rollback and has been rolled back");
+                }
+                transaction.connection.commit();
             } catch (SQLException e) {
-                throw new DataAccessException("Transaction rollback unsuccessful", e);
+                rollbackQuietly();
+                throw new DataAccessException("Transaction commit unsuccessful", e);
             }
         }
+        for (Runnable action : afterCommit) {
+            action.run();
+        }
     }
 
-    public void finishWork()
-    {
-        if (this.connection != null) {
-            try {
-                this.connection.close();
-                this.connection = null;
-            } catch (SQLException e) {
-                throw new DataAccessException("Connection closure failed", e);
+    /**
+     * Undoes the statements of this unit. For a nested unit that is only the work done since it
+     * or one of its nested units first used the connection; the outer unit can continue.
+     *
+     * @throws DataAccessException if the rollback fails
+     */
+    public void rollbackTransaction() {
+        if (completed) return;
+        completed = true;
+        afterCommit.clear();
+        if (transaction.connection == null || (parent != null && !touched)) return;
+        try {
+            if (savepoint != null) {
+                transaction.connection.rollback(savepoint);
+            } else {
+                // the transaction started in this unit, so it only contains its statements
+                transaction.connection.rollback();
+                transaction.rollbackOnly = false;
             }
+        } catch (SQLException e) {
+            transaction.rollbackOnly = true;
+            throw new DataAccessException("Transaction rollback unsuccessful", e);
         }
     }
 
-    public PreparedStatement prepareStatement(String sql)
-    {
-        if (this.connection != null) {
-            try {
-                return this.connection.prepareStatement(sql);
-            } catch (SQLException e) {
-                throw new DataAccessException("Creating a PreparedStatement was unsuccessful", e);
+    /**
+     * Ends the unit: rolls back if it was not committed, makes the outer unit active again
+     * and, for the outermost unit, returns the connection to the pool.
+     *
+     * @throws DataAccessException if the rollback or closing the connection fails
+     */
+    public void finishWork() {
+        if (closed) return;
+        try {
+            rollbackTransaction();
+        } finally {
+            closed = true;
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+                transaction.release();
             }
         }
-        throw new DataAccessException("UnitOfWork has no active connection available");
     }
 
     @Override
-    public void close() throws Exception {
+    public void close() {
         this.finishWork();
     }
-}
\ No newline at end of file
+
+    private void rollbackQuietly() {
+        try {
+            transaction.connection.rollback();
+        } catch (SQLException ignored) {
+            // the connection is broken, the pool discards it
+        }
+    }
+
+    /**
+     * The physical transaction shared by a unit and the units nested in it.
+     */
+    private static final class Transaction {
+        private final boolean readOnly;
+        private Connection connection;
+        private Connection participant;
+        private boolean rollbackOnly;
+
+        private Transaction(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        /**
+         * Returns the connection for repository code. Transaction control on it is left to the
+         * units: commit and setAutoCommit are ignored, close does not return it to the pool,
+         * and rollback marks the transaction so the outermost commit rolls back instead.
+         */
+        private Connection participant() throws SQLException {
+            if (connection == null) {
+                Connection opened = readOnly ? readConnectionSource.get() : connectionSource.get();
+                try {
+                    opened.setAutoCommit(false);
+                    if (readOnly) opened.setReadOnly(true);
+                } catch (SQLException e) {
+                    opened.close();
+                    throw e;
+                }
+                connection = opened;
+            }
+            if (participant == null) {
+                Connection target = connection;
+                participant = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "close", "commit", "setAutoCommit":
+                                    return null;
+                                case "rollback":
+                                    if (args == null) {
+                                        rollbackOnly = true;
+                                        return null;
+                                    }
+                                    break;
+                                default:
+                                    break;
+                            }
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+            return participant;
+        }
+
+        private void release() {
+            if (connection == null) return;
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new DataAccessException("Connection closure failed", e);
+            } finally {
+                connection = null;
+                participant = null;
+            }
+        }
+    }
+}
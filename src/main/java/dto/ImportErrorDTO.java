@@ -0,0 +1,35 @@
+package dto;
+
+/**
+ * This DTO describes why a row of a bulk import was rejected.
+ * Rows are numbered from 1 in the order they were sent.
+ */
+public class ImportErrorDTO {
+    private int row;
+    private String error;
+
+    public ImportErrorDTO() {
+
+    }
+
+    public ImportErrorDTO(int row, String error) {
+        this.row = row;
+        this.error = error;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
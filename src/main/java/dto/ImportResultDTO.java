@@ -0,0 +1,42 @@
+package dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This DTO stores the result of a bulk import: how many rows were imported and
+ * which rows were rejected. Only the first errors are listed, failed counts all of them.
+ */
+public class ImportResultDTO {
+    private int imported;
+    private int failed;
+    private List<ImportErrorDTO> errors = new ArrayList<>();
+
+    public ImportResultDTO() {
+
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<ImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ImportErrorDTO> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,39 @@
+package dto;
+
+import java.util.List;
+
+/**
+ * This DTO stores one page of a paginated result.
+ * The next cursor is passed as "after" to get the following page and is null on the last page.
+ *
+ * @param <T> the type of the items
+ */
+public class PageDTO<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    public PageDTO() {
+
+    }
+
+    public PageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
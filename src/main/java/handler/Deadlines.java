@@ -0,0 +1,17 @@
+package handler;
+
+import java.time.Duration;
+
+/**
+ * Time budgets of the read routes, see {@link restserver.server.RouteHandler#withDeadline}.
+ * Lookups of a single row get the detail budget (mrp.http.deadline.detailMs), searches and
+ * lists the search budget (mrp.http.deadline.searchMs).
+ */
+final class Deadlines {
+
+    static final Duration DETAIL = Duration.ofMillis(Long.getLong("mrp.http.deadline.detailMs", 200L));
+    static final Duration SEARCH = Duration.ofMillis(Long.getLong("mrp.http.deadline.searchMs", 2_000L));
+
+    private Deadlines() {
+    }
+}
@@ -1,24 +1,18 @@
 package handler;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import controller.LeaderboardController;
-import model.User;
-import restserver.http.ContentType;
-import restserver.http.HttpStatus;
+import persistence.DataVersions;
 import restserver.http.Method;
-import restserver.server.Request;
-import restserver.server.Response;
+import restserver.server.CachePolicy;
+import restserver.server.RouteHandler;
+import restserver.server.Router;
 import service.*;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-
 /**
- * Handles HTTP requests for the leaderboard.
+ * Registers the route for the leaderboard.
  * It forwards requests to the LeaderboardController.
  */
-public class LeaderboardHandler implements HttpHandler {
+public class LeaderboardHandler {
     private final ILeaderboardService leaderboardService;
     private LeaderboardController leaderboardController;
 
@@ -33,24 +27,18 @@ public class LeaderboardHandler implements HttpHandler {
     }
 
     /**
-     * Handles incoming HTTP requests.
-     * Only getLeaderboard is supported.
+     * Registers the public leaderboard route, paged with the query parameters limit and offset.
+     * It can be revalidated with its ETag, the Cache-Control header is configured with
+     * mrp.http.cacheControl.leaderboard. It has the search time budget, see {@link Deadlines}.
      *
-     * @param httpExchange contains the HTTP request and response
+     * @param router the router to add the route to
      */
-    @Override
-    public void handle(HttpExchange httpExchange) {
-        Response response;
+    public void registerRoutes(Router router) {
+        String cacheControl = System.getProperty("mrp.http.cacheControl.leaderboard", "public, no-cache");
+        DataVersions versions = DataVersions.getInstance();
 
-        if (httpExchange.getRequestMethod().equals(Method.GET.name())) {
-            response = leaderboardController.getLeaderboard();
-        } else {
-            response = new Response(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    ContentType.JSON,
-                    "{ \"error\": \"Internal Server Error.\" }"
-            );
-        }
-        response.send(httpExchange);
+        router.addPublic(Method.GET, "/api/leaderboard",
+                RouteHandler.withDeadline(Deadlines.SEARCH, request -> leaderboardController.getLeaderboard(request.getQueryParams())),
+                CachePolicy.versioned(cacheControl, request -> versions.leaderboardTag()));
     }
-}
\ No newline at end of file
+}
@@ -1,31 +1,20 @@
 package handler;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import controller.MediaEntryController;
 import controller.RatingController;
-import controller.UserController;
-import model.MediaEntry;
-import model.User;
-import restserver.http.ContentType;
-import restserver.http.HttpStatus;
+import persistence.DataVersions;
 import restserver.http.Method;
-import restserver.server.Request;
-import restserver.server.Response;
+import restserver.server.CachePolicy;
+import restserver.server.RouteHandler;
+import restserver.server.Router;
 import service.IMediaEntryService;
 import service.IRatingService;
-import service.MediaEntryService;
-import service.UserService;
-
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
 
 /**
- * Handles HTTP requests for media entries.
+ * Registers the routes for media entries.
  * It forwards requests to MediaEntryController and RatingController.
  */
-public class MediaEntryHandler implements HttpHandler {
+public class MediaEntryHandler {
 
     private final IMediaEntryService mediaEntryService;
     private MediaEntryController mediaEntryController;
@@ -44,90 +33,38 @@ public class MediaEntryHandler implements HttpHandler {
     }
 
     /**
-     * Handles all incoming HTTP requests for media entries.
-     * It checks the HTTP method, authenticates the user, and forwards the request to the controller.
+     * Registers the media entry routes. All of them require an authenticated user.
+     * The search and single media entries can be revalidated with their ETag,
+     * their Cache-Control header is configured with mrp.http.cacheControl.media.
+     * Both have a time budget, see {@link Deadlines}.
      *
-     * @param httpExchange contains the HTTP request and response
-     * @throws IOException if an input/output error occurs
+     * @param router the router to add the routes to
      */
-    @Override
-    public void handle(HttpExchange httpExchange) {
-        try{
-            Request request = new Request(httpExchange.getRequestURI());
-            Response response = null;
-            String requestBody = new String(httpExchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
-
-            String authHeader = httpExchange.getRequestHeaders().getFirst("Authorization");
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                response = new Response(HttpStatus.UNAUTHORIZED, ContentType.JSON,
-                        "{ \"error\": \"Missing or invalid token\" }");
-                response.send(httpExchange);
-                return;
-            }
-
-            String token = authHeader.substring("Bearer ".length());
-            User user = UserService.getInstance(null).getUserByToken(token); // Singleton aus UserService verwenden
-
-            if (user == null) {
-                response = new Response(HttpStatus.UNAUTHORIZED, ContentType.JSON,
-                        "{ \"error\": \"Invalid token\" }");
-                response.send(httpExchange);
-                return;
-            }
-
-            // Rate Media Entry
-            if(httpExchange.getRequestMethod().equals(Method.POST.name()) &&
-                    request.getPathParts().size() > 2 &&
-                    request.getPathParts().get(3).equalsIgnoreCase("rate")){
-                response = this.ratingController.rateMediaEntry(Integer.parseInt(request.getPathParts().get(2)),requestBody, user);
-            }
-            // Mark MediaEntry as favourite
-            else if(httpExchange.getRequestMethod().equals(Method.POST.name()) &&
-                    request.getPathParts().size() > 2 &&
-                    request.getPathParts().get(3).equalsIgnoreCase("favorite")){
-                response = this.mediaEntryController.favoriteMediaEntry(Integer.parseInt(request.getPathParts().get(2)), user);
-            }
-            // Unmark MediaEntry as favourite
-            else if(httpExchange.getRequestMethod().equals(Method.DELETE.name()) &&
-                    request.getPathParts().size() > 3 &&
-                    request.getPathParts().get(3).equalsIgnoreCase("favorite")){
-                response = this.mediaEntryController.unFavoriteMediaEntry(Integer.parseInt(request.getPathParts().get(2)), user);
-            }
-            // Delete Media Entry
-            else if (httpExchange.getRequestMethod().equals(Method.DELETE.name()) &&
-                    request.getPathParts().size() > 2){
-                response = this.mediaEntryController.deleteMediaEntry(Integer.parseInt(request.getPathParts().get(2)), user);
-            }
-            // Get Media Entry By Id
-            else if (httpExchange.getRequestMethod().equals(Method.GET.name()) &&
-                    request.getPathParts().size() > 2){
-                response = this.mediaEntryController.getMediaEntryById(Integer.parseInt(request.getPathParts().get(2)), user);
-            }
-            // Create Media Entry
-            else if(httpExchange.getRequestMethod().equals(Method.POST.name()) &&
-                    request.getPathParts().size() > 1){
-                response = this.mediaEntryController.createMediaEntry(requestBody, user);
-            }
-            // Update Media Entry
-            else if(httpExchange.getRequestMethod().equals(Method.PUT.name()) &&
-                    request.getPathParts().size() > 2){
-                response = this.mediaEntryController.updateMediaEntry(Integer.parseInt(request.getPathParts().get(2)), requestBody, user);
-            }
-            // Search / Filter Media Entry
-            else if (httpExchange.getRequestMethod().equals(Method.GET.name()) &&
-                    request.getPathParts().size() == 2) {
-
-                Map<String, String> queryParams = request.getQueryParams(httpExchange.getRequestURI());
-
-                response = this.mediaEntryController
-                        .searchAndFilterMediaEntries(queryParams);
-            }
-
-
-            response.send(httpExchange);
+    public void registerRoutes(Router router) {
+        String cacheControl = System.getProperty("mrp.http.cacheControl.media", "private, no-cache");
+        DataVersions versions = DataVersions.getInstance();
 
-        }catch (IOException e){
-            throw new RuntimeException(e);
-        }
+        router.add(Method.GET, "/api/media",
+                RouteHandler.withDeadline(Deadlines.SEARCH, request -> mediaEntryController.searchAndFilterMediaEntries(request.getQueryParams())),
+                CachePolicy.versioned(cacheControl, request -> versions.mediaTag()));
+        router.add(Method.POST, "/api/media",
+                request -> mediaEntryController.createMediaEntry(request.getBody(), request.getUser()));
+        router.add(Method.GET, "/api/media/export",
+                request -> mediaEntryController.exportMediaEntries(request.getQueryParams()));
+        router.add(Method.POST, "/api/media/bulk",
+                request -> mediaEntryController.importMediaEntries(request.getBodyStream(), request.getUser()));
+        router.add(Method.GET, "/api/media/{id:int}",
+                RouteHandler.withDeadline(Deadlines.DETAIL, request -> mediaEntryController.getMediaEntryById(request.getPathInt("id"), request.getUser())),
+                CachePolicy.versioned(cacheControl, request -> versions.mediaEntryTag(request.getPathInt("id"))));
+        router.add(Method.PUT, "/api/media/{id:int}",
+                request -> mediaEntryController.updateMediaEntry(request.getPathInt("id"), request.getBody(), request.getUser()));
+        router.add(Method.DELETE, "/api/media/{id:int}",
+                request -> mediaEntryController.deleteMediaEntry(request.getPathInt("id"), request.getUser()));
+        router.add(Method.POST, "/api/media/{id:int}/rate",
+                request -> ratingController.rateMediaEntry(request.getPathInt("id"), request.getBody(), request.getUser()));
+        router.add(Method.POST, "/api/media/{id:int}/favorite",
+                request -> mediaEntryController.favoriteMediaEntry(request.getPathInt("id"), request.getUser()));
+        router.add(Method.DELETE, "/api/media/{id:int}/favorite",
+                request -> mediaEntryController.unFavoriteMediaEntry(request.getPathInt("id"), request.getUser()));
     }
-}
\ No newline at end of file
+}
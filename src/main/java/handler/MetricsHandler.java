@@ -0,0 +1,32 @@
+package handler;
+
+import controller.MetricsController;
+import metrics.Metrics;
+import restserver.http.Method;
+import restserver.server.Router;
+
+/**
+ * Registers the route for the application metrics.
+ * It forwards requests to the MetricsController.
+ */
+public class MetricsHandler {
+    private MetricsController metricsController;
+
+    /**
+     * Creates a new MetricsHandler.
+     *
+     * @param metrics the registry to expose
+     */
+    public MetricsHandler(Metrics metrics) {
+        this.metricsController = MetricsController.getInstance(metrics);
+    }
+
+    /**
+     * Registers the public metrics route, which is scraped by Prometheus without a token.
+     *
+     * @param router the router to add the route to
+     */
+    public void registerRoutes(Router router) {
+        router.addPublic(Method.GET, "/api/metrics", request -> metricsController.getMetrics());
+    }
+}
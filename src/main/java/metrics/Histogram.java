@@ -0,0 +1,113 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations in fixed buckets, like a Prometheus histogram.
+ *
+ * Recording finds the bucket with a binary search over the bounds and increments a
+ * {@link LongAdder}, so it takes no lock and allocates nothing, and concurrent recordings
+ * do not contend on one counter. Reading is not atomic across buckets, which is fine for scrapes.
+ */
+public final class Histogram {
+
+    /** Upper bounds of the buckets in seconds, the defaults of the Prometheus clients plus 1 ms. */
+    public static final double[] DEFAULT_BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final double[] bounds;
+    private final long[] boundNanos;
+    // one counter per bound plus one for durations above the largest bound
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * Creates a histogram with the default buckets.
+     */
+    public Histogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    /**
+     * Creates a histogram.
+     *
+     * @param bounds the ascending upper bounds of the buckets in seconds
+     */
+    public Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.boundNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be ascending");
+            }
+            boundNanos[i] = (long) (bounds[i] * 1_000_000_000L);
+        }
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int low = 0;
+        int high = boundNanos.length;
+        // first bucket whose bound is not below the duration, the bounds are inclusive
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (boundNanos[mid] < nanos) low = mid + 1;
+            else high = mid;
+        }
+        buckets[low].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Returns the upper bounds of the buckets.
+     *
+     * @return the bounds in seconds, without the implicit +Inf bucket
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Returns the cumulative bucket counts, as Prometheus expects them.
+     *
+     * @return the number of durations up to each bound, the last element counts all durations
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of the recorded durations.
+     *
+     * @return the sum in seconds
+     */
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+}
@@ -0,0 +1,112 @@
+package metrics;
+
+import dto.PageDTO;
+import persistence.RowSink;
+import persistence.WriteResult;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the duration and row count of every call of a repository interface.
+ *
+ * The rows of a call are the size of a returned list or page, the rows passed to a
+ * {@link RowSink} argument, a returned number (imported or exported rows), or 1 for a
+ * returned object. Booleans and write results are not rows.
+ *
+ * The repositories catch their SQL errors and report them in the result, so a call counts as
+ * an error if it throws, returns {@link WriteResult#FAILED} or returns a negative count.
+ * A false or null result is not counted, because it also means that nothing was found.
+ */
+public final class MeteredRepository {
+
+    private MeteredRepository() {
+    }
+
+    /**
+     * Wraps a repository so that its calls are recorded.
+     *
+     * @param type the repository interface
+     * @param repository the repository
+     * @param name the name used in the metrics, e.g. MediaEntryRepository
+     * @param metrics the registry to record to
+     * @param <T> the type of the repository interface
+     * @return the recording repository
+     */
+    public static <T> T wrap(Class<T> type, T repository, String name, Metrics metrics) {
+        // looked up once, so a call only reads this map
+        Map<Method, QueryMetrics> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            methods.put(method, metrics.query(name + "." + method.getName()));
+        }
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> {
+            QueryMetrics query = methods.get(method);
+            if (query == null) {
+                return invoke(repository, method, args);
+            }
+            long[] streamed = countSinkRows(args);
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(repository, method, args);
+                if (isFailure(result)) {
+                    query.recordError(System.nanoTime() - start);
+                    return result;
+                }
+                long rows = streamed != null ? streamed[0] : rowCount(result, method.getReturnType());
+                query.record(System.nanoTime() - start, rows);
+                return result;
+            } catch (Throwable e) {
+                query.recordError(System.nanoTime() - start);
+                throw e;
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    /**
+     * Replaces a RowSink argument by one that counts the rows passed through it.
+     *
+     * @return the counter, or null if the call has no sink
+     */
+    @SuppressWarnings("unchecked")
+    private static long[] countSinkRows(Object[] args) {
+        if (args == null) return null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof RowSink<?> sink) {
+                long[] counter = new long[1];
+                RowSink<Object> target = (RowSink<Object>) sink;
+                args[i] = (RowSink<Object>) row -> {
+                    counter[0]++;
+                    target.accept(row);
+                };
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFailure(Object result) {
+        return result == WriteResult.FAILED || result instanceof Number number && number.longValue() < 0;
+    }
+
+    private static long rowCount(Object result, Class<?> returnType) {
+        if (returnType == void.class || returnType == boolean.class || returnType.isEnum()) return -1;
+        if (result == null) return 0;
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof PageDTO<?> page) return page.getItems() != null ? page.getItems().size() : 0;
+        if (result instanceof Number number) return number.longValue();
+        return 1;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
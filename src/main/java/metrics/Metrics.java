@@ -0,0 +1,245 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the application metrics, exposed in the Prometheus text format by {@link #scrape()}.
+ *
+ * Requests are recorded per route by the router, repository calls per method by
+ * {@link MeteredRepository}. Values that other components already count, like the pool or
+ * cache statistics, are registered as gauges or counters that are read at scrape time.
+ * Recording is lock-free, only registering and scraping build objects.
+ */
+public class Metrics {
+    private static Metrics instance;
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+    private final Map<String, QueryMetrics> queries = new ConcurrentSkipListMap<>();
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * A metric family of registered values with its type and help text.
+     */
+    private record Family(String type, String help, Map<String, DoubleSupplier> samples) {}
+
+    /**
+     * Returns the single instance of the Metrics.
+     * If it does not exist, it will be created.
+     *
+     * @return the Metrics instance
+     */
+    public static synchronized Metrics getInstance() {
+        if (instance == null) instance = new Metrics();
+        return instance;
+    }
+
+    /**
+     * Removes the single instance, so the next call to getInstance starts with empty metrics.
+     */
+    public static synchronized void resetInstance() {
+        instance = null;
+    }
+
+    /**
+     * Returns the metrics of a route, creating them on first use.
+     *
+     * @param method the HTTP method
+     * @param route the path template of the route
+     * @return the route metrics
+     */
+    public RouteMetrics route(String method, String route) {
+        return routes.computeIfAbsent(route + " " + method, key -> new RouteMetrics(method, route));
+    }
+
+    /**
+     * Returns the metrics of a repository method, creating them on first use.
+     *
+     * @param name the name of the method, e.g. MediaEntryRepository.getMediaEntryByID
+     * @return the query metrics
+     */
+    public QueryMetrics query(String name) {
+        return queries.computeIfAbsent(name, QueryMetrics::new);
+    }
+
+    /**
+     * Counts a request that started.
+     */
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a request that was answered.
+     *
+     * @param route the metrics of the matched route
+     * @param status the HTTP status of the response
+     * @param nanos the time from receiving the request until the response was sent
+     */
+    public void requestFinished(RouteMetrics route, int status, long nanos) {
+        inFlight.decrementAndGet();
+        route.record(status, nanos);
+    }
+
+    /**
+     * Returns the number of requests that are being handled.
+     *
+     * @return the in-flight requests
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Registers a value that can go up and down, e.g. the number of active connections.
+     *
+     * @param name the metric name
+     * @param labels the labels, e.g. pool="primary", or an empty string
+     * @param help the description of the metric
+     * @param value reads the current value, NaN skips the sample
+     */
+    public void gauge(String name, String labels, String help, DoubleSupplier value) {
+        register(name, "gauge", labels, help, value);
+    }
+
+    /**
+     * Registers a value that only grows, e.g. the number of cache hits.
+     *
+     * @param name the metric name, ending with _total
+     * @param labels the labels, e.g. cache="media", or an empty string
+     * @param help the description of the metric
+     * @param value reads the current value, NaN skips the sample
+     */
+    public void counter(String name, String labels, String help, DoubleSupplier value) {
+        register(name, "counter", labels, help, value);
+    }
+
+    private void register(String name, String type, String labels, String help, DoubleSupplier value) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help, new ConcurrentSkipListMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type());
+        }
+        family.samples().put(labels, value);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     *
+     * @return the metrics text
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "mrp_http_requests_in_flight", "gauge", "Requests that are being handled");
+        sample(out, "mrp_http_requests_in_flight", "", inFlight.get());
+
+        header(out, "mrp_http_request_duration_seconds", "histogram", "Time from receiving a request until its response was sent");
+        for (RouteMetrics route : routes.values()) {
+            if (route.getLatency().getCount() == 0) continue;
+            histogram(out, "mrp_http_request_duration_seconds", routeLabels(route), route.getLatency());
+        }
+
+        header(out, "mrp_http_responses_total", "counter", "Responses by route and status code");
+        for (RouteMetrics route : routes.values()) {
+            String labels = routeLabels(route);
+            route.forEachStatus((status, count) ->
+                    sample(out, "mrp_http_responses_total", labels + ",status=\"" + status + "\"", count));
+        }
+
+        header(out, "mrp_http_request_statements_total", "counter", "Database statements executed by requests");
+        for (RouteMetrics route : routes.values()) {
+            if (route.getLatency().getCount() == 0) continue;
+            sample(out, "mrp_http_request_statements_total", routeLabels(route), route.getStatements());
+        }
+
+        header(out, "mrp_http_request_max_statements", "gauge", "Most database statements executed by one request");
+        for (RouteMetrics route : routes.values()) {
+            if (route.getLatency().getCount() == 0) continue;
+            sample(out, "mrp_http_request_max_statements", routeLabels(route), route.getMaxStatements());
+        }
+
+        header(out, "mrp_http_repeated_statement_requests_total", "counter", "Requests that ran one statement more often than the threshold");
+        for (RouteMetrics route : routes.values()) {
+            if (route.getLatency().getCount() == 0) continue;
+            sample(out, "mrp_http_repeated_statement_requests_total", routeLabels(route), route.getRepeatedStatementRequests());
+        }
+
+        header(out, "mrp_repository_call_duration_seconds", "histogram", "Duration of repository calls");
+        for (QueryMetrics query : queries.values()) {
+            if (query.getLatency().getCount() == 0) continue;
+            histogram(out, "mrp_repository_call_duration_seconds", queryLabels(query), query.getLatency());
+        }
+
+        header(out, "mrp_repository_rows_total", "counter", "Rows returned or written by repository calls");
+        for (QueryMetrics query : queries.values()) {
+            if (query.getLatency().getCount() == 0) continue;
+            sample(out, "mrp_repository_rows_total", queryLabels(query), query.getRows());
+        }
+
+        header(out, "mrp_repository_errors_total", "counter", "Repository calls that threw an exception or reported a database failure");
+        for (QueryMetrics query : queries.values()) {
+            if (query.getLatency().getCount() == 0) continue;
+            sample(out, "mrp_repository_errors_total", queryLabels(query), query.getErrors());
+        }
+
+        families.forEach((name, family) -> {
+            header(out, name, family.type(), family.help());
+            family.samples().forEach((labels, value) -> {
+                double current = value.getAsDouble();
+                if (!Double.isNaN(current)) sample(out, name, labels, current);
+            });
+        });
+        return out.toString();
+    }
+
+    private static String routeLabels(RouteMetrics route) {
+        return "method=\"" + route.getMethod() + "\",route=\"" + escape(route.getRoute()) + "\"";
+    }
+
+    private static String queryLabels(QueryMetrics query) {
+        return "method=\"" + escape(query.getName()) + "\"";
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        for (int i = 0; i < counts.length; i++) {
+            String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+            sample(out, name + "_bucket", labels + ",le=\"" + le + "\"", counts[i]);
+        }
+        sample(out, name + "_sum", labels, histogram.getSumSeconds());
+        // the count equals the +Inf bucket, reading the buckets again could give a different value
+        sample(out, name + "_count", labels, counts[counts.length - 1]);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Formats a value, whole numbers without a fraction.
+     */
+    static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Escapes a label value as the text format requires.
+     */
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,55 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings, returned rows and failures of one repository method.
+ */
+public final class QueryMetrics {
+
+    private final String name;
+    private final Histogram latency = new Histogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    QueryMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a finished call.
+     *
+     * @param nanos the duration of the call
+     * @param rowCount the number of returned rows, or -1 if the method does not return rows
+     */
+    public void record(long nanos, long rowCount) {
+        latency.record(nanos);
+        if (rowCount > 0) rows.add(rowCount);
+    }
+
+    /**
+     * Records a call that failed, by an exception or a failure result.
+     *
+     * @param nanos the duration of the call
+     */
+    public void recordError(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
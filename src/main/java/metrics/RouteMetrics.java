@@ -0,0 +1,115 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and status codes of one route.
+ * The router keeps the instance of every route, so a request is recorded without a lookup.
+ */
+public final class RouteMetrics {
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final String method;
+    private final String route;
+    private final Histogram latency = new Histogram();
+    // counters by status code, created when a status is first seen
+    private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+    private final LongAdder statements = new LongAdder();
+    private final AtomicInteger maxStatements = new AtomicInteger();
+    private final LongAdder repeatedStatementRequests = new LongAdder();
+
+    RouteMetrics(String method, String route) {
+        this.method = method;
+        this.route = route;
+    }
+
+    /**
+     * Records a finished request.
+     *
+     * @param status the HTTP status of the response
+     * @param nanos the time from receiving the request until the response was sent
+     */
+    public void record(int status, long nanos) {
+        latency.record(nanos);
+        int slot = Math.min(Math.max(status, MIN_STATUS), MAX_STATUS) - MIN_STATUS;
+        LongAdder counter = statuses.get(slot);
+        if (counter == null) {
+            statuses.compareAndSet(slot, null, new LongAdder());
+            counter = statuses.get(slot);
+        }
+        counter.increment();
+    }
+
+    /**
+     * Records the database statements of a finished request.
+     *
+     * @param count the number of statements the request executed
+     * @param repeated true if the request ran one statement suspiciously often (N+1 queries)
+     */
+    public void recordStatements(int count, boolean repeated) {
+        statements.add(count);
+        maxStatements.accumulateAndGet(count, Math::max);
+        if (repeated) repeatedStatementRequests.increment();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    /**
+     * Returns the most statements a single request of the route executed,
+     * tests can assert an upper bound per endpoint with it.
+     *
+     * @return the maximum statement count
+     */
+    public int getMaxStatements() {
+        return maxStatements.get();
+    }
+
+    public long getRepeatedStatementRequests() {
+        return repeatedStatementRequests.sum();
+    }
+
+    /**
+     * Returns how many responses had the status.
+     *
+     * @param status the HTTP status code
+     * @return the number of responses
+     */
+    public long getStatusCount(int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) return 0;
+        LongAdder counter = statuses.get(status - MIN_STATUS);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Calls the consumer for every status code that was answered at least once.
+     */
+    void forEachStatus(StatusConsumer consumer) {
+        for (int slot = 0; slot < statuses.length(); slot++) {
+            LongAdder counter = statuses.get(slot);
+            if (counter != null) consumer.accept(slot + MIN_STATUS, counter.sum());
+        }
+    }
+
+    @FunctionalInterface
+    interface StatusConsumer {
+        void accept(int status, long count);
+    }
+}
@@ -1,8 +1,11 @@
 package model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Represents a user profile.
  * Stores username, email, total ratings, average score, favorite genre and profile ID.
+ * The rank is only set (and serialized) when the profile is part of the leaderboard.
  */
 public class Profile {
     private int profileId;
@@ -11,6 +14,8 @@ public class Profile {
     private double avgScore;
     private String favoriteGenre;
     private String email;
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private int rank;
 
     /**
      * Creates a new Profile with the given details.
@@ -82,4 +87,12 @@ public class Profile {
     public void setFavoriteGenre(String favoriteGenre) {
         this.favoriteGenre = favoriteGenre;
     }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
 }
@@ -0,0 +1,418 @@
+package persistence;
+
+import database.UnitOfWork;
+import dto.PageDTO;
+import model.MediaEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache for single media entries in front of another repository.
+ * Only getMediaEntryByID is cached, all other methods are passed on unchanged.
+ *
+ * The cache is bounded: when it is full, a new entry is only admitted if it was
+ * requested more often than the least frequently used of a few sampled entries,
+ * which is then evicted. Request frequencies are counted approximately in a small
+ * count-min sketch that is halved periodically, so old popularity fades out.
+ * Entries expire after a time to live and are invalidated when the entry is updated
+ * or deleted, or when one of its ratings changes (see {@link #invalidate(int)}).
+ *
+ * The cache can be configured with the system properties mrp.cache.media.maxEntries
+ * and mrp.cache.media.ttlSeconds.
+ */
+public class CachingMediaEntryRepository implements IMediaEntryRepository {
+
+    // number of cached entries compared when looking for an eviction victim
+    private static final int SAMPLE_SIZE = 8;
+
+    /**
+     * A cached media entry together with the time it was loaded.
+     */
+    private record CachedEntry(MediaEntry entry, long loadedAt) {}
+
+    private final IMediaEntryRepository delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    private final Map<Integer, CachedEntry> entries = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    // incremented on every invalidation, a load that overlaps one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // cached ids in an array for random sampling, guarded by this
+    private final int[] keys;
+    private final Map<Integer, Integer> keySlots = new HashMap<>();
+    private int keyCount;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache that is configured with system properties.
+     *
+     * @param delegate the repository that loads the media entries
+     */
+    public CachingMediaEntryRepository(IMediaEntryRepository delegate) {
+        this(delegate,
+                Integer.getInteger("mrp.cache.media.maxEntries", 1000),
+                Duration.ofSeconds(Long.getLong("mrp.cache.media.ttlSeconds", 300)));
+    }
+
+    /**
+     * Creates a cache with the given configuration.
+     *
+     * @param delegate the repository that loads the media entries
+     * @param maxEntries the maximum number of cached media entries
+     * @param ttl how long a media entry is cached at most
+     */
+    public CachingMediaEntryRepository(IMediaEntryRepository delegate, int maxEntries, Duration ttl) {
+        this(delegate, maxEntries, ttl, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache with the given clock (used for testing).
+     *
+     * @param delegate the repository that loads the media entries
+     * @param maxEntries the maximum number of cached media entries
+     * @param ttl how long a media entry is cached at most
+     * @param clock the time source in nanoseconds
+     */
+    CachingMediaEntryRepository(IMediaEntryRepository delegate, int maxEntries, Duration ttl, LongSupplier clock) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive");
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.keys = new int[maxEntries];
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Returns a media entry from the cache or loads it from the underlying repository.
+     * Callers get their own copy and may change it without affecting the cache.
+     *
+     * @param id the ID of the media entry
+     * @return the media entry or null if not found
+     */
+    @Override
+    public MediaEntry getMediaEntryByID(int id) {
+        sketch.increment(id);
+        CachedEntry cached = entries.get(id);
+        if (cached != null) {
+            if (clock.getAsLong() - cached.loadedAt() < ttlNanos) {
+                hits.increment();
+                return copy(cached.entry());
+            }
+            remove(id, cached);
+        }
+        misses.increment();
+
+        long invalidationsBefore = invalidations.get();
+        MediaEntry loaded = delegate.getMediaEntryByID(id);
+        if (loaded != null) {
+            admit(id, new CachedEntry(copy(loaded), clock.getAsLong()), invalidationsBefore);
+        }
+        return loaded;
+    }
+
+    /**
+     * Removes a media entry from the cache so that the next read loads it again.
+     * Has to be called whenever something shown in the media entry changes outside
+     * of this repository, e.g. its ratings.
+     *
+     * @param id the ID of the media entry
+     */
+    public void invalidate(int id) {
+        invalidations.incrementAndGet();
+        CachedEntry cached = entries.get(id);
+        if (cached != null) remove(id, cached);
+    }
+
+    /**
+     * Removes all media entries from the cache.
+     */
+    public synchronized void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+        keySlots.clear();
+        keyCount = 0;
+    }
+
+    /**
+     * Deletes a media entry and removes it from the cache.
+     *
+     * @param id the id of the media
+     * @param userId the user performing the deletion
+     * @return the outcome of the deletion
+     */
+    @Override
+    public WriteResult deleteMediaEntry(int id, int userId) {
+        try {
+            return delegate.deleteMediaEntry(id, userId);
+        } finally {
+            invalidate(id);
+            // readers may cache the old entry again until the transaction commits
+            UnitOfWork.afterCommit(() -> invalidate(id));
+        }
+    }
+
+    /**
+     * Updates a media entry and removes it from the cache.
+     *
+     * @param id the ID of the media entry
+     * @param title new title
+     * @param description new description
+     * @param mediatype new type
+     * @param genres new genres
+     * @param releaseYear new release year
+     * @param agerestriction new age restriction
+     * @param userId the user performing the update
+     * @return the outcome of the update
+     */
+    @Override
+    public WriteResult updateMediaEntry(int id, String title, String description, String mediatype,
+                                        List<String> genres, int releaseYear, int agerestriction, int userId) {
+        try {
+            return delegate.updateMediaEntry(id, title, description, mediatype, genres, releaseYear, agerestriction, userId);
+        } finally {
+            invalidate(id);
+            // readers may cache the old entry again until the transaction commits
+            UnitOfWork.afterCommit(() -> invalidate(id));
+        }
+    }
+
+    @Override
+    public List<MediaEntry> getAllMediaEntries() {
+        return delegate.getAllMediaEntries();
+    }
+
+    @Override
+    public boolean addMediaEntry(MediaEntry mediaEntry) {
+        return delegate.addMediaEntry(mediaEntry);
+    }
+
+    @Override
+    public int importMediaEntries(RowStream<MediaEntry> mediaEntries) throws IOException {
+        // new entries are not cached yet
+        return delegate.importMediaEntries(mediaEntries);
+    }
+
+    @Override
+    public WriteResult setFavoriteStatus(int userid, int mediaentryid) {
+        return delegate.setFavoriteStatus(userid, mediaentryid);
+    }
+
+    @Override
+    public WriteResult setUnFavoriteStatus(int userid, int mediaentryid) {
+        return delegate.setUnFavoriteStatus(userid, mediaentryid);
+    }
+
+    @Override
+    public List<MediaEntry> searchAndFilterMediaEntries(String title, String genre, String sortBy) {
+        return delegate.searchAndFilterMediaEntries(title, genre, sortBy);
+    }
+
+    @Override
+    public List<MediaEntry> fullSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy) {
+        return delegate.fullSearchAndFilterMediaEntries(filters, sortBy);
+    }
+
+    @Override
+    public void streamSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy, RowSink<MediaEntry> sink) throws IOException {
+        delegate.streamSearchAndFilterMediaEntries(filters, sortBy, sink);
+    }
+
+    @Override
+    public long exportMediaEntries(Map<String, Object> filters, ExportFormat format, OutputStream out) throws IOException {
+        return delegate.exportMediaEntries(filters, format, out);
+    }
+
+    @Override
+    public PageDTO<MediaEntry> searchMediaEntriesPage(Map<String, Object> filters, String sortBy, MediaEntryCursor after, int limit) {
+        return delegate.searchMediaEntriesPage(filters, sortBy, after, limit);
+    }
+
+    @Override
+    public List<MediaEntry> getRecommendationByGenre(int userid) {
+        return delegate.getRecommendationByGenre(userid);
+    }
+
+    @Override
+    public List<MediaEntry> getRecommendationByContent(int userid) {
+        return delegate.getRecommendationByContent(userid);
+    }
+
+    /**
+     * Returns how many reads were answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many reads had to be loaded from the underlying repository.
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many entries were removed to make room for more frequently used ones.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the share of reads answered from the cache.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the number of cached media entries.
+     *
+     * @return the cache size
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Stores a loaded entry unless it was invalidated meanwhile or is used less
+     * frequently than every sampled eviction candidate.
+     */
+    private synchronized void admit(int id, CachedEntry cached, long invalidationsBefore) {
+        if (invalidations.get() != invalidationsBefore) return;
+        if (!keySlots.containsKey(id)) {
+            if (keyCount == maxEntries) {
+                int victim = sampleVictim();
+                if (sketch.frequency(victim) >= sketch.frequency(id)) return;
+                entries.remove(victim);
+                removeKey(victim);
+                evictions.increment();
+            }
+            keySlots.put(id, keyCount);
+            keys[keyCount++] = id;
+        }
+        entries.put(id, cached);
+    }
+
+    private synchronized void remove(int id, CachedEntry cached) {
+        if (entries.remove(id, cached)) {
+            removeKey(id);
+        }
+    }
+
+    /**
+     * Returns the least frequently used of a few randomly chosen cached ids.
+     */
+    private int sampleVictim() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int victim = keys[random.nextInt(keyCount)];
+        for (int i = 1; i < SAMPLE_SIZE; i++) {
+            int candidate = keys[random.nextInt(keyCount)];
+            if (sketch.frequency(candidate) < sketch.frequency(victim)) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    private void removeKey(int id) {
+        Integer slot = keySlots.remove(id);
+        if (slot == null) return;
+        int last = keys[--keyCount];
+        if (slot != keyCount) {
+            keys[slot] = last;
+            keySlots.put(last, slot);
+        }
+    }
+
+    private static MediaEntry copy(MediaEntry source) {
+        MediaEntry copy = new MediaEntry();
+        copy.setMediaentryid(source.getMediaentryid());
+        copy.setTitle(source.getTitle());
+        copy.setDescription(source.getDescription());
+        copy.setMediaType(source.getMediaType());
+        copy.setGenres(source.getGenres() != null ? new ArrayList<>(source.getGenres()) : new ArrayList<>());
+        copy.setReleaseYear(source.getReleaseYear());
+        copy.setAgeRestriction(source.getAgeRestriction());
+        copy.setAvgscore(source.getAvgscore());
+        copy.setCreatorId(source.getCreatorId());
+        return copy;
+    }
+
+    /**
+     * Approximate request counter (count-min sketch) with four rows of counters
+     * that saturate at 15. After a number of increments proportional to the cache
+     * size all counters are halved.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        private final int resetAfter;
+        private final AtomicLong increments = new AtomicLong();
+
+        private FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(16, maxEntries * 2 - 1)) << 1;
+            this.counters = new AtomicIntegerArray(width * ROWS);
+            this.mask = width - 1;
+            this.resetAfter = maxEntries * 10;
+        }
+
+        private void increment(int key) {
+            for (int row = 0; row < ROWS; row++) {
+                counters.getAndUpdate(index(key, row), count -> Math.min(count + 1, MAX_COUNT));
+            }
+            if (increments.incrementAndGet() % resetAfter == 0) {
+                for (int i = 0; i < counters.length(); i++) {
+                    counters.getAndUpdate(i, count -> count >> 1);
+                }
+            }
+        }
+
+        private int frequency(int key) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                min = Math.min(min, counters.get(index(key, row)));
+            }
+            return min;
+        }
+
+        private int index(int key, int row) {
+            int hash = key * SEEDS[row];
+            hash ^= hash >>> 16;
+            return row * (mask + 1) + (hash & mask);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package persistence;
+
+import database.DatabaseManager;
+import database.ReadRouting;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters of the data that clients read, used to build ETags without
+ * querying the database or hashing the response body.
+ *
+ * The repositories bump the versions after every successful write. Media entries
+ * share one sequence: a changed entry gets the next value of the media version, so
+ * the version of an entry only changes when the entry itself changes, while the media
+ * version changes with every entry and is used for search results. Rating changes
+ * also change the leaderboard, as do new users and profile updates.
+ *
+ * The counters are kept in memory and start again after a restart, therefore
+ * ETags also contain the epoch of this instance.
+ *
+ * Only entries that changed have their own version, at most mrp.cache.versions.maxEntries of them.
+ * Deleted entries are removed, and when the limit is reached the older half is evicted. Entries
+ * without their own version share a floor version that is at least the version of every removed
+ * entry, so their tags change when an entry is removed, but never stay the same across a change.
+ *
+ * Every version also remembers when it changed. Its tag is withheld for as long as a read
+ * replica may not have the change yet, so a client never gets an ETag for a version together
+ * with an older body. Only the data that changed loses its tag, e.g. a rating of one entry
+ * withholds the tags of that entry, the search results and the leaderboard, not those of other entries.
+ */
+public class DataVersions {
+
+    // entries with their own version, replaced in tests
+    static int maxEntries = Integer.getInteger("mrp.cache.versions.maxEntries", 10_000);
+
+    private static DataVersions instance = new DataVersions();
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong media = new AtomicLong();
+    private final Map<Integer, EntryVersion> mediaEntries = new ConcurrentHashMap<>();
+    private final AtomicLong leaderboard = new AtomicLong();
+    // when the versions last changed, in ReadRouting time; written before the version is bumped
+    private volatile long mediaChangedAt;
+    private volatile long leaderboardChangedAt;
+    // the version of the entries that are not in mediaEntries
+    private volatile EntryVersion floor = new EntryVersion(0, 0);
+
+    private record EntryVersion(long version, long changedAt) {
+    }
+
+    /** Private constructor to prevent creating multiple instances. */
+    private DataVersions() {
+    }
+
+    /**
+     * Returns the single instance of the version counters.
+     *
+     * @return the shared DataVersions instance
+     */
+    public static DataVersions getInstance() {
+        if (instance == null) {
+            instance = new DataVersions();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the epoch of the counters, the time this instance was created.
+     *
+     * @return the epoch in milliseconds
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the version of all media entries, it changes whenever any entry or rating changes.
+     *
+     * @return the media version
+     */
+    public long getMediaVersion() {
+        return media.get();
+    }
+
+    /**
+     * Returns the version of a single media entry.
+     *
+     * @param mediaentryid the ID of the media entry
+     * @return the version, 0 if no entry has changed or been removed since the start
+     */
+    public long getMediaEntryVersion(int mediaentryid) {
+        return entryVersion(mediaentryid).version();
+    }
+
+    private EntryVersion entryVersion(int mediaentryid) {
+        // the floor is raised before entries are removed, so it is read after the entry
+        EntryVersion entry = mediaEntries.get(mediaentryid);
+        EntryVersion shared = floor;
+        return entry != null && entry.version() > shared.version() ? entry : shared;
+    }
+
+    /**
+     * Returns the number of media entries that have their own version.
+     *
+     * @return the number of tracked entries
+     */
+    int mediaEntryCount() {
+        return mediaEntries.size();
+    }
+
+    /**
+     * Returns the version of the leaderboard.
+     *
+     * @return the leaderboard version
+     */
+    public long getLeaderboardVersion() {
+        return leaderboard.get();
+    }
+
+    /**
+     * Builds a version string that is unique across restarts, e.g. for an ETag.
+     *
+     * @param name what the version belongs to, e.g. "media-7"
+     * @param version the version counter
+     * @return the name, the epoch and the version
+     */
+    public String tag(String name, long version) {
+        return name + "-" + Long.toString(epoch, 36) + "-" + version;
+    }
+
+    /**
+     * Returns the tag of the media version, used for search results.
+     *
+     * @return the tag, or null while the replica may not have the latest change
+     */
+    public String mediaTag() {
+        long version = media.get();
+        return settled(version, mediaChangedAt) ? tag("media", version) : null;
+    }
+
+    /**
+     * Returns the tag of the version of a single media entry.
+     *
+     * @param mediaentryid the ID of the media entry
+     * @return the tag, or null while the replica may not have the latest change of the entry
+     */
+    public String mediaEntryTag(int mediaentryid) {
+        EntryVersion entry = entryVersion(mediaentryid);
+        return settled(entry.version(), entry.changedAt()) ? tag("media-" + mediaentryid, entry.version()) : null;
+    }
+
+    /**
+     * Returns the tag of the leaderboard version.
+     *
+     * @return the tag, or null while the replica may not have the latest change
+     */
+    public String leaderboardTag() {
+        long version = leaderboard.get();
+        return settled(version, leaderboardChangedAt) ? tag("leaderboard", version) : null;
+    }
+
+    private static boolean settled(long version, long changedAt) {
+        return version == 0 || !DatabaseManager.INSTANCE.mayReadStaleData(changedAt);
+    }
+
+    /**
+     * Records that media entries were added without knowing their IDs.
+     */
+    public void mediaAdded() {
+        mediaChangedAt = ReadRouting.now();
+        media.incrementAndGet();
+    }
+
+    /**
+     * Records that a media entry was changed or deleted.
+     *
+     * @param mediaentryid the ID of the media entry
+     */
+    public void mediaEntryChanged(int mediaentryid) {
+        long now = ReadRouting.now();
+        mediaChangedAt = now;
+        mediaEntries.put(mediaentryid, new EntryVersion(media.incrementAndGet(), now));
+        if (mediaEntries.size() > maxEntries) {
+            evictOlderHalf();
+        }
+    }
+
+    /**
+     * Records that a media entry was deleted, which also removes its ratings.
+     * The entry loses its own version, the floor version takes its place.
+     *
+     * @param mediaentryid the ID of the deleted media entry
+     */
+    public void mediaEntryDeleted(int mediaentryid) {
+        long now = ReadRouting.now();
+        mediaChangedAt = now;
+        raiseFloor(new EntryVersion(media.incrementAndGet(), now));
+        mediaEntries.remove(mediaentryid);
+        profilesChanged();
+    }
+
+    /**
+     * Removes the entries with the older half of the versions and raises the floor to the newest
+     * of them, so the evicted entries keep a version at least as new as their own.
+     */
+    private synchronized void evictOlderHalf() {
+        if (mediaEntries.size() <= maxEntries) return;
+        EntryVersion[] entries = mediaEntries.values().toArray(new EntryVersion[0]);
+        Arrays.sort(entries, (a, b) -> Long.compare(a.version(), b.version()));
+        EntryVersion newestEvicted = entries[entries.length / 2];
+        raiseFloor(newestEvicted);
+        mediaEntries.values().removeIf(entry -> entry.version() <= newestEvicted.version());
+    }
+
+    private synchronized void raiseFloor(EntryVersion version) {
+        if (version.version() > floor.version()) {
+            floor = version;
+        }
+    }
+
+    /**
+     * Records that the ratings of a media entry changed, which changes its score
+     * and the rating statistics of the profiles.
+     *
+     * @param mediaentryid the ID of the rated media entry
+     */
+    public void ratingsChanged(int mediaentryid) {
+        mediaEntryChanged(mediaentryid);
+        profilesChanged();
+    }
+
+    /**
+     * Records that users or profiles were added or changed.
+     */
+    public void profilesChanged() {
+        leaderboardChangedAt = ReadRouting.now();
+        leaderboard.incrementAndGet();
+    }
+
+    /**
+     * Resets the singleton instance (mainly for testing purposes).
+     */
+    public static void resetInstance() {
+        instance = null;
+    }
+}
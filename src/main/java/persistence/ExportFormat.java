@@ -0,0 +1,22 @@
+package persistence;
+
+/**
+ * Output formats of the media export.
+ */
+public enum ExportFormat {
+    /** Comma separated values with a header row, genres as a JSON array. */
+    CSV,
+    /** One JSON object per line (newline delimited JSON). */
+    NDJSON;
+
+    /**
+     * Parses a format name, ignoring case.
+     *
+     * @param name the name, e.g. "csv"
+     * @return the format
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static ExportFormat parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,106 @@
+package persistence;
+
+import database.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of genre names and their IDs.
+ *
+ * Genres are only ever added, so a name that was resolved once keeps its ID and is
+ * served from memory afterwards. Unknown names are created and looked up together in
+ * one statement. The cache holds at most one entry per row of the genre table: names that were
+ * resolved in a transaction are only cached once the {@link UnitOfWork} committed, because a
+ * rollback removes the genres that were created in it.
+ */
+class GenreCache {
+
+    // creates the missing genres; existing ones are not returned by the insert and are
+    // read from the table instead, so every name is in exactly one part of the union
+    private static final String RESOLVE_SQL = """
+        WITH input AS (
+            SELECT DISTINCT unnest(?::text[]) AS name
+        ), inserted AS (
+            INSERT INTO genre (name) SELECT name FROM input
+            ON CONFLICT (name) DO NOTHING
+            RETURNING genreid, name
+        )
+        SELECT genreid, name FROM inserted
+        UNION ALL
+        SELECT g.genreid, g.name FROM genre g JOIN input i ON g.name = i.name
+    """;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the IDs of the genres, creating the genres that do not exist yet.
+     * Duplicate names are resolved once.
+     *
+     * @param conn the connection, the new genres are created in the transaction of the current unit of work
+     * @param names the genre names
+     * @return the distinct genre IDs
+     * @throws SQLException if the genres cannot be created
+     */
+    List<Integer> resolve(Connection conn, List<String> names) throws SQLException {
+        Set<Integer> result = new LinkedHashSet<>();
+        List<String> missing = new ArrayList<>();
+        Map<String, Integer> resolved = new HashMap<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                result.add(id);
+            } else {
+                missing.add(name);
+            }
+        }
+
+        // a genre created by a concurrent transaction may not be visible to the first attempt yet
+        for (int attempt = 0; attempt < 2 && !missing.isEmpty(); attempt++) {
+            try (PreparedStatement ps = conn.prepareStatement(RESOLVE_SQL)) {
+                ps.setArray(1, conn.createArrayOf("text", missing.toArray()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String name = rs.getString("name");
+                        int id = rs.getInt("genreid");
+                        resolved.put(name, id);
+                        result.add(id);
+                        missing.remove(name);
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new SQLException("Genres could not be resolved: " + missing);
+        }
+        if (!resolved.isEmpty()) {
+            UnitOfWork.afterCommit(() -> ids.putAll(resolved));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Forgets all genres, e.g. after genres were deleted outside of the application.
+     */
+    void clear() {
+        ids.clear();
+    }
+
+    /**
+     * Returns the number of cached genres.
+     *
+     * @return the cache size
+     */
+    int size() {
+        return ids.size();
+    }
+}
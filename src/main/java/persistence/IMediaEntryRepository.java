@@ -1,7 +1,10 @@
 package persistence;
 
+import dto.PageDTO;
 import model.MediaEntry;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -13,14 +16,28 @@ public interface IMediaEntryRepository {
 
     List<MediaEntry> getAllMediaEntries();
     boolean addMediaEntry(MediaEntry mediaEntry);
-    boolean deleteMediaEntry(int id);
+    int importMediaEntries(RowStream<MediaEntry> mediaEntries) throws IOException;
+    WriteResult deleteMediaEntry(int id, int userId);
     MediaEntry getMediaEntryByID(int id);
-    boolean updateMediaEntry(int id, String title, String description, String mediatype, List<String> genres, int releaseYear, int agerestriction, int creatorId);
-    boolean setFavoriteStatus(int userid, int mediaentryid);
-    boolean setUnFavoriteStatus(int userid, int mediaentryid);
+    WriteResult updateMediaEntry(int id, String title, String description, String mediatype, List<String> genres, int releaseYear, int agerestriction, int userId);
+    WriteResult setFavoriteStatus(int userid, int mediaentryid);
+    WriteResult setUnFavoriteStatus(int userid, int mediaentryid);
     List<MediaEntry> searchAndFilterMediaEntries(String title, String genre, String sortBy);
     List<MediaEntry> fullSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy);
+    long exportMediaEntries(Map<String, Object> filters, ExportFormat format, OutputStream out) throws IOException;
+    void streamSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy, RowSink<MediaEntry> sink) throws IOException;
+    PageDTO<MediaEntry> searchMediaEntriesPage(Map<String, Object> filters, String sortBy, MediaEntryCursor after, int limit);
     List<MediaEntry> getRecommendationByGenre(int userid);
     List<MediaEntry> getRecommendationByContent(int userid);
 
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the media search supports a sort option.
+     *
+     * @param sortBy the sort option, null for unsorted
+     * @return true for null, title, year and score
+     */
+    static boolean isValidSortOption(String sortBy) {
+        return sortBy == null || sortBy.equals("title") || sortBy.equals("year") || sortBy.equals("score");
+    }
+}
@@ -6,6 +6,7 @@ import model.Profile;
 import model.Rating;
 import model.User;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,12 +16,12 @@ import java.util.Map;
  * Provides methods to add, update, delete, like, and fetch ratings and rating history.
  */
 public interface IRatingRepository {
-    boolean likeRating(int ratingid, User user);
-    boolean rateMediaEntry(int mediaentryid, int stars, String comment, User user);
-    boolean updateRating(int ratingid, int stars, String comment, User user);
+    WriteResult likeRating(int ratingid, User user);
+    WriteResult rateMediaEntry(int mediaentryid, int stars, String comment, User user);
+    WriteResult updateRating(int ratingid, int stars, String comment, User user);
     List<RatingHistoryDTO> getRatingHistory(int userId, User user);
+    void streamRatingHistory(int userId, RowSink<RatingHistoryDTO> sink) throws IOException;
     Rating getRatingById(int ratingid);
-    boolean confirmRatingComment(int ratingid);
-    boolean deleteRating(int ratingid);
-    boolean hasUserLikedRating(int ratingId, int userId);
+    WriteResult confirmRatingComment(int ratingid, User user);
+    WriteResult deleteRating(int ratingid, User user);
 }
@@ -4,6 +4,7 @@ import model.MediaEntry;
 import model.Profile;
 import model.User;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -16,6 +17,7 @@ public interface IUserRepository {
     public User getUserByUsername(String username);
     Profile getProfile(int userId);
     List<MediaEntry> getFavorites(int userId);
+    void streamFavorites(int userId, RowSink<MediaEntry> sink) throws IOException;
     boolean updateProfile(int userId, String email, String favoritegenre);
-    List<Profile> getLeaderboard();
+    List<Profile> getLeaderboard(int limit, int offset);
 }
\ No newline at end of file
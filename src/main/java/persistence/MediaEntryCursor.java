@@ -0,0 +1,51 @@
+package persistence;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last media entry of a page for keyset pagination.
+ * Stores the sort option, the sort value of the last entry and its ID as tie-breaker.
+ * Clients only see the encoded form, which they pass back unchanged.
+ *
+ * @param sortBy the sort option the page was created with (title, year, score or id)
+ * @param value the sort value of the last entry as text (empty when sorted by id)
+ * @param mediaentryid the ID of the last entry
+ */
+public record MediaEntryCursor(String sortBy, String value, int mediaentryid) {
+
+    /**
+     * Returns the opaque string form of the cursor.
+     *
+     * @return the URL-safe encoded cursor
+     */
+    public String encode() {
+        String raw = sortBy + "|" + mediaentryid + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor created by {@link #encode()}.
+     *
+     * @param encoded the encoded cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MediaEntryCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid cursor");
+            switch (parts[0]) {
+                case "year" -> Integer.parseInt(parts[2]);
+                case "score" -> new BigDecimal(parts[2]);
+                case "title", "id" -> { }
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new MediaEntryCursor(parts[0], parts[2], Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package persistence;
 
+import database.DataAccessException;
 import database.DatabaseManager;
+import database.UnitOfWork;
+import dto.PageDTO;
 import model.MediaEntry;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,8 +34,34 @@ import java.util.Map;
  */
 public class MediaEntryRepository implements IMediaEntryRepository {
 
+    /**
+     * Average score of a media entry (alias m), computed from the rating aggregates
+     * stored on mediaentry instead of aggregating the rating table on every read.
+     */
+    static final String AVG_SCORE = "COALESCE(m.rating_sum::numeric / NULLIF(m.rating_count, 0), 0)";
+
+    // bytes sent to the database per COPY message during imports
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    // links a media entry to exactly the genres of the array, see replaceGenres
+    private static final String REPLACE_GENRES = """
+        WITH wanted AS (
+            SELECT DISTINCT unnest(?::int[]) AS genreid
+        ), removed AS (
+            DELETE FROM mediaentry_genre
+            WHERE mediaentryid = ? AND genreid NOT IN (SELECT genreid FROM wanted)
+        )
+        INSERT INTO mediaentry_genre (mediaentryid, genreid)
+        SELECT ?, genreid FROM wanted
+        ON CONFLICT DO NOTHING
+    """;
+
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
     private static final MediaEntryRepository instance = new MediaEntryRepository();
 
+    private final GenreCache genreCache = new GenreCache();
+
     /** Private constructor to prevent creating multiple instances. */
     private MediaEntryRepository() {
     }
@@ -41,12 +85,12 @@ public class MediaEntryRepository implements IMediaEntryRepository {
         List<MediaEntry> result = new ArrayList<>();
 
         String sql = """
-            SELECT mediaentryid, title, description, media_type,
-                   release_year, age_restriction, AVG(rating.stars) AS avg_score, creator
-            FROM mediaentry LEFT JOIN rating ON mediaentry.mediaentryid = rating.mediaentryid GROUP BY mediaentry.mediaentryid
-        """;
+            SELECT m.mediaentryid, m.title, m.description, m.media_type,
+                   m.release_year, m.age_restriction, %s AS avg_score, m.creator
+            FROM mediaentry m
+        """.formatted(AVG_SCORE);
 
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
+        try (Connection conn = DatabaseManager.INSTANCE.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -86,12 +130,8 @@ public class MediaEntryRepository implements IMediaEntryRepository {
         RETURNING mediaentryid
     """;
 
-        String insertGenre = "INSERT INTO genre (name) VALUES (?) ON CONFLICT (name) DO NOTHING";
-        String selectGenreId = "SELECT genreid FROM genre WHERE name = ?";
-        String insertMediaGenre = "INSERT INTO mediaentry_genre (mediaentryid, genreid) VALUES (?, ?)";
-
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection()) {
-            conn.setAutoCommit(false);
+        try (UnitOfWork work = new UnitOfWork()) {
+            Connection conn = work.getConnection();
 
             int mediaEntryId;
             try (PreparedStatement ps = conn.prepareStatement(insertMediaEntry)) {
@@ -103,64 +143,211 @@ public class MediaEntryRepository implements IMediaEntryRepository {
                 ps.setInt(6, mediaEntry.getCreatorId());
 
                 try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) {
-                        conn.rollback();
-                        return false;
-                    }
+                    if (!rs.next()) return false;
                     mediaEntryId = rs.getInt("mediaentryid");
                 }
             }
 
-            for (String genreName : mediaEntry.getGenres()) {
-                try (PreparedStatement ps = conn.prepareStatement(insertGenre)) {
-                    ps.setString(1, genreName);
-                    ps.executeUpdate();
-                }
-
-                int genreId;
-                try (PreparedStatement ps = conn.prepareStatement(selectGenreId)) {
-                    ps.setString(1, genreName);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (!rs.next()) continue;
-                        genreId = rs.getInt("genreid");
-                    }
-                }
-
-                try (PreparedStatement ps = conn.prepareStatement(insertMediaGenre)) {
-                    ps.setInt(1, mediaEntryId);
-                    ps.setInt(2, genreId);
-                    ps.executeUpdate();
-                }
+            if (mediaEntry.getGenres() != null && !mediaEntry.getGenres().isEmpty()) {
+                replaceGenres(conn, mediaEntryId, mediaEntry.getGenres());
             }
 
-            conn.commit();
+            UnitOfWork.afterCommit(() -> DataVersions.getInstance().mediaAdded());
+            work.commitTransaction();
             return true;
 
         } catch (SQLException e) {
+            forgetGenresOnMissingReference(e);
             e.printStackTrace();
             return false;
         }
     }
 
     /**
-     * Deletes a media entry by ID.
+     * Links a media entry to exactly the given genres in one statement: links to other genres
+     * are removed, missing links are added and links that stay are not touched.
+     * Genres that do not exist yet are created.
+     *
+     * @param conn the connection, in the transaction of the media entry change
+     * @param mediaEntryId the ID of the media entry
+     * @param genres the genre names
+     * @throws SQLException if the genres cannot be written
+     */
+    private void replaceGenres(Connection conn, int mediaEntryId, List<String> genres) throws SQLException {
+        List<Integer> genreIds = genreCache.resolve(conn, genres);
+        try (PreparedStatement ps = conn.prepareStatement(REPLACE_GENRES)) {
+            ps.setArray(1, conn.createArrayOf("integer", genreIds.toArray()));
+            ps.setInt(2, mediaEntryId);
+            ps.setInt(3, mediaEntryId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Clears the genre cache if a write referred to a row that does not exist,
+     * which happens when cached genres were deleted directly in the database.
+     *
+     * @param e the error of the write
+     */
+    private void forgetGenresOnMissingReference(SQLException e) {
+        if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+            genreCache.clear();
+        }
+    }
+
+    /**
+     * Imports many media entries in one transaction.
+     *
+     * The entries are written with COPY into a temporary staging table while they are read
+     * from the stream, so they are never held in memory as a whole. The genres of all entries
+     * are then created with one statement, and the media entries and their genre links are
+     * inserted set-based from the staging table. IDs are assigned in the order of the stream.
+     * If anything fails, nothing is imported.
+     *
+     * @param mediaEntries the validated entries, with their creator set
+     * @return the number of imported entries, or -1 if the database rejected the import
+     * @throws IOException if reading the entries fails
+     */
+    @Override
+    public int importMediaEntries(RowStream<MediaEntry> mediaEntries) throws IOException {
+        String createStaging = """
+            CREATE TEMP TABLE media_import (
+                rownum INTEGER, title TEXT, description TEXT, media_type TEXT,
+                release_year INTEGER, age_restriction INTEGER, creator INTEGER, genres TEXT[]
+            ) ON COMMIT DROP
+        """;
+        String copy = "COPY media_import (rownum, title, description, media_type, release_year, age_restriction, creator, genres) FROM STDIN (FORMAT csv)";
+        String insertGenres = "INSERT INTO genre (name) SELECT DISTINCT unnest(genres) FROM media_import ON CONFLICT (name) DO NOTHING";
+        // the IDs are drawn in row order before inserting, so the genre links can refer to them
+        String insertMedia = """
+            WITH ids AS (
+                SELECT i.*, nextval(pg_get_serial_sequence('mediaentry', 'mediaentryid')) AS mediaentryid
+                FROM (SELECT * FROM media_import ORDER BY rownum) i
+            ), media AS (
+                INSERT INTO mediaentry (mediaentryid, title, description, media_type, release_year, age_restriction, creator)
+                SELECT mediaentryid, title, description, media_type, release_year, age_restriction, creator FROM ids
+                RETURNING mediaentryid
+            ), links AS (
+                INSERT INTO mediaentry_genre (mediaentryid, genreid)
+                SELECT DISTINCT ids.mediaentryid, g.genreid
+                FROM ids CROSS JOIN LATERAL unnest(ids.genres) AS n(name)
+                JOIN genre g ON g.name = n.name
+            )
+            SELECT COUNT(*) FROM media
+        """;
+
+        try (UnitOfWork work = new UnitOfWork()) {
+            Connection conn = work.getConnection();
+            try (Statement statement = conn.createStatement()) {
+                statement.execute(createStaging);
+            }
+
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(conn.unwrap(PGConnection.class), copy, COPY_BUFFER_SIZE), StandardCharsets.UTF_8))) {
+                int[] rownum = {0};
+                mediaEntries.forEach(entry -> writeCsvRow(out, ++rownum[0], entry));
+            }
+
+            int imported;
+            try (Statement statement = conn.createStatement()) {
+                statement.executeUpdate(insertGenres);
+                try (ResultSet rs = statement.executeQuery(insertMedia)) {
+                    rs.next();
+                    imported = rs.getInt(1);
+                }
+            }
+            if (imported > 0) UnitOfWork.afterCommit(() -> DataVersions.getInstance().mediaAdded());
+            work.commitTransaction();
+            return imported;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Writes a media entry as a CSV row for COPY. Strings are always quoted, so that
+     * empty strings and NULL (an empty unquoted field) stay apart.
+     */
+    private static void writeCsvRow(Writer out, int rownum, MediaEntry entry) throws IOException {
+        out.write(Integer.toString(rownum));
+        out.write(',');
+        writeCsvString(out, entry.getTitle());
+        out.write(',');
+        writeCsvString(out, entry.getDescription());
+        out.write(',');
+        writeCsvString(out, entry.getMediaType());
+        out.write(',');
+        out.write(Integer.toString(entry.getReleaseYear()));
+        out.write(',');
+        out.write(Integer.toString(entry.getAgeRestriction()));
+        out.write(',');
+        out.write(Integer.toString(entry.getCreatorId()));
+        out.write(',');
+        // genres as a PostgreSQL array literal, e.g. {"Action","Sci-Fi"}
+        StringBuilder genres = new StringBuilder("{");
+        if (entry.getGenres() != null) {
+            for (String genre : entry.getGenres()) {
+                if (genres.length() > 1) genres.append(',');
+                genres.append('"').append(genre.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            }
+        }
+        writeCsvString(out, genres.append('}').toString());
+        out.write('\n');
+    }
+
+    private static void writeCsvString(Writer out, String value) throws IOException {
+        if (value == null) return;
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Deletes a media entry of the user.
+     * Its ratings are deleted by the database (ON DELETE CASCADE), so their stars are
+     * removed from the rating aggregates of the authors' profiles in the same statement.
      *
      * @param id the id of the media
-     * @return true if deleted successfully, false otherwise
+     * @param userId the user performing the deletion, only the creator may delete the entry
+     * @return OK, NOT_FOUND, FORBIDDEN if the entry belongs to another user, or FAILED
      */
     @Override
-    public boolean deleteMediaEntry(int id) {
-        String sql = "DELETE FROM mediaentry WHERE mediaentryid = ?";
+    public WriteResult deleteMediaEntry(int id, int userId) {
+        String sql = """
+            WITH target AS (
+                SELECT mediaentryid, creator FROM mediaentry WHERE mediaentryid = ? FOR UPDATE
+            ), owned AS (
+                SELECT mediaentryid FROM target WHERE creator = ?
+            ), removed AS (
+                SELECT r.creator, COUNT(*) AS cnt, SUM(r.stars) AS total
+                FROM rating r JOIN owned o ON r.mediaentryid = o.mediaentryid GROUP BY r.creator
+            ), authors AS (
+                UPDATE profile p SET totalratings = p.totalratings - r.cnt, ratingsum = p.ratingsum - r.total,
+                       avgscore = COALESCE(ROUND((p.ratingsum - r.total)::numeric / NULLIF(p.totalratings - r.cnt, 0), 2), 0)
+                FROM removed r WHERE p.userid = r.creator
+            ), deleted AS (
+                DELETE FROM mediaentry m USING owned o WHERE m.mediaentryid = o.mediaentryid
+                RETURNING m.mediaentryid
+            )
+            SELECT (SELECT creator FROM target) AS creator, (SELECT mediaentryid FROM deleted) AS mediaentryid
+        """;
 
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, id);
-            return ps.executeUpdate() == 1;
+            ps.setInt(2, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                WriteResult result = WriteResult.ofOwnedWrite(rs, userId);
+                // the deleted ratings change the profiles of their authors
+                if (result.isOk()) UnitOfWork.afterCommit(() -> DataVersions.getInstance().mediaEntryDeleted(id));
+                return result;
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return WriteResult.FAILED;
         }
     }
 
@@ -172,7 +359,7 @@ public class MediaEntryRepository implements IMediaEntryRepository {
      */
     @Override
     public MediaEntry getMediaEntryByID(int id) {
-        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, AVG(r.stars) AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m LEFT JOIN rating r ON m.mediaentryid = r.mediaentryid LEFT JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid LEFT JOIN genre g ON mg.genreid = g.genreid WHERE m.mediaentryid = ? GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator";
+        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " + AVG_SCORE + " AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m LEFT JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid LEFT JOIN genre g ON mg.genreid = g.genreid WHERE m.mediaentryid = ? GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator";
 
         try (Connection conn = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -208,52 +395,75 @@ public class MediaEntryRepository implements IMediaEntryRepository {
     }
 
     /**
-     * Updates an existing media entry with new data.
+     * Updates a media entry of the user with new data.
      *
      * @param id the ID of the media entry
      * @param title new title
      * @param description new description
      * @param mediatype new type
-     * @param genres new genres
+     * @param genres new genres, replacing the current ones; null keeps the current genres
      * @param releaseYear new release year
      * @param agerestriction new age restriction
-     * @param creatorId user who created the entry
-     * @return true if update was successful, false otherwise
+     * @param userId the user performing the update, only the creator may change the entry
+     * @return OK, NOT_FOUND, FORBIDDEN if the entry belongs to another user, or FAILED
      */
     @Override
-    public boolean updateMediaEntry(int id, String title, String description, String mediatype,
-                                    List<String> genres, int releaseYear, int agerestriction, int creatorId) {
+    public WriteResult updateMediaEntry(int id, String title, String description, String mediatype,
+                                        List<String> genres, int releaseYear, int agerestriction, int userId) {
 
-        String sql = "UPDATE mediaentry SET title = ?, description = ?, media_type = ?, release_year = ?, age_restriction = ?, creator = ? WHERE mediaentryid = ?";
+        String sql = """
+            WITH target AS (
+                SELECT mediaentryid, creator FROM mediaentry WHERE mediaentryid = ? FOR UPDATE
+            ), updated AS (
+                UPDATE mediaentry m SET title = ?, description = ?, media_type = ?, release_year = ?, age_restriction = ?
+                FROM target t WHERE m.mediaentryid = t.mediaentryid AND t.creator = ?
+                RETURNING m.mediaentryid
+            )
+            SELECT (SELECT creator FROM target) AS creator, (SELECT mediaentryid FROM updated) AS mediaentryid
+        """;
 
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (UnitOfWork work = new UnitOfWork()) {
+            Connection conn = work.getConnection();
+
+            WriteResult result;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                ps.setString(2, title);
+                ps.setString(3, description);
+                ps.setString(4, mediatype);
+                ps.setInt(5, releaseYear);
+                ps.setInt(6, agerestriction);
+                ps.setInt(7, userId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    result = WriteResult.ofOwnedWrite(rs, userId);
+                }
+            }
+            if (!result.isOk()) return result;
 
-            ps.setString(1, title);
-            ps.setString(2, description);
-            ps.setString(3, mediatype);
-            ps.setInt(4, releaseYear);
-            ps.setInt(5, agerestriction);
-            ps.setInt(6, creatorId);
-            ps.setInt(7, id);
+            if (genres != null) {
+                replaceGenres(conn, id, genres);
+            }
 
-            return ps.executeUpdate() == 1;
+            UnitOfWork.afterCommit(() -> DataVersions.getInstance().mediaEntryChanged(id));
+            work.commitTransaction();
+            return WriteResult.OK;
 
         } catch (SQLException e) {
+            forgetGenresOnMissingReference(e);
             e.printStackTrace();
-            return false;
+            return WriteResult.FAILED;
         }
     }
 
     /**
-     * Changes the favorite status of a media entry.
+     * Adds a media entry to the favorites of a user. Adding a favorite twice is not an error.
      *
      * @param userid the user ID
      * @param mediaentryid the media entry ID
-     * @return true if operation was successful, false otherwise
+     * @return OK, NOT_FOUND if the media entry does not exist, or FAILED
      */
     @Override
-    public boolean setFavoriteStatus(int userid, int mediaentryid) {
+    public WriteResult setFavoriteStatus(int userid, int mediaentryid) {
         String sql = "INSERT INTO favorite (userid, mediaentryid) VALUES (?, ?) ON CONFLICT DO NOTHING";
 
         try (Connection conn = DatabaseManager.INSTANCE.getConnection();
@@ -263,11 +473,14 @@ public class MediaEntryRepository implements IMediaEntryRepository {
             ps.setInt(2, mediaentryid);
 
             ps.executeUpdate();
-            return true;
+            return WriteResult.OK;
 
         } catch (SQLException e) {
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                return WriteResult.NOT_FOUND; // MediaEntry does not exist
+            }
             e.printStackTrace();
-            return false;
+            return WriteResult.FAILED;
         }
     }
 
@@ -276,10 +489,10 @@ public class MediaEntryRepository implements IMediaEntryRepository {
      *
      * @param userid the user ID
      * @param mediaentryid the media entry ID
-     * @return true if operation was successful, false otherwise
+     * @return OK, NOT_FOUND if the entry is not a favorite of the user, or FAILED
      */
     @Override
-    public boolean setUnFavoriteStatus(int userid, int mediaentryid) {
+    public WriteResult setUnFavoriteStatus(int userid, int mediaentryid) {
         String sql = "DELETE FROM favorite WHERE userid = ? AND mediaentryid = ?";
 
         try (Connection conn = DatabaseManager.INSTANCE.getConnection();
@@ -288,11 +501,11 @@ public class MediaEntryRepository implements IMediaEntryRepository {
             ps.setInt(1, userid);
             ps.setInt(2, mediaentryid);
 
-            return ps.executeUpdate() == 1;
+            return ps.executeUpdate() == 1 ? WriteResult.OK : WriteResult.NOT_FOUND;
 
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return WriteResult.FAILED;
         }
     }
 
@@ -302,126 +515,65 @@ public class MediaEntryRepository implements IMediaEntryRepository {
      * @param title the title filter
      * @param genre the genre filter
      * @param sortBy the sort option (title, year, score)
-     * @return list of media entries matching filters
+     * @return list of media entries matching filters, or null for an unknown sort option or on error
      */
     @Override
     public List<MediaEntry> searchAndFilterMediaEntries(String title, String genre, String sortBy) {
-        StringBuilder sql = new StringBuilder(
-                "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " +
-                        "AVG(r.stars) AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres " +
-                        "FROM mediaentry m " +
-                        "LEFT JOIN rating r ON m.mediaentryid = r.mediaentryid " +
-                        "LEFT JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid " +
-                        "LEFT JOIN genre g ON mg.genreid = g.genreid " +
-                        "WHERE 1=1 "
-        );
-
-        List<Object> params = new ArrayList<>();
-
-        if (title != null && !title.isBlank()) {
-            sql.append(" AND LOWER(m.title) LIKE ?");
-            params.add("%" + title.toLowerCase() + "%");
-        }
-
-        if (genre != null && !genre.isBlank()) {
-            sql.append(" AND EXISTS (SELECT 1 FROM mediaentry_genre mg2 JOIN genre g2 ON mg2.genreid = g2.genreid " +
-                    "WHERE mg2.mediaentryid = m.mediaentryid AND g2.name = ?)");
-            params.add(genre);
-        }
-
-        sql.append(" GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator");
+        Map<String, Object> filters = new HashMap<>();
+        if (title != null && !title.isBlank()) filters.put("title", title);
+        if (genre != null && !genre.isBlank()) filters.put("genre", genre);
+        return fullSearchAndFilterMediaEntries(filters, sortBy);
+    }
 
-        if (sortBy != null) {
-            switch (sortBy) {
-                case "title" -> sql.append(" ORDER BY m.title");
-                case "year" -> sql.append(" ORDER BY m.release_year");
-                case "score" -> sql.append(" ORDER BY avg_score DESC");
-                default -> {
-                    return null;
-                }
-            }
-        }
+    /**
+     * Searches and filters media entries using multiple filters.
+     * All filters, including the minimum rating, are applied in the database,
+     * so only matching rows are transferred and sorted.
+     *
+     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
+     * @param sortBy sort option (title, year, score)
+     * @return list of media entries matching filters, or null for an unknown sort option or on error
+     */
+    @Override
+    public List<MediaEntry> fullSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy) {
+        if (!IMediaEntryRepository.isValidSortOption(sortBy)) return null;
 
         List<MediaEntry> result = new ArrayList<>();
-
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    MediaEntry m = new MediaEntry();
-                    m.setMediaentryid(rs.getInt("mediaentryid"));
-                    m.setTitle(rs.getString("title"));
-                    m.setDescription(rs.getString("description"));
-                    m.setMediaType(rs.getString("media_type"));
-                    m.setReleaseYear(rs.getInt("release_year"));
-                    m.setAgeRestriction(rs.getInt("age_restriction"));
-                    m.setAvgscore(rs.getDouble("avg_score"));
-                    m.setCreatorId(rs.getInt("creator"));
-
-                    // Genres aufteilen
-                    String genresStr = rs.getString("genres");
-                    List<String> genres = genresStr != null ? List.of(genresStr.split(",")) : new ArrayList<>();
-                    m.setGenres(genres);
-
-                    result.add(m);
-                }
-            }
-
-        } catch (SQLException e) {
+        try {
+            streamSearchAndFilterMediaEntries(filters, sortBy, result::add);
+        } catch (DataAccessException | IOException e) {
             e.printStackTrace();
             return null;
         }
-
         return result;
     }
 
     /**
-     * Searches and filters media entries using multiple filters.
+     * Searches and filters media entries and passes each one to the sink while the rows
+     * are read from the database, without collecting the result in memory.
      *
-     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction)
+     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
      * @param sortBy sort option (title, year, score)
-     * @return list of media entries matching filters
+     * @param sink receives the media entries in order
+     * @throws IOException if the sink fails
+     * @throws IllegalArgumentException if the sort option is unknown
+     * @throws DataAccessException if the query fails
      */
     @Override
-    public List<MediaEntry> fullSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy) {
+    public void streamSearchAndFilterMediaEntries(Map<String, Object> filters, String sortBy, RowSink<MediaEntry> sink) throws IOException {
+        if (!IMediaEntryRepository.isValidSortOption(sortBy)) throw new IllegalArgumentException("Unknown sort option " + sortBy);
+
         StringBuilder sql = new StringBuilder(
                 "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " +
-                        "AVG(r.stars) AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres " +
+                        AVG_SCORE + " AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres " +
                         "FROM mediaentry m " +
-                        "LEFT JOIN rating r ON m.mediaentryid = r.mediaentryid " +
                         "LEFT JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid " +
                         "LEFT JOIN genre g ON mg.genreid = g.genreid " +
                         "WHERE 1=1 "
         );
 
         List<Object> params = new ArrayList<>();
-
-        if (filters.containsKey("title")) {
-            sql.append(" AND LOWER(m.title) LIKE ?");
-            params.add("%" + filters.get("title").toString().toLowerCase() + "%");
-        }
-        if (filters.containsKey("genre")) {
-            sql.append(" AND EXISTS (SELECT 1 FROM mediaentry_genre mg2 JOIN genre g2 ON mg2.genreid = g2.genreid " +
-                    "WHERE mg2.mediaentryid = m.mediaentryid AND g2.name = ?)");
-            params.add(filters.get("genre"));
-        }
-        if (filters.containsKey("mediaType")) {
-            sql.append(" AND LOWER(m.media_type) LIKE ?");
-            params.add("%" + filters.get("mediaType").toString().toLowerCase() + "%");
-        }
-        if (filters.containsKey("releaseYear")) {
-            sql.append(" AND m.release_year = ?");
-            params.add(filters.get("releaseYear"));
-        }
-        if (filters.containsKey("ageRestriction")) {
-            sql.append(" AND m.age_restriction <= ?");
-            params.add(filters.get("ageRestriction"));
-        }
+        appendFilters(sql, params, filters);
 
         sql.append(" GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator");
 
@@ -430,14 +582,83 @@ public class MediaEntryRepository implements IMediaEntryRepository {
                 case "title" -> sql.append(" ORDER BY m.title");
                 case "year" -> sql.append(" ORDER BY m.release_year");
                 case "score" -> sql.append(" ORDER BY avg_score DESC");
-                default -> {
-                    return null;
-                }
             }
         }
 
-        List<MediaEntry> result = new ArrayList<>();
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
+        StreamingQuery.stream(sql.toString(), params, MediaEntryRepository::mapMediaEntry, sink);
+    }
+
+    /**
+     * Returns one page of media entries matching the filters using keyset pagination.
+     * Instead of an OFFSET the page starts directly after the cursor position, so every page
+     * costs the same no matter how deep the client has paged. Entries with the same sort value
+     * are ordered by their ID, which makes the order total and stable between pages.
+     * Only the entries of the page are joined with their genres.
+     *
+     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
+     * @param sortBy sort option (title, year, score), null sorts by ID
+     * @param after position of the last entry of the previous page, null for the first page
+     * @param limit maximum number of entries on the page
+     * @return the page with the cursor of the next page, or null for an unknown sort option or on error
+     */
+    @Override
+    public PageDTO<MediaEntry> searchMediaEntriesPage(Map<String, Object> filters, String sortBy, MediaEntryCursor after, int limit) {
+        String sortKey = sortBy != null ? sortBy : "id";
+        String sortValue;
+        switch (sortKey) {
+            case "title" -> sortValue = "m.title";
+            case "year" -> sortValue = "COALESCE(m.release_year, 0)";
+            case "score" -> sortValue = AVG_SCORE;
+            case "id" -> sortValue = "NULL::text";
+            default -> {
+                return null;
+            }
+        }
+        boolean byId = sortKey.equals("id");
+        boolean descending = sortKey.equals("score");
+        String direction = descending ? " DESC" : "";
+        String innerOrder = byId ? "m.mediaentryid" : sortValue + direction + ", m.mediaentryid";
+        String outerOrder = byId ? "p.mediaentryid" : "p.sort_value" + direction + ", p.mediaentryid";
+
+        StringBuilder sql = new StringBuilder(
+                "WITH page AS (SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " +
+                        AVG_SCORE + " AS avg_score, " + sortValue + " AS sort_value " +
+                        "FROM mediaentry m WHERE 1=1 "
+        );
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, filters);
+
+        if (after != null) {
+            Object value = switch (sortKey) {
+                case "year" -> Integer.parseInt(after.value());
+                case "score" -> new BigDecimal(after.value());
+                default -> after.value();
+            };
+            if (byId) {
+                sql.append(" AND m.mediaentryid > ?");
+            } else if (descending) {
+                sql.append(" AND (").append(sortValue).append(" < ? OR (").append(sortValue).append(" = ? AND m.mediaentryid > ?))");
+                params.add(value);
+                params.add(value);
+            } else {
+                sql.append(" AND (").append(sortValue).append(", m.mediaentryid) > (?, ?)");
+                params.add(value);
+            }
+            params.add(after.mediaentryid());
+        }
+
+        sql.append(" ORDER BY ").append(innerOrder).append(" LIMIT ?) ");
+        params.add(limit + 1);
+
+        sql.append("SELECT p.*, STRING_AGG(DISTINCT g.name, ',') AS genres FROM page p " +
+                "LEFT JOIN mediaentry_genre mg ON p.mediaentryid = mg.mediaentryid " +
+                "LEFT JOIN genre g ON mg.genreid = g.genreid " +
+                "GROUP BY p.mediaentryid, p.title, p.description, p.media_type, p.release_year, p.age_restriction, p.creator, p.avg_score, p.sort_value " +
+                "ORDER BY ").append(outerOrder);
+
+        List<MediaEntry> items = new ArrayList<>();
+        String nextCursor = null;
+        try (Connection conn = DatabaseManager.INSTANCE.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
 
             for (int i = 0; i < params.size(); i++) {
@@ -445,7 +666,14 @@ public class MediaEntryRepository implements IMediaEntryRepository {
             }
 
             try (ResultSet rs = ps.executeQuery()) {
+                String lastSortValue = null;
                 while (rs.next()) {
+                    if (items.size() == limit) {
+                        // there is at least one more entry, the next page starts after the last one of this page
+                        MediaEntry last = items.get(items.size() - 1);
+                        nextCursor = new MediaEntryCursor(sortKey, lastSortValue != null ? lastSortValue : "", last.getMediaentryid()).encode();
+                        break;
+                    }
                     MediaEntry m = new MediaEntry();
                     m.setMediaentryid(rs.getInt("mediaentryid"));
                     m.setTitle(rs.getString("title"));
@@ -456,20 +684,21 @@ public class MediaEntryRepository implements IMediaEntryRepository {
                     m.setAvgscore(rs.getDouble("avg_score"));
                     m.setCreatorId(rs.getInt("creator"));
 
-                    // Genres als Liste
                     String genresStr = rs.getString("genres");
                     List<String> genres = genresStr != null ? List.of(genresStr.split(",")) : new ArrayList<>();
                     m.setGenres(genres);
 
-                    result.add(m);
+                    lastSortValue = rs.getString("sort_value");
+                    items.add(m);
                 }
             }
 
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
 
-        return result;
+        return new PageDTO<>(items, nextCursor);
     }
 
     /**
@@ -480,9 +709,9 @@ public class MediaEntryRepository implements IMediaEntryRepository {
      */
     @Override
     public List<MediaEntry> getRecommendationByGenre(int userid) {
-        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, AVG(r2.stars) AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid LEFT JOIN rating r2 ON m.mediaentryid = r2.mediaentryid LEFT JOIN mediaentry_genre mg3 ON m.mediaentryid = mg3.mediaentryid LEFT JOIN genre g ON mg3.genreid = g.genreid WHERE mg.genreid IN ( SELECT DISTINCT mg2.genreid FROM rating r JOIN mediaentry_genre mg2 ON r.mediaentryid = mg2.mediaentryid WHERE r.creator = ? AND r.stars >= 4 ) AND m.mediaentryid NOT IN ( SELECT mediaentryid FROM rating WHERE creator = ? ) GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator ORDER BY avg_score DESC NULLS LAST";
+        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " + AVG_SCORE + " AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m JOIN mediaentry_genre mg ON m.mediaentryid = mg.mediaentryid LEFT JOIN mediaentry_genre mg3 ON m.mediaentryid = mg3.mediaentryid LEFT JOIN genre g ON mg3.genreid = g.genreid WHERE mg.genreid IN ( SELECT DISTINCT mg2.genreid FROM rating r JOIN mediaentry_genre mg2 ON r.mediaentryid = mg2.mediaentryid WHERE r.creator = ? AND r.stars >= 4 ) AND m.mediaentryid NOT IN ( SELECT mediaentryid FROM rating WHERE creator = ? ) GROUP BY m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator ORDER BY avg_score DESC NULLS LAST";
         List<MediaEntry> result = new ArrayList<>();
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
+        try (Connection conn = DatabaseManager.INSTANCE.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             ps.setInt(1, userid);
             ps.setInt(2, userid);
@@ -531,7 +760,7 @@ public class MediaEntryRepository implements IMediaEntryRepository {
             m.release_year,
             m.age_restriction,
             m.creator,
-            AVG(r2.stars) AS avg_score,
+            %s AS avg_score,
             COUNT(DISTINCT mg.genreid) AS genre_match_count,
             STRING_AGG(DISTINCT g.name, ',') AS genres
         FROM mediaentry m
@@ -551,8 +780,6 @@ public class MediaEntryRepository implements IMediaEntryRepository {
             AND r_ref.creator = ?
             AND r_ref.stars >= 4
 
-        LEFT JOIN rating r2 ON m.mediaentryid = r2.mediaentryid
-
         WHERE m.mediaentryid NOT IN (
             SELECT mediaentryid FROM rating WHERE creator = ?
         )
@@ -569,11 +796,11 @@ public class MediaEntryRepository implements IMediaEntryRepository {
         ORDER BY 
             genre_match_count DESC,
             avg_score DESC NULLS LAST
-        """;
+        """.formatted(AVG_SCORE);
 
         List<MediaEntry> result = new ArrayList<>();
 
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
+        try (Connection conn = DatabaseManager.INSTANCE.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, userid);
@@ -607,4 +834,133 @@ public class MediaEntryRepository implements IMediaEntryRepository {
 
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Exports the media entries matching the filters with their genres and rating aggregates.
+     *
+     * The rows are produced by COPY ... TO STDOUT and written to the stream as the database
+     * sends them, so memory use does not depend on the number of entries. COPY does not take
+     * bind parameters, therefore the filter values are inlined as escaped literals.
+     *
+     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
+     * @param format CSV with a header row or NDJSON
+     * @param out receives the exported rows
+     * @return the number of exported media entries
+     * @throws IOException if writing to the stream fails
+     * @throws DataAccessException if the export query fails
+     */
+    @Override
+    public long exportMediaEntries(Map<String, Object> filters, ExportFormat format, OutputStream out) throws IOException {
+        StringBuilder query = new StringBuilder(
+                "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.age_restriction, m.creator, " +
+                        "m.rating_count, m.rating_sum, ROUND(" + AVG_SCORE + ", 2) AS avg_score, " +
+                        "COALESCE((SELECT json_agg(g.name ORDER BY g.name) FROM mediaentry_genre mg " +
+                        "JOIN genre g ON g.genreid = mg.genreid WHERE mg.mediaentryid = m.mediaentryid), '[]'::json) AS genres " +
+                        "FROM mediaentry m WHERE 1=1"
+        );
+        List<Object> params = new ArrayList<>();
+        appendFilters(query, params, filters);
+        query.append(" ORDER BY m.mediaentryid");
+
+        try (Connection conn = DatabaseManager.INSTANCE.getReadConnection()) {
+            String select = inlineParameters(query.toString(), params, conn.unwrap(BaseConnection.class).getStandardConformingStrings());
+            String copy = switch (format) {
+                case CSV -> "COPY (" + select + ") TO STDOUT (FORMAT csv, HEADER)";
+                // quote and delimiter characters that JSON never contains unescaped, so every line is the bare JSON object
+                case NDJSON -> "COPY (SELECT row_to_json(e) FROM (" + select + ") e) TO STDOUT (FORMAT csv, QUOTE e'\\x01', DELIMITER e'\\x02')";
+            };
+            return new CopyManager(conn.unwrap(BaseConnection.class)).copyOut(copy, out);
+        } catch (SQLException e) {
+            throw new DataAccessException("Media export failed", e);
+        }
+    }
+
+    /**
+     * Replaces the ? placeholders of a query with literals of the parameters.
+     *
+     * @param sql the query, the only question marks in it are placeholders
+     * @param params the parameters, strings or numbers
+     * @param standardConformingStrings whether the server uses standard conforming strings
+     * @return the query with literals
+     * @throws SQLException if a string cannot be escaped
+     */
+    private static String inlineParameters(String sql, List<Object> params, boolean standardConformingStrings) throws SQLException {
+        StringBuilder result = new StringBuilder(sql.length() + 32 * params.size());
+        int param = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c != '?') {
+                result.append(c);
+                continue;
+            }
+            Object value = params.get(param++);
+            if (value instanceof Integer || value instanceof Long) {
+                result.append(value);
+            } else {
+                result.append('\'');
+                Utils.escapeLiteral(result, value.toString(), standardConformingStrings);
+                result.append('\'');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Converts a row with the media entry columns, avg_score and the comma separated genres.
+     *
+     * @param rs the result set positioned on the row
+     * @return the media entry
+     * @throws SQLException if a column cannot be read
+     */
+    static MediaEntry mapMediaEntry(ResultSet rs) throws SQLException {
+        MediaEntry m = new MediaEntry();
+        m.setMediaentryid(rs.getInt("mediaentryid"));
+        m.setTitle(rs.getString("title"));
+        m.setDescription(rs.getString("description"));
+        m.setMediaType(rs.getString("media_type"));
+        m.setReleaseYear(rs.getInt("release_year"));
+        m.setAgeRestriction(rs.getInt("age_restriction"));
+        m.setAvgscore(rs.getDouble("avg_score"));
+        m.setCreatorId(rs.getInt("creator"));
+
+        String genresStr = rs.getString("genres");
+        List<String> genres = genresStr != null ? List.of(genresStr.split(",")) : new ArrayList<>();
+        m.setGenres(genres);
+        return m;
+    }
+
+    /**
+     * Appends the WHERE conditions for the search filters (alias m) and collects their parameters.
+     *
+     * @param sql the query to extend
+     * @param params the query parameters
+     * @param filters map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
+     */
+    private void appendFilters(StringBuilder sql, List<Object> params, Map<String, Object> filters) {
+        if (filters.containsKey("title")) {
+            sql.append(" AND LOWER(m.title) LIKE ?");
+            params.add("%" + filters.get("title").toString().toLowerCase() + "%");
+        }
+        if (filters.containsKey("genre")) {
+            sql.append(" AND EXISTS (SELECT 1 FROM mediaentry_genre mg2 JOIN genre g2 ON mg2.genreid = g2.genreid " +
+                    "WHERE mg2.mediaentryid = m.mediaentryid AND g2.name = ?)");
+            params.add(filters.get("genre"));
+        }
+        if (filters.containsKey("mediaType")) {
+            sql.append(" AND LOWER(m.media_type) LIKE ?");
+            params.add("%" + filters.get("mediaType").toString().toLowerCase() + "%");
+        }
+        if (filters.containsKey("releaseYear")) {
+            sql.append(" AND m.release_year = ?");
+            params.add(filters.get("releaseYear"));
+        }
+        if (filters.containsKey("ageRestriction")) {
+            sql.append(" AND m.age_restriction <= ?");
+            params.add(filters.get("ageRestriction"));
+        }
+        if (filters.containsKey("minRating")) {
+            sql.append(" AND ").append(AVG_SCORE).append(" >= ?");
+            params.add(filters.get("minRating"));
+        }
+    }
+}
@@ -1,22 +1,30 @@
 package persistence;
 
+import database.DataAccessException;
 import database.DatabaseManager;
+import database.UnitOfWork;
 import dto.RatingHistoryDTO;
 import model.Rating;
 import model.User;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
 
 /**
  * Repository class that manages all ratings and provides methods
  * to create, edit, delete, and like ratings.
  */
 public class RatingRepository implements IRatingRepository {
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
     private static RatingRepository instance = new RatingRepository();
+    private final List<IntConsumer> mediaEntryListeners = new CopyOnWriteArrayList<>();
 
     /** Private constructor to prevent creating multiple instances. */
     private RatingRepository() {
@@ -31,96 +39,149 @@ public class RatingRepository implements IRatingRepository {
         return instance;
     }
 
+    /**
+     * Registers a listener that is called with the ID of a media entry
+     * after one of its ratings was added, changed or deleted.
+     *
+     * @param listener the listener, e.g. a cache invalidation
+     */
+    public void addMediaEntryChangeListener(IntConsumer listener) {
+        mediaEntryListeners.add(listener);
+    }
+
     /**
      * Adds a like from a user to a rating.
+     * The existence of the rating and an earlier like are checked by the insert itself.
      *
      * @param ratingid the ID of the rating being liked
      * @param user the user who liked the rating
-     * @return true if the like was added, false otherwise
+     * @return OK, NOT_FOUND if the rating does not exist, DUPLICATE if the user already liked it, or FAILED
      */
     @Override
-    public boolean likeRating(int ratingid, User user) {
-        String sql = "INSERT INTO likes (userid, ratingid) VALUES (?, ?)";
+    public WriteResult likeRating(int ratingid, User user) {
+        String sql = """
+            WITH target AS (
+                SELECT ratingid FROM rating WHERE ratingid = ?
+            ), liked AS (
+                INSERT INTO likes (userid, ratingid) SELECT ?, ratingid FROM target
+                ON CONFLICT DO NOTHING
+                RETURNING ratingid
+            )
+            SELECT EXISTS (SELECT 1 FROM target) AS found, EXISTS (SELECT 1 FROM liked) AS liked
+        """;
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, user.getUserid());
-            ps.setInt(2, ratingid);
-            ps.executeUpdate();
-            return true;
+            ps.setInt(1, ratingid);
+            ps.setInt(2, user.getUserid());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                if (!rs.getBoolean("found")) return WriteResult.NOT_FOUND;
+                return rs.getBoolean("liked") ? WriteResult.OK : WriteResult.DUPLICATE;
+            }
         } catch (SQLException e) {
-            if ("23503".equals(e.getSQLState())) {
-                // FK violation: Rating does not exist
-                return false;
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                return WriteResult.NOT_FOUND; // rating was deleted in the meantime
             }
-            return false;
+            e.printStackTrace();
+            return WriteResult.FAILED;
         }
     }
 
     /**
      * Creates a new rating for a media entry.
-     * Sets the current date automatically.
+     * Sets the current date automatically and adds the stars to the
+     * rating aggregates of the media entry and of the author's profile in the same statement.
+     * A second rating of the same user is rejected by the unique index on (creator, mediaentryid).
      *
      * @param mediaentryid the ID of the media being rated
      * @param stars number of stars
      * @param comment optional comment
      * @param user the user creating the rating
-     * @return true if rating was added successfully, false otherwise
+     * @return OK, NOT_FOUND if the media entry does not exist, DUPLICATE if the user already rated it, or FAILED
      */
     @Override
-    public boolean rateMediaEntry(int mediaentryid, int stars, String comment, User user) {
-        // Check ob User den MediaEntry schon bewertet hat
-        String checkSql = "SELECT 1 FROM rating WHERE mediaentryid = ? AND creator = ?";
-        try (Connection connection = DatabaseManager.INSTANCE.getConnection();
-             PreparedStatement checkPs = connection.prepareStatement(checkSql)) {
-            checkPs.setInt(1, mediaentryid);
-            checkPs.setInt(2, user.getUserid());
-            ResultSet rs = checkPs.executeQuery();
-            if (rs.next()) {
-                return false;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-
-        String sql = "INSERT INTO rating (mediaentryid, stars, comment, creator) VALUES (?, ?, ?, ?)";
+    public WriteResult rateMediaEntry(int mediaentryid, int stars, String comment, User user) {
+        String sql = """
+            WITH inserted AS (
+                INSERT INTO rating (mediaentryid, stars, comment, creator) VALUES (?, ?, ?, ?)
+                ON CONFLICT (creator, mediaentryid) DO NOTHING
+                RETURNING mediaentryid, creator, stars
+            ), media AS (
+                UPDATE mediaentry m SET rating_count = m.rating_count + 1, rating_sum = m.rating_sum + i.stars
+                FROM inserted i WHERE m.mediaentryid = i.mediaentryid
+            ), author AS (
+                UPDATE profile p SET totalratings = p.totalratings + 1, ratingsum = p.ratingsum + i.stars,
+                       avgscore = ROUND((p.ratingsum + i.stars)::numeric / (p.totalratings + 1), 2)
+                FROM inserted i WHERE p.userid = i.creator
+            )
+            SELECT COUNT(*) FROM inserted
+        """;
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, mediaentryid);
             ps.setInt(2, stars);
             ps.setString(3, comment);
             ps.setInt(4, user.getUserid());
-            return ps.executeUpdate() == 1;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) == 1) {
+                    mediaEntryChanged(mediaentryid);
+                    return WriteResult.OK;
+                }
+                return WriteResult.DUPLICATE;
+            }
         } catch (SQLException e) {
-            if (e.getSQLState().equals("23503")) {
-                return false; // MediaEntry does not exist
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                return WriteResult.NOT_FOUND; // MediaEntry does not exist
             }
-            return false;
+            e.printStackTrace();
+            return WriteResult.FAILED;
         }
     }
 
     /**
-     * Updates an existing rating.
+     * Updates an existing rating of the user.
+     * The difference in stars is applied to the rating aggregates of the media entry
+     * and of the author's profile in the same statement.
      *
      * @param ratingid the ID of the rating
      * @param stars new number of stars
      * @param comment new comment
      * @param user the user who created the rating
-     * @return true if update was successful, false otherwise
+     * @return OK, NOT_FOUND, FORBIDDEN if the rating belongs to another user, or FAILED
      */
     @Override
-    public boolean updateRating(int ratingid, int stars, String comment, User user) {
-        String sql = "UPDATE rating SET stars = ?, comment = ? WHERE ratingid = ? AND creator = ?";
+    public WriteResult updateRating(int ratingid, int stars, String comment, User user) {
+        String sql = """
+            WITH target AS (
+                SELECT ratingid, creator, stars FROM rating WHERE ratingid = ? FOR UPDATE
+            ), updated AS (
+                UPDATE rating r SET stars = ?, comment = ? FROM target t
+                WHERE r.ratingid = t.ratingid AND t.creator = ?
+                RETURNING r.mediaentryid, r.creator, r.stars - t.stars AS delta
+            ), media AS (
+                UPDATE mediaentry m SET rating_sum = m.rating_sum + u.delta
+                FROM updated u WHERE m.mediaentryid = u.mediaentryid
+            ), author AS (
+                UPDATE profile p SET ratingsum = p.ratingsum + u.delta,
+                       avgscore = COALESCE(ROUND((p.ratingsum + u.delta)::numeric / NULLIF(p.totalratings, 0), 2), 0)
+                FROM updated u WHERE p.userid = u.creator
+            )
+            SELECT (SELECT creator FROM target) AS creator, (SELECT mediaentryid FROM updated) AS mediaentryid
+        """;
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, stars);
-            ps.setString(2, comment);
-            ps.setInt(3, ratingid);
+            ps.setInt(1, ratingid);
+            ps.setInt(2, stars);
+            ps.setString(3, comment);
             ps.setInt(4, user.getUserid());
-            return ps.executeUpdate() == 1;
+            try (ResultSet rs = ps.executeQuery()) {
+                WriteResult result = WriteResult.ofOwnedWrite(rs, user.getUserid());
+                if (result.isOk()) mediaEntryChanged(rs.getInt("mediaentryid"));
+                return result;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return WriteResult.FAILED;
         }
     }
 
@@ -134,29 +195,39 @@ public class RatingRepository implements IRatingRepository {
     @Override
     public List<RatingHistoryDTO> getRatingHistory(int userId, User user) {
         List<RatingHistoryDTO> ratings = new ArrayList<>();
-        String sql = "SELECT r.ratingid, r.stars, r.comment, r.created_at, COUNT(l.ratingid) AS likes, m.mediaentryid, m.title, m.media_type FROM rating r JOIN mediaentry m ON r.mediaentryid = m.mediaentryid LEFT JOIN likes l ON r.ratingid = l.ratingid WHERE r.creator = ? AND r.confirmed = true GROUP BY r.ratingid, r.stars, r.comment, r.created_at, m.mediaentryid, m.title, m.media_type";
-        try(Connection conn = DatabaseManager.INSTANCE.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                RatingHistoryDTO rating = new RatingHistoryDTO();
-                rating.setStars(rs.getInt("stars"));
-                rating.setComment(rs.getString("comment"));
-                rating.setLikes(rs.getInt("likes"));
-                rating.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                rating.setMediaEntryId(rs.getInt("mediaentryid"));
-                rating.setMediaTitle(rs.getString("title"));
-                rating.setMediaType(rs.getString("media_type"));
-                ratings.add(rating);
-            }
-        }catch (SQLException e) {
+        try {
+            streamRatingHistory(userId, ratings::add);
+        } catch (DataAccessException | IOException e) {
             e.printStackTrace();
             return null;
         }
         return ratings;
     }
 
+    /**
+     * Passes the rating history of a user to the sink while it is read from the database.
+     *
+     * @param userId the ID of the user
+     * @param sink receives the rating history entries
+     * @throws IOException if the sink fails
+     * @throws DataAccessException if the query fails
+     */
+    @Override
+    public void streamRatingHistory(int userId, RowSink<RatingHistoryDTO> sink) throws IOException {
+        String sql = "SELECT r.ratingid, r.stars, r.comment, r.created_at, COUNT(l.ratingid) AS likes, m.mediaentryid, m.title, m.media_type FROM rating r JOIN mediaentry m ON r.mediaentryid = m.mediaentryid LEFT JOIN likes l ON r.ratingid = l.ratingid WHERE r.creator = ? AND r.confirmed = true GROUP BY r.ratingid, r.stars, r.comment, r.created_at, m.mediaentryid, m.title, m.media_type";
+        StreamingQuery.stream(sql, List.of(userId), rs -> {
+            RatingHistoryDTO rating = new RatingHistoryDTO();
+            rating.setStars(rs.getInt("stars"));
+            rating.setComment(rs.getString("comment"));
+            rating.setLikes(rs.getInt("likes"));
+            rating.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+            rating.setMediaEntryId(rs.getInt("mediaentryid"));
+            rating.setMediaTitle(rs.getString("title"));
+            rating.setMediaType(rs.getString("media_type"));
+            return rating;
+        }, sink);
+    }
+
     /**
      * Retrieves a rating by its ID.
      *
@@ -188,64 +259,124 @@ public class RatingRepository implements IRatingRepository {
     }
 
     /**
-     * Confirms a rating comment.
+     * Confirms the comment of a rating of the user.
      *
      * @param ratingid the ID of the rating
-     * @return true if confirmation succeeded, false otherwise
+     * @param user the user who created the rating
+     * @return OK, NOT_FOUND, FORBIDDEN if the rating belongs to another user, or FAILED
      */
     @Override
-    public boolean confirmRatingComment(int ratingid) {
-        String sql = "UPDATE rating SET confirmed = true WHERE ratingid = ?";
+    public WriteResult confirmRatingComment(int ratingid, User user) {
+        String sql = """
+            WITH target AS (
+                SELECT ratingid, creator FROM rating WHERE ratingid = ?
+            ), confirmed AS (
+                UPDATE rating r SET confirmed = true FROM target t
+                WHERE r.ratingid = t.ratingid AND t.creator = ?
+                RETURNING r.mediaentryid
+            )
+            SELECT (SELECT creator FROM target) AS creator, (SELECT mediaentryid FROM confirmed) AS mediaentryid
+        """;
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, ratingid);
-            return ps.executeUpdate() == 1;
-        } catch (SQLException e) {
-            if (e.getSQLState().equals("23503")) {
-                return false; // MediaEntry existiert nicht
+            ps.setInt(2, user.getUserid());
+            try (ResultSet rs = ps.executeQuery()) {
+                return WriteResult.ofOwnedWrite(rs, user.getUserid());
             }
-            return false;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return WriteResult.FAILED;
         }
     }
 
     /**
-     * Deletes a rating.
+     * Deletes a rating of the user and removes its stars from the rating aggregates
+     * of the media entry and of the author's profile in the same statement.
      *
      * @param ratingid the ID of the rating
-     * @return true if deletion succeeded, false otherwise
+     * @param user the user who created the rating
+     * @return OK, NOT_FOUND, FORBIDDEN if the rating belongs to another user, or FAILED
      */
     @Override
-    public boolean deleteRating(int ratingid) {
-        String sql = "DELETE FROM rating WHERE ratingid = ?";
+    public WriteResult deleteRating(int ratingid, User user) {
+        String sql = """
+            WITH target AS (
+                SELECT ratingid, creator FROM rating WHERE ratingid = ?
+            ), deleted AS (
+                DELETE FROM rating r USING target t
+                WHERE r.ratingid = t.ratingid AND t.creator = ?
+                RETURNING r.mediaentryid, r.creator, r.stars
+            ), media AS (
+                UPDATE mediaentry m SET rating_count = m.rating_count - 1, rating_sum = m.rating_sum - d.stars
+                FROM deleted d WHERE m.mediaentryid = d.mediaentryid
+            ), author AS (
+                UPDATE profile p SET totalratings = p.totalratings - 1, ratingsum = p.ratingsum - d.stars,
+                       avgscore = COALESCE(ROUND((p.ratingsum - d.stars)::numeric / NULLIF(p.totalratings - 1, 0), 2), 0)
+                FROM deleted d WHERE p.userid = d.creator
+            )
+            SELECT (SELECT creator FROM target) AS creator, (SELECT mediaentryid FROM deleted) AS mediaentryid
+        """;
         try (Connection connection = DatabaseManager.INSTANCE.getConnection();
              PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, ratingid);
-            return ps.executeUpdate() == 1;
-        } catch (SQLException e) {
-            if (e.getSQLState().equals("23503")) {
-                return false; // MediaEntry existiert nicht
+            ps.setInt(2, user.getUserid());
+            try (ResultSet rs = ps.executeQuery()) {
+                WriteResult result = WriteResult.ofOwnedWrite(rs, user.getUserid());
+                if (result.isOk()) mediaEntryChanged(rs.getInt("mediaentryid"));
+                return result;
             }
-            return false;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return WriteResult.FAILED;
         }
     }
 
     /**
-     * Checks if a user has liked a rating.
+     * Recomputes the rating aggregates of all media entries and profiles from the rating table.
+     * Used once to backfill existing data and to repair aggregates that got out of sync.
+     * Rating writes are blocked while the aggregates are rebuilt.
      *
-     * @param ratingId the ID of the rating
-     * @param userId the ID of the user
-     * @return true if the user has liked the rating, false otherwise
+     * @return the number of media entries and profiles that had to be corrected
      */
-    @Override
-    public boolean hasUserLikedRating(int ratingId, int userId) {
-        String sql = "SELECT 1 FROM likes WHERE ratingid = ? AND userid = ?";
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, ratingId);
-            ps.setInt(2, userId);
-            return ps.executeQuery().next();
+    public int rebuildRatingAggregates() {
+        String mediaSql = """
+            UPDATE mediaentry m SET rating_count = a.cnt, rating_sum = a.total
+            FROM (SELECT m2.mediaentryid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+                  FROM mediaentry m2 LEFT JOIN rating r ON r.mediaentryid = m2.mediaentryid
+                  GROUP BY m2.mediaentryid) a
+            WHERE m.mediaentryid = a.mediaentryid
+              AND (m.rating_count <> a.cnt OR m.rating_sum <> a.total)
+        """;
+        String profileSql = """
+            UPDATE profile p SET totalratings = a.cnt, ratingsum = a.total,
+                   avgscore = COALESCE(ROUND(a.total::numeric / NULLIF(a.cnt, 0), 2), 0)
+            FROM (SELECT p2.profileid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+                  FROM profile p2 LEFT JOIN rating r ON r.creator = p2.userid
+                  GROUP BY p2.profileid) a
+            WHERE p.profileid = a.profileid
+              AND (p.totalratings <> a.cnt OR p.ratingsum <> a.total)
+        """;
+        try (UnitOfWork work = new UnitOfWork();
+             PreparedStatement lock = work.prepareStatement("LOCK TABLE rating IN SHARE MODE");
+             PreparedStatement media = work.prepareStatement(mediaSql);
+             PreparedStatement profile = work.prepareStatement(profileSql)) {
+            lock.execute();
+            int repaired = media.executeUpdate() + profile.executeUpdate();
+            work.commitTransaction();
+            return repaired;
         } catch (SQLException e) {
-            return false;
+            throw new DataAccessException("Rebuilding the rating aggregates failed", e);
         }
     }
-}
\ No newline at end of file
+
+    private void mediaEntryChanged(int mediaentryid) {
+        // inside a unit of work the rating is only visible to others after its commit
+        UnitOfWork.afterCommit(() -> {
+            DataVersions.getInstance().ratingsChanged(mediaentryid);
+            for (IntConsumer listener : mediaEntryListeners) {
+                listener.accept(mediaentryid);
+            }
+        });
+    }
+}
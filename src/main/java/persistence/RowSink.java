@@ -0,0 +1,20 @@
+package persistence;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed query one at a time, while they are read from the database.
+ *
+ * @param <T> the type of the rows
+ */
+@FunctionalInterface
+public interface RowSink<T> {
+
+    /**
+     * Handles one row, e.g. by writing it to the response.
+     *
+     * @param row the row
+     * @throws IOException if the row cannot be written
+     */
+    void accept(T row) throws IOException;
+}
@@ -0,0 +1,22 @@
+package persistence;
+
+import java.io.IOException;
+
+/**
+ * A query that has been checked but not run yet. Its rows are read from the
+ * database when {@link #forEach(RowSink)} is called, e.g. while a response is sent.
+ *
+ * @param <T> the type of the rows
+ */
+@FunctionalInterface
+public interface RowStream<T> {
+
+    /**
+     * Runs the query and passes every row to the sink.
+     *
+     * @param sink receives the rows in order
+     * @throws IOException if the sink fails
+     * @throws database.DataAccessException if the query fails
+     */
+    void forEach(RowSink<T> sink) throws IOException;
+}
@@ -0,0 +1,72 @@
+package persistence;
+
+import database.DataAccessException;
+import database.UnitOfWork;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Runs a query and passes its rows to a {@link RowSink} as they arrive.
+ * The PostgreSQL driver only fetches rows in batches (fetch size) instead of loading the
+ * whole result inside a transaction, so the query runs in a read-only {@link UnitOfWork}.
+ * The fetch size can be configured with the system property mrp.db.fetchSize.
+ *
+ * The connection is held until the last row was passed on. When the sink writes to a client,
+ * the write timeout of the response (mrp.http.writeTimeoutMs) makes the sink fail for a client
+ * that stops reading, which ends the transaction and returns the connection.
+ */
+final class StreamingQuery {
+
+    /** Number of rows fetched from the database at a time. */
+    static final int FETCH_SIZE = Integer.getInteger("mrp.db.fetchSize", 500);
+
+    /**
+     * Converts the current row of a result set.
+     *
+     * @param <T> the type of the row
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private StreamingQuery() {
+    }
+
+    /**
+     * Runs the query and streams its rows to the sink.
+     *
+     * @param sql the query
+     * @param params the query parameters
+     * @param mapper converts a row
+     * @param sink receives the rows
+     * @param <T> the type of the rows
+     * @return the number of rows
+     * @throws IOException if the sink fails
+     * @throws DataAccessException if the query fails
+     */
+    static <T> int stream(String sql, List<Object> params, RowMapper<T> mapper, RowSink<T> sink) throws IOException {
+        try (UnitOfWork work = UnitOfWork.readOnly();
+             PreparedStatement ps = work.prepareStatement(sql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(mapper.map(rs));
+                    rows++;
+                }
+            }
+            work.commitTransaction();
+            return rows;
+        } catch (SQLException e) {
+            throw new DataAccessException("Streaming query failed", e);
+        }
+    }
+}
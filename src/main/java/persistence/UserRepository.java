@@ -1,13 +1,15 @@
 package persistence;
 
+import database.DataAccessException;
 import database.DatabaseManager;
+import database.UnitOfWork;
 import model.MediaEntry;
 import model.Profile;
 import model.User;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -60,21 +62,24 @@ public class UserRepository implements IUserRepository {
 
     /**
      * Creates a new user and adds it to the registered users list.
+     * The unique username is checked by the insert itself, so concurrent registrations
+     * of the same name cannot both succeed.
      *
      * @param user the user object containing username and password
-     * @return true if user was created successfully, false otherwise
+     * @return true if user was created successfully, false if the username is taken or the insert failed
      */
     @Override
     public boolean createUser(User user) {
         String userSql =
                 "INSERT INTO mrp_user (username, password) " +
-                        "VALUES (?, ?)";
+                        "VALUES (?, ?) ON CONFLICT (username) DO NOTHING";
 
         String profileSql =
                 "INSERT INTO profile (email, userid) VALUES (?, ?)";
 
-        try (Connection conn = DatabaseManager.INSTANCE.getConnection();
-             PreparedStatement psUser = conn.prepareStatement(userSql, Statement.RETURN_GENERATED_KEYS)) {
+        // the user and its profile are created together or not at all
+        try (UnitOfWork work = new UnitOfWork();
+             PreparedStatement psUser = work.getConnection().prepareStatement(userSql, Statement.RETURN_GENERATED_KEYS)) {
             psUser.setString(1, user.getUsername());
             psUser.setString(2, user.getPassword());
             int affectedRows = psUser.executeUpdate();
@@ -83,11 +88,13 @@ public class UserRepository implements IUserRepository {
                 if (!rs.next()) return false;
                 user.setUserid(rs.getInt(1));
             }
-            try (PreparedStatement profilePs = conn.prepareStatement(profileSql)) {
+            try (PreparedStatement profilePs = work.prepareStatement(profileSql)) {
                 profilePs.setString(1, user.getUsername() + "@gmail.com");
                 profilePs.setInt(2, user.getUserid());
                 profilePs.executeUpdate();
             }
+            UnitOfWork.afterCommit(() -> DataVersions.getInstance().profilesChanged());
+            work.commitTransaction();
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -126,14 +133,16 @@ public class UserRepository implements IUserRepository {
 
     /**
      * Retrieves the profile information of a user.
+     * Total ratings and average score are read from the profile row,
+     * where they are maintained on every rating change.
      *
      * @param userId the ID of the user
      * @return the Profile object or null if not found
      */
     @Override
     public Profile getProfile(int userId) {
-        String sql = "SELECT p.profileid, u.username, p.email, p.favoritegenre, COUNT(r.ratingid) AS totalratings, AVG(r.stars) AS avg_score FROM mrp_user u LEFT JOIN profile p ON u.userid = p.userid LEFT JOIN rating r ON u.userid = r.creator WHERE u.userid = ? GROUP BY p.profileid, u.userid, p.email, p.favoritegenre, p.totalratings, p.avgscore";
-        try(Connection conn = DatabaseManager.INSTANCE.getConnection();
+        String sql = "SELECT p.profileid, u.username, p.email, p.favoritegenre, p.totalratings, p.avgscore FROM mrp_user u LEFT JOIN profile p ON u.userid = p.userid WHERE u.userid = ?";
+        try(Connection conn = DatabaseManager.INSTANCE.getReadConnection();
             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, userId);
 
@@ -145,7 +154,7 @@ public class UserRepository implements IUserRepository {
                     profile.setEmail(rs.getString("email"));
                     profile.setFavoriteGenre(rs.getString("favoritegenre"));
                     profile.setTotalRatings(rs.getInt("totalratings"));
-                    profile.setAvgScore(rs.getDouble("avg_score"));
+                    profile.setAvgScore(rs.getDouble("avgscore"));
                     return profile;
                 }
             }
@@ -160,41 +169,32 @@ public class UserRepository implements IUserRepository {
      * Returns the favorite media entries of a user.
      *
      * @param userId the ID of the user
-     * @return list of favorite media entries or null if an error occurs
+     * @return list of favorite media entries, or null on error
      */
     @Override
     public List<MediaEntry> getFavorites(int userId) {
-        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.creator, m.age_restriction, AVG(r.stars) AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m JOIN favorite f ON m.mediaentryid = f.mediaentryid LEFT JOIN mediaentry_genre mg ON mg.mediaentryid = m.mediaentryid LEFT JOIN genre g ON mg.genreid = g.genreid LEFT JOIN rating r ON m.mediaentryid = r.mediaentryid WHERE f.userid = ? GROUP BY m.mediaentryid";
         List<MediaEntry> favorites = new ArrayList<>();
-        try(Connection conn = DatabaseManager.INSTANCE.getConnection();
-            PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-
-            try(ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    MediaEntry mediaEntry = new MediaEntry();
-                    mediaEntry.setMediaentryid(rs.getInt("mediaentryid"));
-                    mediaEntry.setTitle(rs.getString("title"));
-                    mediaEntry.setDescription(rs.getString("description"));
-                    mediaEntry.setMediaType(rs.getString("media_type"));
-                    mediaEntry.setReleaseYear(rs.getInt("release_year"));
-                    mediaEntry.setAgeRestriction(rs.getInt("age_restriction"));
-                    mediaEntry.setAvgscore(rs.getInt("avg_score"));
-                    mediaEntry.setCreatorId(rs.getInt("creator"));
-
-                    // Genres als List setzen
-                    String genresStr = rs.getString("genres");
-                    List<String> genres = genresStr != null ? List.of(genresStr.split(",")) : new ArrayList<>();
-                    mediaEntry.setGenres(genres);
-
-                    favorites.add(mediaEntry);
-                }
-                return favorites;
-            }
-        }catch (SQLException e) {
+        try {
+            streamFavorites(userId, favorites::add);
+        } catch (DataAccessException | IOException e) {
             e.printStackTrace();
             return null;
         }
+        return favorites;
+    }
+
+    /**
+     * Passes the favorite media entries of a user to the sink while they are read from the database.
+     *
+     * @param userId the ID of the user
+     * @param sink receives the media entries
+     * @throws IOException if the sink fails
+     * @throws DataAccessException if the query fails
+     */
+    @Override
+    public void streamFavorites(int userId, RowSink<MediaEntry> sink) throws IOException {
+        String sql = "SELECT m.mediaentryid, m.title, m.description, m.media_type, m.release_year, m.creator, m.age_restriction, " + MediaEntryRepository.AVG_SCORE + " AS avg_score, STRING_AGG(DISTINCT g.name, ',') AS genres FROM mediaentry m JOIN favorite f ON m.mediaentryid = f.mediaentryid LEFT JOIN mediaentry_genre mg ON mg.mediaentryid = m.mediaentryid LEFT JOIN genre g ON mg.genreid = g.genreid WHERE f.userid = ? GROUP BY m.mediaentryid";
+        StreamingQuery.stream(sql, List.of(userId), MediaEntryRepository::mapMediaEntry, sink);
     }
 
     /**
@@ -213,7 +213,9 @@ public class UserRepository implements IUserRepository {
             ps.setString(1, email);
             ps.setString(2, favoritegenre);
             ps.setInt(3, userId);
-            return ps.executeUpdate() == 1;
+            if (ps.executeUpdate() != 1) return false;
+            UnitOfWork.afterCommit(() -> DataVersions.getInstance().profilesChanged());
+            return true;
         }catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -221,21 +223,47 @@ public class UserRepository implements IUserRepository {
     }
 
     /**
-     * Returns the leaderboard of users based on total ratings.
+     * Returns one page of the leaderboard of users based on total ratings.
+     * Ranks are computed by the database in a single query over the maintained
+     * profile aggregates; users with the same number of ratings share a rank.
      *
+     * @param limit maximum number of profiles to return
+     * @param offset number of profiles to skip
      * @return list of Profile objects sorted by total ratings in descending order
      */
     @Override
-    public List<Profile> getLeaderboard() {
+    public List<Profile> getLeaderboard(int limit, int offset) {
+        String sql = """
+            SELECT p.profileid, u.username, p.email, p.favoritegenre, p.totalratings, p.avgscore,
+                   RANK() OVER (ORDER BY p.totalratings DESC) AS ranking
+            FROM profile p
+            JOIN mrp_user u ON u.userid = p.userid
+            ORDER BY p.totalratings DESC, p.userid
+            LIMIT ? OFFSET ?
+        """;
         List<Profile> leaderboard = new ArrayList<>();
-        List<User> users = getAllUsers();
-        for (User user : users) {
-            Profile profile = getProfile(user.getUserid());
-            if (profile != null) {
-                leaderboard.add(profile);
+        try(Connection conn = DatabaseManager.INSTANCE.getReadConnection();
+            PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Profile profile = new Profile();
+                    profile.setProfileId(rs.getInt("profileid"));
+                    profile.setUsername(rs.getString("username"));
+                    profile.setEmail(rs.getString("email"));
+                    profile.setFavoriteGenre(rs.getString("favoritegenre"));
+                    profile.setTotalRatings(rs.getInt("totalratings"));
+                    profile.setAvgScore(rs.getDouble("avgscore"));
+                    profile.setRank(rs.getInt("ranking"));
+                    leaderboard.add(profile);
+                }
             }
+        }catch (SQLException e) {
+            e.printStackTrace();
+            return null;
         }
-        leaderboard.sort((p1, p2) -> Integer.compare(p2.getTotalRatings(), p1.getTotalRatings()));
         return leaderboard;
     }
 
@@ -0,0 +1,52 @@
+package persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Outcome of a write that checks its preconditions in the same statement,
+ * so the caller can tell why nothing was written without asking the database again.
+ */
+public enum WriteResult {
+    /** The write was applied. */
+    OK,
+    /** The row to change, or the row it refers to, does not exist. */
+    NOT_FOUND,
+    /** The row exists but belongs to another user. */
+    FORBIDDEN,
+    /** The row to create already exists. */
+    DUPLICATE,
+    /** The input was rejected before it reached the database. */
+    INVALID,
+    /** The database reported an error. */
+    FAILED;
+
+    /**
+     * Checks if the write was applied.
+     *
+     * @return true for OK
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+
+    /**
+     * Reads the outcome of a write that is restricted to the creator of the row.
+     * The result row holds the creator of the target row (null if it does not exist)
+     * and the media entry ID of the written row (null if nothing was written).
+     *
+     * @param rs the result of the write, not yet advanced
+     * @param userId the ID of the user performing the write
+     * @return the outcome of the write
+     * @throws SQLException if the result cannot be read
+     */
+    static WriteResult ofOwnedWrite(ResultSet rs, int userId) throws SQLException {
+        if (!rs.next()) return NOT_FOUND;
+        int creator = rs.getInt("creator");
+        if (rs.wasNull()) return NOT_FOUND;
+        if (creator != userId) return FORBIDDEN;
+        rs.getInt("mediaentryid");
+        // the row existed when the statement started but was deleted by a concurrent request
+        return rs.wasNull() ? NOT_FOUND : OK;
+    }
+}
@@ -6,7 +6,10 @@ package restserver.http;
 public enum ContentType {
     PLAIN_TEXT("text/plain"),
     HTML("text/html"),
-    JSON("application/json");
+    JSON("application/json"),
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv"),
+    GZIP("application/gzip");
 
     public final String type;
 
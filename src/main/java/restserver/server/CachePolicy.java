@@ -0,0 +1,75 @@
+package restserver.server;
+
+import java.util.function.Function;
+
+/**
+ * Caching rules of a route: the Cache-Control header of its successful responses and,
+ * for GET routes, how to get the current version of the requested data.
+ *
+ * The version is turned into a weak ETag. If the client sends it back in If-None-Match,
+ * the {@link Router} answers with 304 Not Modified without calling the route handler,
+ * so the version must be cheap to compute, e.g. from in-memory counters, never by
+ * reading the data itself. While the data may be read from a replica that does not have its
+ * latest change yet, the version function returns null and the response gets no ETag, so a
+ * stale body is never revalidated as current.
+ *
+ * @param cacheControl the Cache-Control header value, e.g. "private, no-cache"
+ * @param version returns the version of the data of a request, or null for routes without ETags
+ */
+public record CachePolicy(String cacheControl, Function<Request, String> version) {
+
+    /**
+     * Creates a policy that only sets the Cache-Control header.
+     *
+     * @param cacheControl the Cache-Control header value
+     * @return the cache policy
+     */
+    public static CachePolicy of(String cacheControl) {
+        return new CachePolicy(cacheControl, null);
+    }
+
+    /**
+     * Creates a policy for data with a version, so clients can revalidate with If-None-Match.
+     *
+     * @param cacheControl the Cache-Control header value
+     * @param version returns the version of the data of a request, or null if it has none yet
+     * @return the cache policy
+     */
+    public static CachePolicy versioned(String cacheControl, Function<Request, String> version) {
+        return new CachePolicy(cacheControl, version);
+    }
+
+    /**
+     * Returns the weak ETag of the data of a request.
+     *
+     * @param request the matched request
+     * @return the ETag, or null if the policy or the data has no version
+     */
+    String etag(Request request) {
+        String current = version == null ? null : version.apply(request);
+        return current == null ? null : "W/\"" + current + "\"";
+    }
+
+    /**
+     * Checks if an If-None-Match header contains the ETag, comparing weakly as required for GET.
+     *
+     * @param ifNoneMatch the header value, may be null
+     * @param etag the current ETag
+     * @return true if the client already has this version
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -1,5 +1,13 @@
 package restserver.server;
 
+import metrics.RouteMetrics;
+import model.User;
+import restserver.http.Method;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
@@ -7,18 +15,30 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Represents an HTTP request and parses its URL.
  * Stores the full URL, the path, query parameters, and path parts.
+ * When the request was matched by the {@link Router} it also holds the method,
+ * the path variables, the authenticated user and gives access to the body.
  */
 public class Request {
+    private final URI uri;
     private String urlContent;
     private String pathname;
     private List<String> pathParts;
     private String params;
 
+    private Method method;
+    private Map<String, Object> pathVariables = Map.of();
+    private User user;
+    private Supplier<InputStream> bodySource;
+    private String body;
+    private RouteMetrics routeMetrics;
+
     public Request(URI url) {
+        this.uri = url;
         this.setUrlContent(url.toString());
 
         this.setPathname(url.getPath());
@@ -39,18 +59,9 @@ public class Request {
 
     private void setPathname(String pathname) {
         this.pathname = pathname;
-        String[] stringParts = pathname.split("/");
-        this.pathParts = new ArrayList<>();
-        for (String part :stringParts)
-        {
-            if (part != null &&
-                    part.length() > 0)
-            {
-                this.pathParts.add(part);
-            }
-        }
-
+        this.pathParts = null;
     }
+
     public String getParams() {
         return params;
     }
@@ -59,7 +70,24 @@ public class Request {
         this.params = params;
     }
 
+    /**
+     * Returns the non-empty segments of the path.
+     * They are only split when needed, the router matches the path without them.
+     *
+     * @return the path segments
+     */
     public List<String> getPathParts() {
+        if (pathParts == null) {
+            List<String> parts = new ArrayList<>();
+            int start = 0;
+            while (start < pathname.length()) {
+                int end = pathname.indexOf('/', start);
+                if (end < 0) end = pathname.length();
+                if (end > start) parts.add(pathname.substring(start, end));
+                start = end + 1;
+            }
+            pathParts = parts;
+        }
         return pathParts;
     }
 
@@ -67,6 +95,102 @@ public class Request {
         this.pathParts = pathParts;
     }
 
+    public Method getMethod() {
+        return method;
+    }
+
+    void setMethod(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Returns the user authenticated by the router.
+     *
+     * @return the user, or null for public routes
+     */
+    public User getUser() {
+        return user;
+    }
+
+    void setUser(User user) {
+        this.user = user;
+    }
+
+    /**
+     * Returns the value of a path variable of the matched route template.
+     *
+     * @param name the variable name in the template
+     * @return the value (Integer for {name:int}, otherwise String), or null if unknown
+     */
+    public Object getPathVariable(String name) {
+        return pathVariables.get(name);
+    }
+
+    /**
+     * Returns the value of an integer path variable ({name:int} in the route template).
+     *
+     * @param name the variable name in the template
+     * @return the value
+     * @throws IllegalArgumentException if the route has no integer variable with this name
+     */
+    public int getPathInt(String name) {
+        if (pathVariables.get(name) instanceof Integer value) {
+            return value;
+        }
+        throw new IllegalArgumentException("No integer path variable " + name);
+    }
+
+    void setPathVariables(Map<String, Object> pathVariables) {
+        this.pathVariables = pathVariables;
+    }
+
+    void setBodySource(Supplier<InputStream> bodySource) {
+        this.bodySource = bodySource;
+    }
+
+    /**
+     * Returns the request body as text. It is read on first access,
+     * so routes that do not need the body never read it.
+     *
+     * @return the body, or an empty string if there is none
+     */
+    public String getBody() {
+        if (body == null) {
+            if (bodySource == null) {
+                body = "";
+            } else {
+                try (InputStream in = bodySource.get()) {
+                    body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Returns the request body as a stream, e.g. to parse large bodies while they arrive.
+     * The body can only be read once, either with this method or with {@link #getBody()}.
+     *
+     * @return the body stream, empty if there is no body
+     */
+    public InputStream getBodyStream() {
+        if (body != null || bodySource == null) {
+            return new ByteArrayInputStream(getBody().getBytes(StandardCharsets.UTF_8));
+        }
+        return bodySource.get();
+    }
+
+    /**
+     * Returns the query parameters of this request.
+     *
+     * @return a map of query parameter names and their values
+     */
+    public Map<String, String> getQueryParams() {
+        return getQueryParams(uri);
+    }
+
     /**
      * Returns the query parameters from the URI as a map of key-value pairs.
      *
@@ -93,4 +217,17 @@ public class Request {
 
         return params;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the metrics of the route that matched the request.
+     *
+     * @return the route metrics, or null if no route matched
+     */
+    RouteMetrics getRouteMetrics() {
+        return routeMetrics;
+    }
+
+    void setRouteMetrics(RouteMetrics routeMetrics) {
+        this.routeMetrics = routeMetrics;
+    }
+}
@@ -6,15 +6,19 @@ import restserver.http.HttpStatus;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Represents an HTTP response to be sent to the client.
  * Stores the status code, content type, and response content.
+ * The body is compressed when the client accepts it (see {@link ResponseCompression}).
  */
 public class Response {
     private int status;
     private String contentType;
     private String content;
+    private final Map<String, String> headers = new LinkedHashMap<>();
 
     public Response(HttpStatus httpStatus, ContentType contentType, String content) {
         this.status = httpStatus.code;
@@ -23,16 +27,42 @@ public class Response {
     }
 
     public void send(HttpExchange httpExchange) {
-        httpExchange.getResponseHeaders().add("Cache-Control", "nocache");
+        // routes with a CachePolicy replace this default
+        httpExchange.getResponseHeaders().add("Cache-Control", "no-cache");
         httpExchange.getResponseHeaders().add("Content-Type", contentType);
+        if (ResponseCompression.ENABLED) {
+            // caches must not serve a compressed body to clients that did not ask for it
+            httpExchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+        }
+        headers.forEach(httpExchange.getResponseHeaders()::set);
 
-        try (httpExchange) {
-            byte[] responseBody = content.getBytes(StandardCharsets.UTF_8);
-            httpExchange.sendResponseHeaders(status, responseBody.length);
-            httpExchange.getResponseBody().write(responseBody);
+        try {
+            writeBody(httpExchange);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        // only a complete response ends the exchange, after a failure the connection is dropped
+        httpExchange.close();
+    }
+
+    /**
+     * Sends the status line and writes the body. The headers are already set.
+     * Bodies of at least the minimum compression size are compressed with the negotiated encoding.
+     *
+     * @param httpExchange the exchange to write to
+     * @throws IOException if writing fails
+     */
+    protected void writeBody(HttpExchange httpExchange) throws IOException {
+        byte[] responseBody = content.getBytes(StandardCharsets.UTF_8);
+        String encoding = responseBody.length >= ResponseCompression.MIN_SIZE
+                ? ResponseCompression.encodingFor(httpExchange, getContentType()) : null;
+        if (encoding != null) {
+            responseBody = ResponseCompression.compress(responseBody, encoding, ResponseCompression.LEVEL);
+            httpExchange.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        // -1 sends no body at all, as required for 204 and 304
+        httpExchange.sendResponseHeaders(status, responseBody.length == 0 ? -1 : responseBody.length);
+        httpExchange.getResponseBody().write(responseBody);
     }
 
     public int getStatus() {
@@ -47,4 +77,18 @@ public class Response {
         return content;
     }
 
+    /**
+     * Sets an additional response header, replacing a default header with the same name.
+     *
+     * @param name the header name
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package restserver.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import restserver.http.ContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates and applies the Content-Encoding of response bodies.
+ *
+ * The encoding is chosen from the Accept-Encoding header of the request, gzip and deflate
+ * (zlib format, as HTTP defines it) are supported and gzip wins if both are equally preferred.
+ * Bodies smaller than the minimum size are sent uncompressed, because the compression
+ * overhead outweighs the saved bytes there.
+ *
+ * Configuration: mrp.http.compression.enabled (default true), mrp.http.compression.minSize
+ * in bytes (default 1024) and mrp.http.compression.level from 1 (fastest) to 9 (smallest, default 6).
+ */
+public final class ResponseCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("mrp.http.compression.enabled", "true"));
+    static final int MIN_SIZE = Integer.getInteger("mrp.http.compression.minSize", 1024);
+    static final int LEVEL = Math.max(Deflater.BEST_SPEED,
+            Math.min(Deflater.BEST_COMPRESSION, Integer.getInteger("mrp.http.compression.level", 6)));
+
+    private ResponseCompression() {
+    }
+
+    /**
+     * Returns the encoding the client accepts for the response of this exchange.
+     *
+     * @param httpExchange the exchange with the request headers
+     * @param contentType the content type of the response body
+     * @return gzip, deflate, or null if the body should be sent uncompressed
+     */
+    static String encodingFor(HttpExchange httpExchange, String contentType) {
+        // compressing an already compressed body only costs CPU
+        if (!ENABLED || ContentType.GZIP.type.equals(contentType)) return null;
+        List<String> values = httpExchange.getRequestHeaders().get("Accept-Encoding");
+        return values == null ? null : negotiate(String.join(",", values));
+    }
+
+    /**
+     * Chooses gzip or deflate from an Accept-Encoding header value, respecting q-values.
+     *
+     * @param acceptEncoding the header value, e.g. "gzip, deflate;q=0.5"
+     * @return gzip, deflate, or null if neither is acceptable
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return null;
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case GZIP, "x-gzip" -> gzip = q;
+                case DEFLATE -> deflate = q;
+                case "*" -> any = q;
+                default -> { }
+            }
+        }
+        // codings that are not listed get the q-value of "*"
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+
+        if (gzip <= 0 && deflate <= 0) return null;
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    /**
+     * Compresses a complete body.
+     *
+     * @param body the uncompressed body
+     * @param encoding gzip or deflate
+     * @param level the compression level from 1 to 9
+     * @return the compressed body
+     */
+    public static byte[] compress(byte[] body, String encoding, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream compressor = compressor(out, encoding, level, 8192)) {
+            compressor.write(body);
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Wraps a stream so that everything written to it is compressed.
+     * Closing the returned stream finishes the compressed data and closes the wrapped stream.
+     *
+     * @param out the stream that receives the compressed bytes
+     * @param encoding gzip or deflate
+     * @param level the compression level from 1 to 9
+     * @param bufferSize size of the output buffer of the compressor
+     * @return the compressing stream
+     * @throws IOException if the gzip header cannot be written
+     */
+    public static OutputStream compressor(OutputStream out, String encoding, int level, int bufferSize) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(out, bufferSize) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        if (DEFLATE.equals(encoding)) {
+            return new DeflaterOutputStream(out, new Deflater(level), bufferSize) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // a deflater passed in is not released by DeflaterOutputStream itself
+                        def.end();
+                    }
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unsupported encoding " + encoding);
+    }
+}
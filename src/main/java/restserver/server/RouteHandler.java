@@ -0,0 +1,89 @@
+package restserver.server;
+
+import java.time.Duration;
+
+/**
+ * Handles a request that was matched by the {@link Router}.
+ */
+@FunctionalInterface
+public interface RouteHandler {
+
+    /**
+     * Handles the request.
+     *
+     * @param request the request with its path variables, body and authenticated user
+     * @return the response to send
+     */
+    Response handle(Request request);
+
+    /**
+     * Returns the time budget of the route. Database statements of the request are canceled
+     * when it runs out, and the client gets 504 Gateway Timeout.
+     *
+     * @return the budget, or null if the route has none
+     */
+    default Duration deadline() {
+        return null;
+    }
+
+    /**
+     * Checks if a successful non-GET request of the route changes data. The {@link Router} records
+     * such requests, so the user reads their own writes from the primary database afterwards.
+     *
+     * @return false for routes that only read, e.g. a login sent with POST
+     */
+    default boolean changesData() {
+        return true;
+    }
+
+    /**
+     * Gives a handler a time budget.
+     *
+     * @param budget the time the request may take, counted from routing
+     * @param handler the handler of the route
+     * @return a handler with the budget
+     */
+    static RouteHandler withDeadline(Duration budget, RouteHandler handler) {
+        return new RouteHandler() {
+            @Override
+            public Response handle(Request request) {
+                return handler.handle(request);
+            }
+
+            @Override
+            public Duration deadline() {
+                return budget;
+            }
+
+            @Override
+            public boolean changesData() {
+                return handler.changesData();
+            }
+        };
+    }
+
+    /**
+     * Marks a handler of a non-GET route that does not change data.
+     *
+     * @param handler the handler of the route
+     * @return a handler whose requests are not recorded as writes
+     */
+    static RouteHandler readOnly(RouteHandler handler) {
+        return new RouteHandler() {
+            @Override
+            public Response handle(Request request) {
+                return handler.handle(request);
+            }
+
+            @Override
+            public Duration deadline() {
+                return handler.deadline();
+            }
+
+            @Override
+            public boolean changesData() {
+                return false;
+            }
+        };
+    }
+}
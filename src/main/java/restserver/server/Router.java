@@ -0,0 +1,394 @@
+package restserver.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import database.DeadlineExceededException;
+import database.QueryDeadline;
+import database.ReadRouting;
+import database.RequestStatements;
+import metrics.Metrics;
+import metrics.RouteMetrics;
+import model.User;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+import restserver.http.Method;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+/**
+ * Dispatches requests to the route registered for their method and path.
+ *
+ * Routes are path templates like /api/media/{id:int}/rate. A template consists of literal
+ * segments, which are matched case-insensitively, and path variables, which are either
+ * strings ({name}) or integers ({name:int}). All templates are compiled into one trie of
+ * path segments when they are added, so a request is matched segment by segment in time
+ * proportional to its path length, without regular expressions. Literal segments take
+ * precedence over path variables.
+ *
+ * Unknown paths are answered with 404, known paths with an unsupported method with 405.
+ * Routes require a valid Bearer token unless they are added as public routes.
+ *
+ * Routes can have a {@link CachePolicy}. Its Cache-Control header is set on successful
+ * responses; if it has a version, GET responses get an ETag and a request whose If-None-Match
+ * contains the current ETag is answered with 304 before the route handler is called.
+ * A version function returns null while the replica may not have its data yet, see
+ * {@link CachePolicy}.
+ *
+ * The user is bound to the request thread for {@link ReadRouting}, on public routes too if the
+ * request carries a valid Bearer token: after a successful POST, PUT, PATCH or DELETE of a route
+ * that changes data ({@link RouteHandler#changesData()}) the user's reads go to the primary
+ * database for a short window.
+ *
+ * Routes can have a deadline ({@link RouteHandler#withDeadline}), which is carried down to the
+ * database statements as {@link QueryDeadline}. A request that runs out of time is answered with
+ * 504, one that cannot get a database connection in time with 503, both with a Retry-After header
+ * configured with mrp.http.retryAfterSeconds. Streamed bodies are written after the route handler
+ * returned; if writing one fails after its status line was sent, the connection is dropped, so the
+ * client cannot take the truncated body for a complete one, and the request is recorded with the
+ * status of the error.
+ *
+ * Every request is recorded in {@link Metrics}: its latency until the response was sent and its
+ * status code, per route template, so that path variables do not create new series, and the
+ * database statements it executed ({@link RequestStatements}).
+ */
+public class Router implements HttpHandler {
+
+    /**
+     * Type of a path variable.
+     */
+    private enum VariableType {
+        STRING,
+        INT
+    }
+
+    /**
+     * A registered route.
+     */
+    private record Route(RouteHandler handler, boolean authenticated, CachePolicy cachePolicy, RouteMetrics metrics) {}
+
+    /**
+     * A path segment in the trie with the routes that end here.
+     */
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node variable;
+        private String variableName;
+        private VariableType variableType;
+        private final Map<Method, Route> routes = new EnumMap<>(Method.class);
+    }
+
+    private static final String RETRY_AFTER = System.getProperty("mrp.http.retryAfterSeconds", "1");
+
+    private final Node root = new Node();
+    private final Function<String, User> authenticator;
+    private final Metrics metrics = Metrics.getInstance();
+    private final RouteMetrics unmatched = metrics.route("*", "unmatched");
+
+    /**
+     * Creates a router.
+     *
+     * @param authenticator returns the user of a token, or null if the token is invalid
+     */
+    public Router(Function<String, User> authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    /**
+     * Adds a route that requires an authenticated user.
+     *
+     * @param method the HTTP method
+     * @param template the path template, e.g. /api/media/{id:int}
+     * @param handler the handler of the route
+     * @return this router
+     * @throws IllegalArgumentException if the template is invalid or the route already exists
+     */
+    public Router add(Method method, String template, RouteHandler handler) {
+        return add(method, template, handler, true, null);
+    }
+
+    /**
+     * Adds a route that requires an authenticated user and has caching rules.
+     *
+     * @param method the HTTP method
+     * @param template the path template, e.g. /api/media/{id:int}
+     * @param handler the handler of the route
+     * @param cachePolicy the Cache-Control header and ETag version of the route
+     * @return this router
+     * @throws IllegalArgumentException if the template is invalid or the route already exists
+     */
+    public Router add(Method method, String template, RouteHandler handler, CachePolicy cachePolicy) {
+        return add(method, template, handler, true, cachePolicy);
+    }
+
+    /**
+     * Adds a route that can be called without a token.
+     *
+     * @param method the HTTP method
+     * @param template the path template, e.g. /api/users/login
+     * @param handler the handler of the route
+     * @return this router
+     * @throws IllegalArgumentException if the template is invalid or the route already exists
+     */
+    public Router addPublic(Method method, String template, RouteHandler handler) {
+        return add(method, template, handler, false, null);
+    }
+
+    /**
+     * Adds a route that can be called without a token and has caching rules.
+     *
+     * @param method the HTTP method
+     * @param template the path template, e.g. /api/leaderboard
+     * @param handler the handler of the route
+     * @param cachePolicy the Cache-Control header and ETag version of the route
+     * @return this router
+     * @throws IllegalArgumentException if the template is invalid or the route already exists
+     */
+    public Router addPublic(Method method, String template, RouteHandler handler, CachePolicy cachePolicy) {
+        return add(method, template, handler, false, cachePolicy);
+    }
+
+    private Router add(Method method, String template, RouteHandler handler, boolean authenticated, CachePolicy cachePolicy) {
+        Node node = root;
+        for (String segment : template.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                node = variableChild(node, segment.substring(1, segment.length() - 1), template);
+            } else {
+                node = node.literals.computeIfAbsent(segment.toLowerCase(), key -> new Node());
+            }
+        }
+        Route route = new Route(handler, authenticated, cachePolicy, metrics.route(method.name(), template));
+        if (node.routes.putIfAbsent(method, route) != null) {
+            throw new IllegalArgumentException("Duplicate route " + method + " " + template);
+        }
+        return this;
+    }
+
+    private Node variableChild(Node node, String variable, String template) {
+        int colon = variable.indexOf(':');
+        String name = colon < 0 ? variable : variable.substring(0, colon);
+        VariableType type = colon < 0 ? VariableType.STRING
+                : VariableType.valueOf(variable.substring(colon + 1).toUpperCase());
+        if (node.variable == null) {
+            node.variable = new Node();
+            node.variableName = name;
+            node.variableType = type;
+        } else if (!node.variableName.equals(name) || node.variableType != type) {
+            throw new IllegalArgumentException("Conflicting path variable {" + variable + "} in " + template);
+        }
+        return node.variable;
+    }
+
+    /**
+     * Matches the request, authenticates the user if the route requires it,
+     * calls the route handler and sends its response.
+     *
+     * @param httpExchange contains the HTTP request and response
+     */
+    @Override
+    public void handle(HttpExchange httpExchange) {
+        long start = System.nanoTime();
+        metrics.requestStarted();
+        Request request = new Request(httpExchange.getRequestURI());
+        int status = HttpStatus.INTERNAL_SERVER_ERROR.code;
+        RequestStatements statements = RequestStatements.begin(httpExchange.getRequestMethod() + " " + request.getPathname());
+        try {
+            Response response = route(httpExchange, request);
+            status = response.getStatus();
+            try {
+                response.send(httpExchange);
+            } catch (RuntimeException e) {
+                // streamed bodies fail while they are sent, e.g. when a query runs out of time
+                Response failure = failure(e);
+                status = failure.getStatus();
+                if (httpExchange.getResponseCode() != -1) {
+                    // the status line is already sent: the HttpServer drops the connection,
+                    // so the client sees an incomplete transfer instead of a truncated body
+                    throw e;
+                }
+                httpExchange.getResponseHeaders().clear();
+                failure.send(httpExchange);
+            }
+        } finally {
+            // streamed bodies read from the database while they are sent
+            ReadRouting.clear();
+            QueryDeadline.clear();
+            statements.close();
+            RouteMetrics routeMetrics = request.getRouteMetrics() != null ? request.getRouteMetrics() : unmatched;
+            routeMetrics.recordStatements(statements.getStatementCount(), !statements.getRepeatedStatements().isEmpty());
+            metrics.requestFinished(routeMetrics, status, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Finds and calls the route of a request.
+     *
+     * @param httpExchange contains the HTTP request
+     * @param request the parsed request
+     * @return the response of the route, or an error response
+     */
+    Response route(HttpExchange httpExchange, Request request) {
+        Map<String, Object> pathVariables = new HashMap<>();
+        Node node = match(root, request.getPathname(), 0, pathVariables);
+        if (node == null || node.routes.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Not found");
+        }
+
+        Method method = parseMethod(httpExchange.getRequestMethod());
+        Route route = method != null ? node.routes.get(method) : null;
+        if (route == null) {
+            Response response = error(HttpStatus.METHOD_NOT_ALLOWED, "Method not allowed");
+            StringJoiner allowed = new StringJoiner(", ");
+            node.routes.keySet().forEach(m -> allowed.add(m.name()));
+            response.setHeader("Allow", allowed.toString());
+            return response;
+        }
+
+        request.setRouteMetrics(route.metrics());
+        Duration deadline = route.handler().deadline();
+        if (deadline != null) {
+            QueryDeadline.start(deadline);
+        }
+
+        String authHeader = httpExchange.getRequestHeaders().getFirst("Authorization");
+        boolean hasToken = authHeader != null && authHeader.startsWith("Bearer ");
+        if (route.authenticated()) {
+            if (!hasToken) {
+                return error(HttpStatus.UNAUTHORIZED, "Missing or invalid token");
+            }
+            User user = authenticator.apply(authHeader.substring("Bearer ".length()));
+            if (user == null) {
+                return error(HttpStatus.UNAUTHORIZED, "Invalid token");
+            }
+            request.setUser(user);
+            ReadRouting.bindUser(user.getUserid());
+        } else if (hasToken) {
+            // public routes ignore the user, but a user who just wrote must still read their writes
+            User user = authenticator.apply(authHeader.substring("Bearer ".length()));
+            if (user != null) {
+                ReadRouting.bindUser(user.getUserid());
+            }
+        }
+
+        request.setMethod(method);
+        request.setPathVariables(pathVariables);
+        request.setBodySource(httpExchange::getRequestBody);
+        try {
+            CachePolicy cachePolicy = route.cachePolicy();
+            // the version is read before the handler runs, so a concurrent write can only
+            // make the ETag older than the body, never newer
+            String etag = cachePolicy != null && method == Method.GET ? cachePolicy.etag(request) : null;
+            if (CachePolicy.matches(httpExchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                Response notModified = new Response(HttpStatus.NOT_MODIFIED, ContentType.JSON, "");
+                notModified.setHeader("Cache-Control", cachePolicy.cacheControl());
+                notModified.setHeader("ETag", etag);
+                return notModified;
+            }
+
+            Response response = route.handler().handle(request);
+            if (response == null) {
+                return error(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error");
+            }
+            if (method != Method.GET && route.handler().changesData() && response.getStatus() < 400) {
+                ReadRouting.recordWrite();
+            }
+            if (cachePolicy != null && response.getStatus() == HttpStatus.OK.code) {
+                response.setHeader("Cache-Control", cachePolicy.cacheControl());
+                if (etag != null) response.setHeader("ETag", etag);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            return failure(e);
+        }
+    }
+
+    /**
+     * Creates the error response for a failed request: 504 if it ran out of time,
+     * 503 if no database connection was free, otherwise 500.
+     *
+     * @param e the error of the route handler or of writing a streamed body
+     * @return the error response
+     */
+    private static Response failure(RuntimeException e) {
+        if (e instanceof DeadlineExceededException) {
+            return retryLater(HttpStatus.GATEWAY_TIMEOUT, "Request took too long");
+        }
+        if (e.getCause() instanceof SQLTransientConnectionException) {
+            // every pooled connection stayed busy for the whole acquire timeout
+            return retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Service busy");
+        }
+        e.printStackTrace();
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error");
+    }
+
+    /**
+     * Matches the path from the given position on, trying literal segments before path variables.
+     *
+     * @return the node the path ends at, or null if no template matches
+     */
+    private Node match(Node node, String path, int start, Map<String, Object> pathVariables) {
+        while (start < path.length() && path.charAt(start) == '/') start++;
+        if (start >= path.length()) return node;
+
+        int end = path.indexOf('/', start);
+        if (end < 0) end = path.length();
+        String segment = path.substring(start, end);
+
+        Node literal = node.literals.get(segment.toLowerCase());
+        if (literal != null) {
+            Node found = match(literal, path, end, pathVariables);
+            if (found != null) return found;
+        }
+
+        if (node.variable != null) {
+            Object value = node.variableType == VariableType.INT ? parseInt(segment) : segment;
+            if (value != null) {
+                Node found = match(node.variable, path, end, pathVariables);
+                if (found != null) {
+                    pathVariables.put(node.variableName, value);
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a non-negative integer segment.
+     *
+     * @return the number, or null if the segment is not a number or too large
+     */
+    private static Integer parseInt(String segment) {
+        if (segment.isEmpty() || segment.length() > 10) return null;
+        long value = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') return null;
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : null;
+    }
+
+    private static Method parseMethod(String method) {
+        for (Method m : Method.values()) {
+            if (m.name().equals(method)) return m;
+        }
+        return null;
+    }
+
+    private static Response error(HttpStatus status, String message) {
+        return new Response(status, ContentType.JSON, "{ \"error\": \"" + message + "\" }");
+    }
+
+    private static Response retryLater(HttpStatus status, String message) {
+        Response response = error(status, message);
+        response.setHeader("Retry-After", RETRY_AFTER);
+        return response;
+    }
+}
@@ -1,9 +1,20 @@
 package restserver.server;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import database.DatabaseManager;
+import database.InstrumentedConnection;
+import database.QueryDeadline;
 import handler.LeaderboardHandler;
 import handler.MediaEntryHandler;
+import handler.MetricsHandler;
 import handler.RatingHandler;
 import handler.UserHandler;
+import metrics.MeteredRepository;
+import metrics.Metrics;
+import persistence.CachingMediaEntryRepository;
+import persistence.IMediaEntryRepository;
+import persistence.IRatingRepository;
 import persistence.IUserRepository;
 import persistence.MediaEntryRepository;
 import persistence.RatingRepository;
@@ -15,32 +26,97 @@ import service.UserService;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * Sets up and starts the HTTP server.
- * Registers the user, media entry, and rating handlers.
+ * Registers the routes of the user, media entry, rating and leaderboard handlers in one {@link Router}.
+ *
+ * Requests are not handled on the dispatcher thread of the HttpServer but on an executor:
+ * by default every request gets its own virtual thread, alternatively a bounded pool of
+ * platform threads can be used. The server can be configured with the system properties
+ * mrp.server.port, mrp.server.backlog, mrp.server.executor (virtual or platform),
+ * mrp.server.poolSize and mrp.server.queueCapacity.
  */
 public class Server {
+
+    /**
+     * The thread model used to handle requests.
+     */
+    public enum ExecutorMode {
+        VIRTUAL,
+        PLATFORM
+    }
+
+    private final int port;
+    private final int backlog;
+    private final ExecutorMode executorMode;
+    private final int poolSize;
+    private final int queueCapacity;
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server that is configured with system properties.
+     */
+    public Server() {
+        this(Integer.getInteger("mrp.server.port", 8080),
+                Integer.getInteger("mrp.server.backlog", 128),
+                ExecutorMode.valueOf(System.getProperty("mrp.server.executor", "virtual").toUpperCase()),
+                Integer.getInteger("mrp.server.poolSize", 32),
+                Integer.getInteger("mrp.server.queueCapacity", 1000));
+    }
+
+    /**
+     * Creates a server with the given configuration.
+     *
+     * @param port the port to listen on (0 picks a free port)
+     * @param backlog the maximum number of queued incoming connections
+     * @param executorMode virtual thread per request or a bounded platform pool
+     * @param poolSize number of platform threads (only used for PLATFORM)
+     * @param queueCapacity number of requests waiting for a platform thread (only used for PLATFORM)
+     */
+    public Server(int port, int backlog, ExecutorMode executorMode, int poolSize, int queueCapacity) {
+        this.port = port;
+        this.backlog = backlog;
+        this.executorMode = executorMode;
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+    }
+
     /**
-     * Starts the REST server on port 8080.
+     * Starts the REST server.
      * Initializes repositories, services, and handlers for users, media entries, and ratings.
      *
      * @throws IOException if the server fails to start
      */
     public void start() throws IOException {
-        HttpServer server = HttpServer.create(new InetSocketAddress(8080), 10);
+        Metrics metrics = Metrics.getInstance();
 
         // Rating Setup
         RatingRepository ratingRepository = RatingRepository.getInstance();
-        RatingService ratingService = RatingService.getInstance(ratingRepository);
+        RatingService ratingService = RatingService.getInstance(
+                MeteredRepository.wrap(IRatingRepository.class, ratingRepository, "RatingRepository", metrics));
         RatingHandler ratingHandler = new RatingHandler(ratingService);
         // MediaEntry Setup
-        MediaEntryRepository mediaEntryRepository = MediaEntryRepository.getInstance();
+        CachingMediaEntryRepository mediaEntryRepository = new CachingMediaEntryRepository(
+                MeteredRepository.wrap(IMediaEntryRepository.class, MediaEntryRepository.getInstance(), "MediaEntryRepository", metrics));
+        ratingRepository.addMediaEntryChangeListener(mediaEntryRepository::invalidate);
         MediaEntryService mediaEntryService = MediaEntryService.getInstance(mediaEntryRepository);
         MediaEntryHandler mediaEntryHandler = new MediaEntryHandler(mediaEntryService, ratingService);
 
         // User Setup
-        IUserRepository userRepository = UserRepository.getInstance();
+        IUserRepository userRepository = MeteredRepository.wrap(IUserRepository.class, UserRepository.getInstance(), "UserRepository", metrics);
         UserService userservice = UserService.getInstance(userRepository);
         UserHandler userHandler = new UserHandler(userservice, ratingService, mediaEntryService);
 
@@ -48,12 +124,126 @@ public class Server {
         LeaderboardService leaderboardService = LeaderboardService.getInstance(userRepository);
         LeaderboardHandler leaderboardHandler = new LeaderboardHandler(leaderboardService);
 
-        server.createContext("/api/users", userHandler);
-        server.createContext("/api/media", mediaEntryHandler);
-        server.createContext("/api/ratings", ratingHandler);
-        server.createContext("/api/leaderboard", leaderboardHandler);
+        Router router = new Router(userservice::getUserByToken);
+        userHandler.registerRoutes(router);
+        mediaEntryHandler.registerRoutes(router);
+        ratingHandler.registerRoutes(router);
+        leaderboardHandler.registerRoutes(router);
+        new MetricsHandler(metrics).registerRoutes(router);
+        registerMetrics(metrics, mediaEntryRepository, userservice);
+
+        Map<String, HttpHandler> contexts = new LinkedHashMap<>();
+        contexts.put("/", router);
+
+        start(contexts);
+    }
+
+    /**
+     * Registers the statistics of the connection pools, the media entry cache, the sessions,
+     * the request deadlines and the database statements, they are read when the metrics are scraped.
+     */
+    private static void registerMetrics(Metrics metrics, CachingMediaEntryRepository cache, UserService userService) {
+        registerPool(metrics, "primary", DatabaseManager.INSTANCE::getPoolStats);
+        registerPool(metrics, "replica", DatabaseManager.INSTANCE::getReplicaPoolStats);
+
+        metrics.counter("mrp_cache_hits_total", "cache=\"media\"", "Reads answered from the cache", cache::getHits);
+        metrics.counter("mrp_cache_misses_total", "cache=\"media\"", "Reads loaded from the database", cache::getMisses);
+        metrics.counter("mrp_cache_evictions_total", "cache=\"media\"", "Entries removed to make room", cache::getEvictions);
+        metrics.gauge("mrp_cache_entries", "cache=\"media\"", "Cached entries", cache::getSize);
+
+        metrics.gauge("mrp_sessions", "", "Live login sessions", () -> userService.getTokenStore().getLiveSessions());
+        metrics.counter("mrp_session_evictions_total", "", "Sessions removed because they expired or the store was full",
+                () -> userService.getTokenStore().getEvictions());
+        metrics.counter("mrp_deadline_exceeded_total", "", "Database statements stopped by a request deadline",
+                QueryDeadline::getExceededCount);
 
+        metrics.counter("mrp_db_statements_total", "", "Executed database statements", InstrumentedConnection::getStatements);
+        metrics.counter("mrp_db_statement_seconds_total", "", "Time spent executing database statements",
+                InstrumentedConnection::getExecutionSeconds);
+        metrics.counter("mrp_db_rows_total", "", "Rows fetched or changed by database statements", InstrumentedConnection::getRows);
+        metrics.counter("mrp_db_slow_statements_total", "", "Statements that reached the slow-query threshold",
+                InstrumentedConnection::getSlowStatements);
+    }
+
+    private static void registerPool(Metrics metrics, String pool, Supplier<HikariPoolMXBean> stats) {
+        String labels = "pool=\"" + pool + "\"";
+        poolGauge(metrics, labels, "active", stats, HikariPoolMXBean::getActiveConnections);
+        poolGauge(metrics, labels, "idle", stats, HikariPoolMXBean::getIdleConnections);
+        poolGauge(metrics, labels, "total", stats, HikariPoolMXBean::getTotalConnections);
+        metrics.gauge("mrp_db_pool_waiting_threads", labels, "Threads waiting for a pooled connection", () -> {
+            HikariPoolMXBean current = stats.get();
+            return current != null ? current.getThreadsAwaitingConnection() : Double.NaN;
+        });
+    }
+
+    private static void poolGauge(Metrics metrics, String labels, String state, Supplier<HikariPoolMXBean> stats,
+                                  ToIntFunction<HikariPoolMXBean> value) {
+        metrics.gauge("mrp_db_pool_connections", labels + ",state=\"" + state + "\"", "Pooled database connections", () -> {
+            // the pools start on first use, until then there is nothing to report
+            HikariPoolMXBean current = stats.get();
+            return current != null ? value.applyAsInt(current) : Double.NaN;
+        });
+    }
+
+    /**
+     * Binds the HttpServer, registers the given handlers and starts accepting requests.
+     *
+     * @param contexts the handlers by context path
+     * @throws IOException if the server fails to start
+     */
+    public void start(Map<String, HttpHandler> contexts) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(port), backlog);
+        executor = createExecutor();
+        httpServer.setExecutor(executor);
+        contexts.forEach(httpServer::createContext);
+        httpServer.start();
+    }
+
+    /**
+     * Stops the server and waits for running requests to finish.
+     *
+     * @param delaySeconds the maximum time to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        if (httpServer != null) {
+            httpServer.stop(delaySeconds);
+            httpServer = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
 
-        server.start();
+    /**
+     * Creates the executor that runs the request handlers.
+     *
+     * @return the request executor
+     */
+    private ExecutorService createExecutor() {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mrp-request-", 0).factory());
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        // When all threads are busy and the queue is full the dispatcher thread handles the
+        // request itself, which stops it from accepting new connections until there is room again.
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "mrp-request-" + threadNumber.getAndIncrement()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
-}
\ No newline at end of file
+}
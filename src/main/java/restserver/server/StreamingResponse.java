@@ -0,0 +1,207 @@
+package restserver.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP response whose body is written directly to the response stream when it is sent.
+ * The body is never held in memory as a whole: it is sent with chunked transfer encoding
+ * through a small buffer, so the memory needed does not grow with the size of the result.
+ *
+ * The status line is held back until the first buffer is full or the body is complete, so an
+ * error before that, e.g. a query that runs out of time before its first rows arrive, is thrown
+ * while the status can still be replaced by an error response. Errors after the status was sent
+ * abort the response instead: the error is thrown without ending the body, so the last chunk
+ * is never sent and the HttpServer drops the connection. The client sees an incomplete transfer,
+ * never a complete body with missing rows.
+ *
+ * A client that stops reading cannot hold the database connection of a streamed query: every
+ * write to the client is limited by mrp.http.writeTimeoutMs ({@link WriteTimeoutStream}).
+ *
+ * If the client accepts a compressed body, bodies smaller than the minimum compression size
+ * are sent uncompressed with a fixed length, larger ones are compressed while they are written.
+ */
+public class StreamingResponse extends Response {
+
+    // bytes collected before a chunk is written to the client
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Writes the response body to a stream.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes a JSON response body with a Jackson generator.
+     */
+    @FunctionalInterface
+    public interface JsonWriter {
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    private final BodyWriter bodyWriter;
+
+    /**
+     * Creates a streaming response.
+     *
+     * @param httpStatus the status code
+     * @param contentType the content type of the body
+     * @param bodyWriter writes the body when the response is sent
+     */
+    public StreamingResponse(HttpStatus httpStatus, ContentType contentType, BodyWriter bodyWriter) {
+        super(httpStatus, contentType, null);
+        this.bodyWriter = bodyWriter;
+    }
+
+    /**
+     * Creates a JSON response that serializes a value directly to the response stream.
+     *
+     * @param httpStatus the status code
+     * @param objectMapper the mapper used to serialize the value
+     * @param value the value, e.g. a list of media entries
+     * @return the streaming response
+     */
+    public static StreamingResponse json(HttpStatus httpStatus, ObjectMapper objectMapper, Object value) {
+        return jsonStream(httpStatus, objectMapper, generator -> objectMapper.writeValue(generator, value));
+    }
+
+    /**
+     * Creates a JSON response that is written token by token with a JsonGenerator,
+     * e.g. to write rows while they are read from the database.
+     *
+     * @param httpStatus the status code
+     * @param objectMapper the mapper that creates the generator
+     * @param jsonWriter writes the JSON body
+     * @return the streaming response
+     */
+    public static StreamingResponse jsonStream(HttpStatus httpStatus, ObjectMapper objectMapper, JsonWriter jsonWriter) {
+        return new StreamingResponse(httpStatus, ContentType.JSON, out -> {
+            // closing the generator after an error must not complete the JSON, so it is only closed on success
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            jsonWriter.writeTo(generator);
+            generator.close();
+        });
+    }
+
+    /**
+     * Writes the body and sends the status with an unknown length (chunked transfer encoding)
+     * once the first buffer is full. If the body writer fails, the body stream is left open,
+     * so the response is not completed.
+     *
+     * @param httpExchange the exchange to write to
+     * @throws IOException if writing fails
+     */
+    @Override
+    protected void writeBody(HttpExchange httpExchange) throws IOException {
+        String encoding = ResponseCompression.encodingFor(httpExchange, getContentType());
+        OutputStream out = new DeferredBodyStream(httpExchange, getStatus(), encoding);
+        bodyWriter.writeTo(out);
+        out.close();
+    }
+
+    /**
+     * Renders the whole body into a string. Only meant for tests and logging,
+     * sending the response does not use it.
+     *
+     * @return the body
+     */
+    @Override
+    public String getContent() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            bodyWriter.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Holds back the body until one buffer is full, then sends the headers and writes the rest,
+     * compressed if an encoding was negotiated. A compressed body that stays smaller than the
+     * minimum compression size is sent uncompressed with its length when the stream is closed.
+     */
+    private static final class DeferredBodyStream extends OutputStream {
+        private final HttpExchange httpExchange;
+        private final int status;
+        private final String encoding;
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private OutputStream out;
+
+        private DeferredBodyStream(HttpExchange httpExchange, int status, String encoding) {
+            this.httpExchange = httpExchange;
+            this.status = status;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() >= BUFFER_SIZE) {
+                start();
+            }
+        }
+
+        /**
+         * Sends the headers for a chunked body and writes the held back bytes.
+         */
+        private void start() throws IOException {
+            if (encoding != null) {
+                httpExchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            httpExchange.sendResponseHeaders(status, 0);
+            OutputStream body = new WriteTimeoutStream(httpExchange.getResponseBody());
+            if (encoding != null) {
+                body = ResponseCompression.compressor(body, encoding, ResponseCompression.LEVEL, BUFFER_SIZE);
+            }
+            out = new BufferedOutputStream(body, BUFFER_SIZE);
+            pending.writeTo(out);
+            pending.reset();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out == null && (encoding == null || pending.size() >= ResponseCompression.MIN_SIZE)) {
+                start();
+            }
+            if (out != null) {
+                out.close();
+                return;
+            }
+            int length = pending.size();
+            httpExchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+            try (OutputStream body = new WriteTimeoutStream(httpExchange.getResponseBody())) {
+                pending.writeTo(body);
+            }
+        }
+    }
+}
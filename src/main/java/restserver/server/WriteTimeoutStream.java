@@ -0,0 +1,101 @@
+package restserver.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how long a single write to the client may block.
+ *
+ * A streamed body holds a database connection while it is written, and a client that stops
+ * reading would block the write, and with it the connection, forever. When a write, flush or
+ * close takes longer than mrp.http.writeTimeoutMs (default 10000), the writing thread is
+ * interrupted, which closes the socket channel of the exchange, and the write fails with an
+ * IOException.
+ */
+final class WriteTimeoutStream extends FilterOutputStream {
+
+    // the longest a write may block, replaced in tests
+    static long timeoutMillis = Long.getLong("mrp.http.writeTimeoutMs", 10_000L);
+
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "mrp-write-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * A write to the underlying stream.
+     */
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private final Thread writer = Thread.currentThread();
+    private boolean writing;
+    private boolean timedOut;
+
+    /**
+     * Wraps a response body stream. Writes must happen on the thread that creates the wrapper.
+     *
+     * @param out the response body of the exchange
+     */
+    WriteTimeoutStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        guard(() -> out.write(b));
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        guard(() -> out.write(b, off, len));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        guard(out::flush);
+    }
+
+    @Override
+    public void close() throws IOException {
+        guard(out::close);
+    }
+
+    private void guard(Write write) throws IOException {
+        synchronized (this) {
+            if (timedOut) throw new IOException("Writing the response timed out");
+            writing = true;
+        }
+        ScheduledFuture<?> timer = WATCHDOG.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            write.run();
+        } finally {
+            timer.cancel(false);
+            synchronized (this) {
+                writing = false;
+                // the interrupt must not reach the database code that cleans up after the failed write
+                if (timedOut) Thread.interrupted();
+            }
+        }
+        synchronized (this) {
+            if (timedOut) throw new IOException("Writing the response timed out");
+        }
+    }
+
+    private synchronized void expire() {
+        if (!writing) return;
+        timedOut = true;
+        writer.interrupt();
+    }
+}
@@ -12,4 +12,5 @@ import java.util.List;
 public interface ILeaderboardService {
 
     List<Profile> getLeaderboard();
+    List<Profile> getLeaderboard(int limit, int offset);
 }
\ No newline at end of file
@@ -1,8 +1,15 @@
 package service;
 
+import dto.ImportResultDTO;
+import dto.PageDTO;
 import model.MediaEntry;
 import model.User;
+import persistence.ExportFormat;
+import persistence.RowStream;
+import persistence.WriteResult;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -13,13 +20,17 @@ import java.util.List;
 public interface IMediaEntryService {
 
     boolean addMediaEntry(MediaEntry mediaEntry, User user);
-    boolean deleteMediaEntry(int id, User user);
-    boolean editMediaEntry(int mediaEntryId, MediaEntry updatedEntry, User user);
-    boolean favoriteMediaEntry(int mediaEntryId, User user);
-    boolean unFavoriteMediaEntry(int mediaEntryId, User user);
+    ImportResultDTO importMediaEntries(RowStream<MediaEntry> mediaEntries, User user) throws IOException;
+    WriteResult deleteMediaEntry(int id, User user);
+    WriteResult editMediaEntry(int mediaEntryId, MediaEntry updatedEntry, User user);
+    WriteResult favoriteMediaEntry(int mediaEntryId, User user);
+    WriteResult unFavoriteMediaEntry(int mediaEntryId, User user);
     List<MediaEntry> getAllMediaEntries();
     List<MediaEntry> searchAndFilterMediaEntries(String title, String genre, String sortBy);
     List<MediaEntry> fullSearchAndFilterMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy);
+    RowStream<MediaEntry> streamSearchAndFilterMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy);
+    long exportMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, ExportFormat format, OutputStream out) throws IOException;
+    PageDTO<MediaEntry> searchMediaEntriesPage(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy, String after, int limit);
     MediaEntry getMediaEntryById(int mediaEntryID, User user);
     List<MediaEntry> getRecommendationByGenre(int userid, User user);
     List<MediaEntry> getRecommendationByContent(int userid, User user);
@@ -4,6 +4,8 @@ import model.MediaEntry;
 import model.Rating;
 import model.User;
 import dto.RatingHistoryDTO;
+import persistence.RowStream;
+import persistence.WriteResult;
 import java.util.List;
 
 /**
@@ -11,10 +13,11 @@ import java.util.List;
  * Provides methods to add, edit, delete, like, and unlike ratings.
  */
 public interface IRatingService {
-    boolean likeRating(int ratingid, User user);
-    boolean rateMediaEntry(int mediaentryid, int stars, String comment, User user);
-    boolean updateRating(int ratingid, int stars, String comment, User user);
+    WriteResult likeRating(int ratingid, User user);
+    WriteResult rateMediaEntry(int mediaentryid, int stars, String comment, User user);
+    WriteResult updateRating(int ratingid, int stars, String comment, User user);
     List<RatingHistoryDTO> getRatingHistory(int userId, User user);
-    boolean confirmRatingComment(int ratingid, User user);
-    boolean deleteRating(int ratingid, User user);
+    RowStream<RatingHistoryDTO> streamRatingHistory(int userId, User user);
+    WriteResult confirmRatingComment(int ratingid, User user);
+    WriteResult deleteRating(int ratingid, User user);
 }
\ No newline at end of file
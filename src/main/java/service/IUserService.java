@@ -3,6 +3,7 @@ package service;
 import model.MediaEntry;
 import model.Profile;
 import model.User;
+import persistence.RowStream;
 
 import java.util.List;
 
@@ -25,5 +26,6 @@ public interface IUserService {
     User getUserByToken(String token);
     Profile getProfile(int userId, User user);
     List<MediaEntry> getFavorites(int userId, User user);
+    RowStream<MediaEntry> streamFavorites(int userId, User user);
     boolean updateProfile(int userId, String email, String favoritegenre, User user);
 }
@@ -1,15 +1,9 @@
 package service;
 
-import model.MediaEntry;
-import model.User;
 import model.Profile;
-import persistence.IMediaEntryRepository;
-import persistence.IRatingRepository;
 import persistence.IUserRepository;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Service class for managing the leaderboard.
@@ -17,6 +11,11 @@ import java.util.Map;
  */
 public class LeaderboardService implements ILeaderboardService {
 
+    /** Number of profiles returned when no limit is given. */
+    public static final int DEFAULT_LIMIT = 50;
+    /** Largest page size a client can request. */
+    public static final int MAX_LIMIT = 500;
+
     private static LeaderboardService instance;
     private IUserRepository userRepository;
 
@@ -43,13 +42,30 @@ public class LeaderboardService implements ILeaderboardService {
     }
 
     /**
-     * Returns the leaderboard of users.
+     * Returns the first page of the leaderboard of users.
      *
      * @return list of Profile objects sorted by ranking
      */
     @Override
     public List<Profile> getLeaderboard() {
-        return userRepository.getLeaderboard();
+        return getLeaderboard(DEFAULT_LIMIT, 0);
+    }
+
+    /**
+     * Returns one page of the leaderboard of users (top-N for offset 0).
+     * Invalid values are replaced by the default limit and offset 0,
+     * the limit is capped at MAX_LIMIT.
+     *
+     * @param limit maximum number of profiles to return
+     * @param offset number of profiles to skip
+     * @return list of Profile objects sorted by ranking
+     */
+    @Override
+    public List<Profile> getLeaderboard(int limit, int offset) {
+        if (limit <= 0) limit = DEFAULT_LIMIT;
+        if (limit > MAX_LIMIT) limit = MAX_LIMIT;
+        if (offset < 0) offset = 0;
+        return userRepository.getLeaderboard(limit, offset);
     }
 
     /**
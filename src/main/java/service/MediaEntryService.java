@@ -1,9 +1,18 @@
 package service;
 
+import dto.ImportErrorDTO;
+import dto.ImportResultDTO;
+import dto.PageDTO;
 import model.MediaEntry;
 import model.User;
+import persistence.ExportFormat;
 import persistence.IMediaEntryRepository;
+import persistence.MediaEntryCursor;
+import persistence.RowStream;
+import persistence.WriteResult;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,6 +24,13 @@ import java.util.Map;
  */
 public class MediaEntryService implements IMediaEntryService {
 
+    /** Number of media entries on a page when no limit is given. */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    /** Largest page size a client can request. */
+    public static final int MAX_PAGE_SIZE = 100;
+    /** Number of rejected rows that are listed in the result of an import. */
+    public static final int MAX_IMPORT_ERRORS = 100;
+
     private static MediaEntryService instance;
     private final IMediaEntryRepository mediaEntryRepository;
 
@@ -56,20 +72,80 @@ public class MediaEntryService implements IMediaEntryService {
     }
 
     /**
-     * Edits an existing media entry by ID.
+     * Imports many media entries at once, created by the given user.
+     * Every row is validated while it is read; invalid rows are reported with their
+     * row number and skipped, the valid rows are imported together.
+     *
+     * @param mediaEntries the media entries in the order they were sent, null stands for a row that could not be read
+     * @param user the user creating the media entries
+     * @return the number of imported entries and the rejected rows, or null if the user is missing or the import failed
+     * @throws IOException if reading the media entries fails
+     */
+    @Override
+    public ImportResultDTO importMediaEntries(RowStream<MediaEntry> mediaEntries, User user) throws IOException {
+        if (user == null) return null;
+        ImportResultDTO result = new ImportResultDTO();
+        int[] row = {0};
+        int imported = mediaEntryRepository.importMediaEntries(sink -> mediaEntries.forEach(mediaEntry -> {
+            row[0]++;
+            String error = validateImport(mediaEntry);
+            if (error != null) {
+                result.setFailed(result.getFailed() + 1);
+                if (result.getErrors().size() < MAX_IMPORT_ERRORS) {
+                    result.getErrors().add(new ImportErrorDTO(row[0], error));
+                }
+                return;
+            }
+            mediaEntry.setCreatorId(user.getUserid());
+            sink.accept(mediaEntry);
+        }));
+        if (imported < 0) return null;
+        result.setImported(imported);
+        return result;
+    }
+
+    /**
+     * Checks a media entry of an import against the limits of the database columns.
+     *
+     * @param mediaEntry the media entry, null if the row could not be read
+     * @return the reason the entry is rejected, or null if it is valid
+     */
+    static String validateImport(MediaEntry mediaEntry) {
+        if (mediaEntry == null) return "Row is not a valid media entry";
+        if (mediaEntry.getTitle() == null || mediaEntry.getTitle().isBlank()) return "Title is required";
+        if (mediaEntry.getTitle().length() > 255) return "Title is longer than 255 characters";
+        if (mediaEntry.getMediaType() != null && mediaEntry.getMediaType().length() > 50) return "Media type is longer than 50 characters";
+        if (mediaEntry.getReleaseYear() < 0 || mediaEntry.getAgeRestriction() < 0) return "Release year and age restriction must not be negative";
+        if (containsNul(mediaEntry.getTitle()) || containsNul(mediaEntry.getDescription()) || containsNul(mediaEntry.getMediaType())) {
+            return "Text must not contain NUL characters";
+        }
+        if (mediaEntry.getGenres() != null) {
+            for (String genre : mediaEntry.getGenres()) {
+                if (genre == null || genre.isBlank() || genre.length() > 100 || containsNul(genre)) {
+                    return "Genre names must not be empty or longer than 100 characters";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsNul(String value) {
+        return value != null && value.indexOf('\0') >= 0;
+    }
+
+    /**
+     * Edits an existing media entry by ID. Only the creator may edit the entry,
+     * which the repository checks in the update itself.
      *
      * @param mediaEntryId the ID of the media entry to edit
      * @param updatedEntry the updated media entry data
      * @param user the user performing the edit
-     * @return true if edit is successful, false otherwise
+     * @return OK if the edit is successful, NOT_FOUND, FORBIDDEN if the user is not the creator
      */
     @Override
-    public boolean editMediaEntry(int mediaEntryId, MediaEntry updatedEntry, User user) {
-        if (user == null || updatedEntry == null) return false;
-        MediaEntry existing = mediaEntryRepository.getMediaEntryByID(mediaEntryId);
-        if (existing == null) return false;
-        // only Creator can edit
-        if (existing.getCreatorId() != user.getUserid()) return false;
+    public WriteResult editMediaEntry(int mediaEntryId, MediaEntry updatedEntry, User user) {
+        if (user == null) return WriteResult.FORBIDDEN;
+        if (updatedEntry == null) return WriteResult.INVALID;
         return mediaEntryRepository.updateMediaEntry(
                 mediaEntryId,
                 updatedEntry.getTitle(),
@@ -83,20 +159,17 @@ public class MediaEntryService implements IMediaEntryService {
     }
 
     /**
-     * Deletes a media entry by ID.
+     * Deletes a media entry by ID. Only the creator may delete the entry,
+     * which the repository checks in the deletion itself.
      *
      * @param mediaEntryId the ID of the media entry to delete
      * @param user the user performing the deletion
-     * @return true if deletion is successful, false otherwise
+     * @return OK if the deletion is successful, NOT_FOUND, FORBIDDEN if the user is not the creator
      */
     @Override
-    public boolean deleteMediaEntry(int mediaEntryId, User user) {
-        if (user == null) return false;
-        MediaEntry mediaEntry = mediaEntryRepository.getMediaEntryByID(mediaEntryId);
-        if (mediaEntry == null) return false;
-        // only Creator can delete
-        if (mediaEntry.getCreatorId() != user.getUserid()) return false;
-        return mediaEntryRepository.deleteMediaEntry(mediaEntryId);
+    public WriteResult deleteMediaEntry(int mediaEntryId, User user) {
+        if (user == null) return WriteResult.FORBIDDEN;
+        return mediaEntryRepository.deleteMediaEntry(mediaEntryId, user.getUserid());
     }
 
     /**
@@ -104,13 +177,11 @@ public class MediaEntryService implements IMediaEntryService {
      *
      * @param mediaEntryId the ID of the media entry
      * @param user the user marking as favorite
-     * @return true if successful, false otherwise
+     * @return OK if successful, NOT_FOUND if the media entry does not exist
      */
     @Override
-    public boolean favoriteMediaEntry(int mediaEntryId, User user) {
-        if (user == null) return false;
-        MediaEntry mediaEntry = mediaEntryRepository.getMediaEntryByID(mediaEntryId);
-        if (mediaEntry == null) return false;
+    public WriteResult favoriteMediaEntry(int mediaEntryId, User user) {
+        if (user == null) return WriteResult.FORBIDDEN;
         return mediaEntryRepository.setFavoriteStatus(user.getUserid(), mediaEntryId);
     }
 
@@ -119,13 +190,11 @@ public class MediaEntryService implements IMediaEntryService {
      *
      * @param mediaEntryId the ID of the media entry
      * @param user the user performing the action
-     * @return true if successful, false otherwise
+     * @return OK if successful, NOT_FOUND if the entry is not a favorite of the user
      */
     @Override
-    public boolean unFavoriteMediaEntry(int mediaEntryId, User user) {
-        if (user == null) return false;
-        MediaEntry mediaEntry = mediaEntryRepository.getMediaEntryByID(mediaEntryId);
-        if (mediaEntry == null) return false;
+    public WriteResult unFavoriteMediaEntry(int mediaEntryId, User user) {
+        if (user == null) return WriteResult.FORBIDDEN;
         return mediaEntryRepository.setUnFavoriteStatus(user.getUserid(), mediaEntryId);
     }
 
@@ -166,22 +235,82 @@ public class MediaEntryService implements IMediaEntryService {
      */
     @Override
     public List<MediaEntry> fullSearchAndFilterMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy) {
-        Map<String, Object> filters = new HashMap<>();
-        if (title != null && !title.isBlank()) filters.put("title", title);
-        if (genre != null && !genre.isBlank()) filters.put("genre", genre);
-        if (mediaType != null && !mediaType.isBlank()) filters.put("mediaType", mediaType);
-        if (releaseYear >= 0) filters.put("releaseYear", releaseYear);
-        if (ageRestriction >= 0) filters.put("ageRestriction", ageRestriction);
+        Map<String, Object> filters = buildFilters(title, genre, mediaType, releaseYear, ageRestriction, minRating);
+        return mediaEntryRepository.fullSearchAndFilterMediaEntries(filters, sortBy);
+    }
+
+    /**
+     * Returns the media entries matching the filters as a stream of rows,
+     * so they can be written to the response while they are read from the database.
+     *
+     * @param title filter by title
+     * @param genre filter by genre
+     * @param mediaType filter by media type
+     * @param releaseYear filter by release year
+     * @param ageRestriction filter by age restriction
+     * @param minRating minimum rating to include
+     * @param sortBy sort order (title, year, score), null sorts by ID
+     * @return the media entries, or null if the sort order is unknown
+     */
+    @Override
+    public RowStream<MediaEntry> streamSearchAndFilterMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy) {
+        if (!IMediaEntryRepository.isValidSortOption(sortBy)) return null;
+        Map<String, Object> filters = buildFilters(title, genre, mediaType, releaseYear, ageRestriction, minRating);
+        return sink -> mediaEntryRepository.streamSearchAndFilterMediaEntries(filters, sortBy, sink);
+    }
+
+    /**
+     * Exports the media entries matching the filters with their genres and rating aggregates.
+     *
+     * @param title filter by title
+     * @param genre filter by genre
+     * @param mediaType filter by media type
+     * @param releaseYear filter by release year
+     * @param ageRestriction filter by age restriction
+     * @param minRating minimum rating to include
+     * @param format CSV or NDJSON
+     * @param out receives the exported rows
+     * @return the number of exported media entries
+     * @throws IOException if writing to the stream fails
+     */
+    @Override
+    public long exportMediaEntries(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, ExportFormat format, OutputStream out) throws IOException {
+        Map<String, Object> filters = buildFilters(title, genre, mediaType, releaseYear, ageRestriction, minRating);
+        return mediaEntryRepository.exportMediaEntries(filters, format, out);
+    }
 
-        List<MediaEntry> entries = mediaEntryRepository.fullSearchAndFilterMediaEntries(filters, sortBy);
+    /**
+     * Returns one page of media entries matching the filters.
+     * The page starts after the given cursor, invalid limits are replaced by the default
+     * page size and the limit is capped at MAX_PAGE_SIZE.
+     *
+     * @param title filter by title
+     * @param genre filter by genre
+     * @param mediaType filter by media type
+     * @param releaseYear filter by release year
+     * @param ageRestriction filter by age restriction
+     * @param minRating minimum rating to include
+     * @param sortBy sort order (title, year, score), null sorts by ID
+     * @param after the next cursor of the previous page, null for the first page
+     * @param limit maximum number of media entries on the page
+     * @return the page of media entries, or null if the sort order is unknown or an error occurred
+     * @throws IllegalArgumentException if the cursor is invalid or belongs to another sort order
+     */
+    @Override
+    public PageDTO<MediaEntry> searchMediaEntriesPage(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating, String sortBy, String after, int limit) {
+        if (limit <= 0) limit = DEFAULT_PAGE_SIZE;
+        if (limit > MAX_PAGE_SIZE) limit = MAX_PAGE_SIZE;
 
-        if (minRating >= 0) {
-            entries = entries.stream()
-                    .filter(m -> m.getAvgscore() >= minRating)
-                    .toList();
+        MediaEntryCursor cursor = null;
+        if (after != null && !after.isBlank()) {
+            cursor = MediaEntryCursor.decode(after);
+            if (!cursor.sortBy().equals(sortBy != null ? sortBy : "id")) {
+                throw new IllegalArgumentException("Cursor belongs to another sort order");
+            }
         }
 
-        return entries;
+        Map<String, Object> filters = buildFilters(title, genre, mediaType, releaseYear, ageRestriction, minRating);
+        return mediaEntryRepository.searchMediaEntriesPage(filters, sortBy, cursor, limit);
     }
 
     /**
@@ -224,6 +353,29 @@ public class MediaEntryService implements IMediaEntryService {
         return mediaEntryRepository.getRecommendationByContent(userid);
     }
 
+    /**
+     * Collects the given search filters for the repository, leaving out empty
+     * strings and negative numbers.
+     *
+     * @param title filter by title
+     * @param genre filter by genre
+     * @param mediaType filter by media type
+     * @param releaseYear filter by release year
+     * @param ageRestriction filter by age restriction
+     * @param minRating minimum rating to include
+     * @return map of filters (title, genre, mediaType, releaseYear, ageRestriction, minRating)
+     */
+    private Map<String, Object> buildFilters(String title, String genre, String mediaType, int releaseYear, int ageRestriction, int minRating) {
+        Map<String, Object> filters = new HashMap<>();
+        if (title != null && !title.isBlank()) filters.put("title", title);
+        if (genre != null && !genre.isBlank()) filters.put("genre", genre);
+        if (mediaType != null && !mediaType.isBlank()) filters.put("mediaType", mediaType);
+        if (releaseYear >= 0) filters.put("releaseYear", releaseYear);
+        if (ageRestriction >= 0) filters.put("ageRestriction", ageRestriction);
+        if (minRating >= 0) filters.put("minRating", minRating);
+        return filters;
+    }
+
     /**
      * Resets the singleton instance (mainly for testing purposes).
      */
@@ -3,6 +3,8 @@ package service;
 import dto.RatingHistoryDTO;
 import model.User;
 import persistence.IRatingRepository;
+import persistence.RowStream;
+import persistence.WriteResult;
 
 import java.util.List;
 
@@ -40,14 +42,12 @@ public class RatingService implements IRatingService {
      *
      * @param ratingId the ID of the rating to like
      * @param user the user who likes the rating
-     * @return true if the like is added, false if user has already liked or user is null
+     * @return OK if the like is added, DUPLICATE if the user has already liked it,
+     *         NOT_FOUND if the rating does not exist, FORBIDDEN if user is null
      */
     @Override
-    public boolean likeRating(int ratingId, User user) {
-        if (user == null) return false;
-        if (ratingRepository.hasUserLikedRating(ratingId, user.getUserid())) {
-            return false;
-        }
+    public WriteResult likeRating(int ratingId, User user) {
+        if (user == null) return WriteResult.FORBIDDEN;
         return ratingRepository.likeRating(ratingId, user);
     }
 
@@ -58,11 +58,13 @@ public class RatingService implements IRatingService {
      * @param stars number of stars (1-5)
      * @param comment optional comment
      * @param user the creator of the rating
-     * @return true if rating is added successfully, false otherwise
+     * @return OK if rating is added, DUPLICATE if the user already rated the entry,
+     *         NOT_FOUND if the entry does not exist, INVALID for wrong stars, FORBIDDEN if user is null
      */
     @Override
-    public boolean rateMediaEntry(int mediaentryid, int stars, String comment, User user) {
-        if(user == null || stars <= 0 || stars > 5) return false;
+    public WriteResult rateMediaEntry(int mediaentryid, int stars, String comment, User user) {
+        if(user == null) return WriteResult.FORBIDDEN;
+        if(stars <= 0 || stars > 5) return WriteResult.INVALID;
         return this.ratingRepository.rateMediaEntry(mediaentryid, stars, comment, user);
     }
 
@@ -73,11 +75,13 @@ public class RatingService implements IRatingService {
      * @param stars updated number of stars (1-5)
      * @param comment updated comment
      * @param user the user performing the update
-     * @return true if the update is successful, false otherwise
+     * @return OK if the update is successful, NOT_FOUND if the rating does not exist,
+     *         FORBIDDEN if it belongs to another user, INVALID for wrong stars
      */
     @Override
-    public boolean updateRating(int ratingid, int stars, String comment, User user) {
-        if(user == null || stars <= 0 || stars > 5) return false;
+    public WriteResult updateRating(int ratingid, int stars, String comment, User user) {
+        if(user == null) return WriteResult.FORBIDDEN;
+        if(stars <= 0 || stars > 5) return WriteResult.INVALID;
         return this.ratingRepository.updateRating(ratingid, stars, comment, user);
     }
 
@@ -94,19 +98,31 @@ public class RatingService implements IRatingService {
         return ratingRepository.getRatingHistory(userId, user);
     }
 
+    /**
+     * Returns the rating history of a user as a stream of rows.
+     *
+     * @param userId the ID of the user
+     * @param user the user performing the request
+     * @return the rating history rows, or null if user is invalid
+     */
+    @Override
+    public RowStream<RatingHistoryDTO> streamRatingHistory(int userId, User user) {
+        if(user==null || userId != user.getUserid()) return null;
+        return sink -> ratingRepository.streamRatingHistory(userId, sink);
+    }
+
     /**
      * Confirms a rating comment
      *
      * @param ratingid the ID of the rating
      * @param user the user performing the confirmation
-     * @return true if confirmation is successful, false otherwise
+     * @return OK if confirmation is successful, NOT_FOUND if the rating does not exist,
+     *         FORBIDDEN if it belongs to another user
      */
     @Override
-    public boolean confirmRatingComment(int ratingid, User user) {
-        if(user==null) return false;
-        if(ratingRepository.getRatingById(ratingid)==null) return false;
-        if(ratingRepository.getRatingById(ratingid).getCreatorId() != user.getUserid()) return false;
-        return ratingRepository.confirmRatingComment(ratingid);
+    public WriteResult confirmRatingComment(int ratingid, User user) {
+        if(user==null) return WriteResult.FORBIDDEN;
+        return ratingRepository.confirmRatingComment(ratingid, user);
     }
 
     /**
@@ -114,14 +130,13 @@ public class RatingService implements IRatingService {
      *
      * @param ratingid the ID of the rating to delete
      * @param user the user performing the deletion
-     * @return true if deletion is successful, false otherwise
+     * @return OK if deletion is successful, NOT_FOUND if the rating does not exist,
+     *         FORBIDDEN if it belongs to another user
      */
     @Override
-    public boolean deleteRating(int ratingid, User user) {
-        if(user==null) return false;
-        if(ratingRepository.getRatingById(ratingid)==null) return false;
-        if(ratingRepository.getRatingById(ratingid).getCreatorId() != user.getUserid()) return false;
-        return ratingRepository.deleteRating(ratingid);
+    public WriteResult deleteRating(int ratingid, User user) {
+        if(user==null) return WriteResult.FORBIDDEN;
+        return ratingRepository.deleteRating(ratingid, user);
     }
 
     /**
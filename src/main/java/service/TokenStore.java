@@ -0,0 +1,258 @@
+package service;
+
+import model.User;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe store for authentication tokens.
+ * Lookups are lock-free. A session expires after a fixed time to live or when it
+ * was not used for longer than the idle timeout. Expired sessions are removed on
+ * lookup and by a background sweeper. The number of sessions is a hard bound: new
+ * sessions are added under a lock, and when the store is full a session that was not
+ * used recently is evicted. The eviction walks the sessions in the order they were
+ * added and gives sessions that were used since the last walk a second chance, so it
+ * approximates least recently used in constant time on average instead of scanning the store.
+ */
+public class TokenStore implements AutoCloseable {
+
+    /**
+     * A logged-in user together with its creation and last access time.
+     */
+    private static final class Session {
+        private final String token;
+        private final User user;
+        private final long createdAt;
+        private volatile long lastAccess;
+        // set on lookup, cleared when the eviction passes the session
+        private volatile boolean referenced;
+
+        private Session(String token, User user, long now) {
+            this.token = token;
+            this.user = user;
+            this.createdAt = now;
+            this.lastAccess = now;
+        }
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // every stored session in the order it was added, may contain removed sessions; guarded by itself
+    private final Deque<Session> evictionOrder = new ArrayDeque<>();
+    private final long ttlNanos;
+    private final long idleTimeoutNanos;
+    private final int maxSessions;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final LongAccumulator maxLookupNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Creates a token store with a background sweeper.
+     *
+     * @param ttl maximum lifetime of a session
+     * @param idleTimeout maximum time a session may stay unused
+     * @param maxSessions maximum number of sessions kept in memory
+     * @param sweepInterval how often expired sessions are removed
+     */
+    public TokenStore(Duration ttl, Duration idleTimeout, int maxSessions, Duration sweepInterval) {
+        this(ttl, idleTimeout, maxSessions, System::nanoTime);
+        this.sweeper.scheduleWithFixedDelay(this::sweep,
+                sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a token store with the given clock (used for testing).
+     *
+     * @param ttl maximum lifetime of a session
+     * @param idleTimeout maximum time a session may stay unused
+     * @param maxSessions maximum number of sessions kept in memory
+     * @param clock the time source in nanoseconds
+     */
+    TokenStore(Duration ttl, Duration idleTimeout, int maxSessions, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.maxSessions = maxSessions;
+        this.clock = clock;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mrp-token-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stores a token for a user. An existing session with the same token is replaced.
+     *
+     * @param token the token string
+     * @param user the user the token belongs to
+     */
+    public void put(String token, User user) {
+        Session session = new Session(token, user, clock.getAsLong());
+        synchronized (evictionOrder) {
+            if (!sessions.containsKey(token) && sessions.size() >= maxSessions) {
+                evictOne(session.createdAt);
+            }
+            sessions.put(token, session);
+            evictionOrder.addLast(session);
+            // replaced and logged out sessions stay in the order until the next sweep or until they pile up
+            if (evictionOrder.size() > 2 * maxSessions) {
+                evictionOrder.removeIf(stored -> !isStored(stored));
+            }
+        }
+    }
+
+    /**
+     * Returns the user of a token and marks the session as used.
+     *
+     * @param token the token string
+     * @return the user, or null if the token is unknown or expired
+     */
+    public User get(String token) {
+        long start = System.nanoTime();
+        try {
+            Session session = token != null ? sessions.get(token) : null;
+            if (session == null) return null;
+
+            long now = clock.getAsLong();
+            if (isExpired(session, now)) {
+                if (sessions.remove(token, session)) evictions.increment();
+                return null;
+            }
+            session.lastAccess = now;
+            if (!session.referenced) session.referenced = true;
+            return session.user;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lookups.increment();
+            lookupNanos.add(elapsed);
+            maxLookupNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * Removes a token, e.g. on logout.
+     *
+     * @param token the token string
+     */
+    public void remove(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * Removes all expired sessions.
+     *
+     * @return the number of removed sessions
+     */
+    public int sweep() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            if (isExpired(entry.getValue(), now) && sessions.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        evictions.add(removed);
+        synchronized (evictionOrder) {
+            evictionOrder.removeIf(session -> !isStored(session));
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of sessions currently stored.
+     *
+     * @return the number of live sessions
+     */
+    public int getLiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns how many sessions were removed because they expired or the store was full.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns how many token lookups were made.
+     *
+     * @return the number of lookups
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Returns the average duration of a token lookup.
+     *
+     * @return the average lookup latency in nanoseconds
+     */
+    public double getAverageLookupNanos() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : (double) lookupNanos.sum() / count;
+    }
+
+    /**
+     * Returns the longest duration of a token lookup.
+     *
+     * @return the maximum lookup latency in nanoseconds
+     */
+    public long getMaxLookupNanos() {
+        return maxLookupNanos.get();
+    }
+
+    /**
+     * Stops the background sweeper.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.createdAt >= ttlNanos || now - session.lastAccess >= idleTimeoutNanos;
+    }
+
+    private boolean isStored(Session session) {
+        return sessions.get(session.token) == session;
+    }
+
+    /**
+     * Removes one session to make room, preferring expired sessions and sessions that were not
+     * used since the last walk. Every stored session is in the eviction order, and a walk clears
+     * the flags it passes, so a session is found within two rounds. Must hold the lock of evictionOrder.
+     *
+     * @param now the current time
+     */
+    private void evictOne(long now) {
+        Session session;
+        while ((session = evictionOrder.pollFirst()) != null) {
+            if (!isStored(session)) continue; // logged out, expired or replaced
+            if (session.referenced && !isExpired(session, now)) {
+                session.referenced = false;
+                evictionOrder.addLast(session);
+                continue;
+            }
+            if (sessions.remove(session.token, session)) {
+                evictions.increment();
+                return;
+            }
+        }
+    }
+}
@@ -4,11 +4,10 @@ import model.MediaEntry;
 import model.Profile;
 import model.User;
 import persistence.IUserRepository;
+import persistence.RowStream;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Service class for managing users and authentication.
@@ -17,18 +16,23 @@ import java.util.Map;
  */
 public class UserService implements IUserService {
     private static UserService instance;
-    private final List<User> loggedInUsers;
     private IUserRepository userRepository;
-    private Map<String, User> activeTokens = new HashMap<>();
+    private final TokenStore tokenStore;
 
     /**
      * Private constructor for singleton pattern.
+     * The token store can be configured with the system properties mrp.auth.tokenTtlMinutes,
+     * mrp.auth.idleTimeoutMinutes, mrp.auth.maxSessions and mrp.auth.sweepIntervalSeconds.
      *
      * @param userRepository the repository used to store users
      */
     private UserService(IUserRepository userRepository) {
         this.userRepository = userRepository;
-        this.loggedInUsers = new ArrayList<>();
+        this.tokenStore = new TokenStore(
+                Duration.ofMinutes(Long.getLong("mrp.auth.tokenTtlMinutes", 24 * 60L)),
+                Duration.ofMinutes(Long.getLong("mrp.auth.idleTimeoutMinutes", 60L)),
+                Integer.getInteger("mrp.auth.maxSessions", 100_000),
+                Duration.ofSeconds(Long.getLong("mrp.auth.sweepIntervalSeconds", 60L)));
     }
 
     /**
@@ -44,8 +48,8 @@ public class UserService implements IUserService {
 
     /**
      * Logs in a user with username and password.
-     * If successful, generates an authentication token and adds the user
-     * to the logged-in list.
+     * If successful, generates an authentication token and stores it
+     * in the token store.
      *
      * @param username the user's username
      * @param password the user's password
@@ -57,8 +61,7 @@ public class UserService implements IUserService {
             User found = userRepository.getUserByUsername(username);
             // check whether a token is valid, you need a mapping from Token --> User
             String token = generateToken(found);
-            activeTokens.put(token, found);
-            loggedInUsers.add(found);
+            tokenStore.put(token, found);
             return true;
         }
 
@@ -79,17 +82,13 @@ public class UserService implements IUserService {
             return false;
         }
 
-        List<User> allUsers = userRepository.getAllUsers();
-        for (User u : allUsers) {
-            if (u.getUsername().equals(username)) {
-                return false;
-            }
-        }
         User newUser = new User(username, password);
+        // a taken name is rejected by the unique constraint of the insert, a check before it
+        // could not see a concurrent registration of the same name
         boolean created = userRepository.createUser(newUser);
         if (created) {
             String token = generateToken(newUser);
-            activeTokens.put(token, newUser);
+            tokenStore.put(token, newUser);
         }
         return created;
     }
@@ -136,11 +135,20 @@ public class UserService implements IUserService {
      * Finds a user by their authentication token.
      *
      * @param token the token string
-     * @return the associated user, or null if token is invalid
+     * @return the associated user, or null if token is invalid or expired
      */
     @Override
     public User getUserByToken(String token) {
-        return activeTokens.get(token);
+        return tokenStore.get(token);
+    }
+
+    /**
+     * Returns the token store (e.g. to read its metrics).
+     *
+     * @return the token store of this service
+     */
+    public TokenStore getTokenStore() {
+        return tokenStore;
     }
 
     /**
@@ -169,6 +177,19 @@ public class UserService implements IUserService {
         return userRepository.getFavorites(userId);
     }
 
+    /**
+     * Returns the favorite media entries for a given user ID as a stream of rows.
+     *
+     * @param userId the user's ID
+     * @param user the user performing the request
+     * @return the favorite MediaEntry rows, or null if user is null
+     */
+    @Override
+    public RowStream<MediaEntry> streamFavorites(int userId, User user) {
+        if (user == null) return null;
+        return sink -> userRepository.streamFavorites(userId, sink);
+    }
+
     /**
      * Updates a user's profile information.
      *
@@ -188,6 +209,7 @@ public class UserService implements IUserService {
      * Resets the singleton instance (for testing purposes).
      */
     public static void resetInstance() {
+        if (instance != null) instance.tokenStore.close();
         instance = null;
     }
 }
@@ -0,0 +1,27 @@
+-- Rating aggregates maintained by RatingRepository on rating create/update/delete.
+
+ALTER TABLE mediaentry ADD COLUMN IF NOT EXISTS rating_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE mediaentry ADD COLUMN IF NOT EXISTS rating_sum INTEGER NOT NULL DEFAULT 0;
+
+UPDATE profile SET totalratings = 0 WHERE totalratings IS NULL;
+UPDATE profile SET avgscore = 0 WHERE avgscore IS NULL;
+ALTER TABLE profile ALTER COLUMN totalratings SET NOT NULL;
+ALTER TABLE profile ADD COLUMN IF NOT EXISTS ratingsum INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE profile ALTER COLUMN avgscore TYPE NUMERIC(4,2);
+ALTER TABLE profile ALTER COLUMN avgscore SET NOT NULL;
+
+-- Backfill (same statements as RatingRepository.rebuildRatingAggregates)
+UPDATE mediaentry m SET rating_count = a.cnt, rating_sum = a.total
+FROM (SELECT m2.mediaentryid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+      FROM mediaentry m2 LEFT JOIN rating r ON r.mediaentryid = m2.mediaentryid
+      GROUP BY m2.mediaentryid) a
+WHERE m.mediaentryid = a.mediaentryid
+  AND (m.rating_count <> a.cnt OR m.rating_sum <> a.total);
+
+UPDATE profile p SET totalratings = a.cnt, ratingsum = a.total,
+       avgscore = COALESCE(ROUND(a.total::numeric / NULLIF(a.cnt, 0), 2), 0)
+FROM (SELECT p2.profileid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+      FROM profile p2 LEFT JOIN rating r ON r.creator = p2.userid
+      GROUP BY p2.profileid) a
+WHERE p.profileid = a.profileid
+  AND (p.totalratings <> a.cnt OR p.ratingsum <> a.total);
@@ -0,0 +1,21 @@
+-- Secondary indexes for the joins and filters used by the repositories.
+
+-- rating aggregates per media entry, ON DELETE CASCADE from mediaentry
+CREATE INDEX IF NOT EXISTS idx_rating_mediaentryid ON rating (mediaentryid);
+-- rating history, recommendations and the "already rated" check (creator, mediaentryid)
+CREATE INDEX IF NOT EXISTS idx_rating_creator_mediaentryid ON rating (creator, mediaentryid);
+-- like counts per rating, ON DELETE CASCADE from rating
+CREATE INDEX IF NOT EXISTS idx_likes_ratingid ON likes (ratingid);
+-- genre filter and genre based recommendations
+CREATE INDEX IF NOT EXISTS idx_mediaentry_genre_genreid ON mediaentry_genre (genreid);
+-- ON DELETE CASCADE from mediaentry
+CREATE INDEX IF NOT EXISTS idx_favorite_mediaentryid ON favorite (mediaentryid);
+-- profile lookup by user and leaderboard ranking
+CREATE INDEX IF NOT EXISTS idx_profile_userid ON profile (userid);
+CREATE INDEX IF NOT EXISTS idx_profile_leaderboard ON profile (totalratings DESC, userid);
+-- content based recommendations join on media type and age restriction
+CREATE INDEX IF NOT EXISTS idx_mediaentry_type_age ON mediaentry (media_type, age_restriction);
+
+-- LOWER(title) LIKE '%...%' title search
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_mediaentry_title_trgm ON mediaentry USING gin (LOWER(title) gin_trgm_ops);
@@ -0,0 +1,7 @@
+-- Indexes matching the ORDER BY of the paginated media search (sort value, mediaentryid),
+-- so a page is read in index order directly after the cursor position.
+
+CREATE INDEX IF NOT EXISTS idx_mediaentry_title_id ON mediaentry (title, mediaentryid);
+CREATE INDEX IF NOT EXISTS idx_mediaentry_year_id ON mediaentry ((COALESCE(release_year, 0)), mediaentryid);
+CREATE INDEX IF NOT EXISTS idx_mediaentry_score_id
+    ON mediaentry ((COALESCE(rating_sum::numeric / NULLIF(rating_count, 0), 0)) DESC, mediaentryid);
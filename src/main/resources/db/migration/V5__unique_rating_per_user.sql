@@ -0,0 +1,71 @@
+-- One rating per user and media entry, enforced by the database so that
+-- RatingRepository.rateMediaEntry can insert with ON CONFLICT DO NOTHING instead of checking first.
+
+-- Duplicates created by concurrent requests are not dropped: the first rating of a user for a media entry
+-- is kept, later ones are moved to rating_duplicate_archive together with the rating they lost against,
+-- their likes are copied to likes_duplicate_archive and carried over to the kept rating.
+CREATE TABLE IF NOT EXISTS rating_duplicate_archive (
+    LIKE rating,
+    kept_ratingid INT,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS likes_duplicate_archive (
+    LIKE likes,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+DO $$
+DECLARE
+    archived_ratings INT;
+    archived_likes INT;
+    moved_likes INT;
+BEGIN
+    CREATE TEMP TABLE duplicate_rating ON COMMIT DROP AS
+    SELECT ratingid, kept_ratingid
+    FROM (SELECT ratingid, MIN(ratingid) OVER (PARTITION BY creator, mediaentryid) AS kept_ratingid
+          FROM rating
+          WHERE creator IS NOT NULL AND mediaentryid IS NOT NULL) ranked
+    WHERE ratingid <> kept_ratingid;
+
+    INSERT INTO rating_duplicate_archive
+    SELECT r.*, d.kept_ratingid, CURRENT_TIMESTAMP FROM rating r JOIN duplicate_rating d ON d.ratingid = r.ratingid;
+    GET DIAGNOSTICS archived_ratings = ROW_COUNT;
+
+    INSERT INTO likes_duplicate_archive
+    SELECT l.*, CURRENT_TIMESTAMP FROM likes l JOIN duplicate_rating d ON d.ratingid = l.ratingid;
+    GET DIAGNOSTICS archived_likes = ROW_COUNT;
+
+    -- a like of a duplicate counts for the kept rating, unless the user liked that one as well
+    INSERT INTO likes (userid, ratingid)
+    SELECT l.userid, d.kept_ratingid FROM likes l JOIN duplicate_rating d ON d.ratingid = l.ratingid
+    ON CONFLICT DO NOTHING;
+    GET DIAGNOSTICS moved_likes = ROW_COUNT;
+
+    DELETE FROM rating r USING duplicate_rating d WHERE r.ratingid = d.ratingid;
+
+    IF archived_ratings > 0 THEN
+        RAISE NOTICE 'Moved % duplicate ratings to rating_duplicate_archive and their % likes to likes_duplicate_archive, % likes were carried over to the kept ratings',
+            archived_ratings, archived_likes, moved_likes;
+    END IF;
+END $$;
+
+-- replaces the non-unique index of V3 on the same columns
+CREATE UNIQUE INDEX IF NOT EXISTS uq_rating_creator_mediaentryid ON rating (creator, mediaentryid);
+DROP INDEX IF EXISTS idx_rating_creator_mediaentryid;
+
+-- Repair the aggregates of archived duplicates (same statements as RatingRepository.rebuildRatingAggregates)
+UPDATE mediaentry m SET rating_count = a.cnt, rating_sum = a.total
+FROM (SELECT m2.mediaentryid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+      FROM mediaentry m2 LEFT JOIN rating r ON r.mediaentryid = m2.mediaentryid
+      GROUP BY m2.mediaentryid) a
+WHERE m.mediaentryid = a.mediaentryid
+  AND (m.rating_count <> a.cnt OR m.rating_sum <> a.total);
+
+UPDATE profile p SET totalratings = a.cnt, ratingsum = a.total,
+       avgscore = COALESCE(ROUND(a.total::numeric / NULLIF(a.cnt, 0), 2), 0)
+FROM (SELECT p2.profileid, COUNT(r.ratingid) AS cnt, COALESCE(SUM(r.stars), 0) AS total
+      FROM profile p2 LEFT JOIN rating r ON r.creator = p2.userid
+      GROUP BY p2.profileid) a
+WHERE p.profileid = a.profileid
+  AND (p.totalratings <> a.cnt OR p.ratingsum <> a.total);
@@ -0,0 +1,134 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InstrumentedConnectionTest {
+
+    private static final String PROFILE_SQL = "SELECT * FROM profile WHERE userid = ?";
+
+    private Consumer<String> originalSlowLog;
+    private Consumer<String> originalRepeatLog;
+    private long originalThreshold;
+    private final List<String> logged = new ArrayList<>();
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        originalSlowLog = InstrumentedConnection.slowQueryLog;
+        originalRepeatLog = RequestStatements.log;
+        originalThreshold = InstrumentedConnection.slowQueryNanos;
+        InstrumentedConnection.slowQueryLog = logged::add;
+        RequestStatements.log = logged::add;
+
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        InstrumentedConnection.slowQueryLog = originalSlowLog;
+        RequestStatements.log = originalRepeatLog;
+        InstrumentedConnection.slowQueryNanos = originalThreshold;
+        assertNull(RequestStatements.current(), "Every scope should be closed");
+    }
+
+    @Test
+    void testStatementsAndRowsAreCountedPerRequest() throws SQLException {
+        try (RequestStatements request = RequestStatements.begin("GET /api/users/1/profile")) {
+            Connection conn = InstrumentedConnection.wrap(connection);
+            try (PreparedStatement ps = conn.prepareStatement(PROFILE_SQL); ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // read the rows
+                }
+            }
+            when(statement.executeUpdate()).thenReturn(2);
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE profile SET email = ? WHERE userid = ?")) {
+                ps.executeUpdate();
+            }
+
+            assertEquals(2, request.getStatementCount());
+            assertEquals(1, request.getExecutions(PROFILE_SQL));
+            assertEquals(5, request.getRows());
+        }
+        assertTrue(logged.isEmpty());
+    }
+
+    @Test
+    void testSlowStatementIsLoggedWithRowsAndBinds() throws SQLException {
+        InstrumentedConnection.slowQueryNanos = 0;
+        try (RequestStatements request = RequestStatements.begin("GET /api/media");
+             PreparedStatement ps = InstrumentedConnection.wrap(connection).prepareStatement(
+                     "SELECT *  FROM mediaentry\n WHERE title ILIKE ? AND release_year > ?")) {
+            ps.setString(1, "%matrix%");
+            ps.setInt(2, 1990);
+            ps.setFetchSize(500);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                // read the rows
+            }
+        }
+
+        assertEquals(1, logged.size());
+        String line = logged.get(0);
+        assertTrue(line.startsWith("slow-query duration_ms="), line);
+        assertTrue(line.contains(" rows=3 binds=2 request=\"GET /api/media\""), line);
+        assertTrue(line.endsWith("fingerprint=\"SELECT * FROM mediaentry WHERE title ILIKE ? AND release_year > ?\""), line);
+    }
+
+    @Test
+    void testRepeatedStatementIsFlagged() throws SQLException {
+        RequestStatements request = RequestStatements.begin("GET /api/leaderboard");
+        Connection conn = InstrumentedConnection.wrap(connection);
+        for (int userId = 1; userId <= RequestStatements.REPEAT_THRESHOLD + 1; userId++) {
+            try (PreparedStatement ps = conn.prepareStatement(PROFILE_SQL)) {
+                ps.setInt(1, userId);
+                ps.executeQuery();
+            }
+        }
+        request.close();
+
+        Map<String, Integer> repeated = request.getRepeatedStatements();
+        assertEquals(Map.of("SELECT * FROM profile WHERE userid = ?", RequestStatements.REPEAT_THRESHOLD + 1), repeated);
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0).startsWith("repeated-statement request=\"GET /api/leaderboard\""), logged.get(0));
+    }
+
+    @Test
+    void testNestedScopesRestoreTheOuterScope() {
+        try (RequestStatements outer = RequestStatements.begin("outer")) {
+            try (RequestStatements inner = RequestStatements.begin("inner")) {
+                assertSame(inner, RequestStatements.current());
+            }
+            assertSame(outer, RequestStatements.current());
+        }
+    }
+
+    @Test
+    void testFingerprintHidesLiteralsAndLists() {
+        assertEquals("SELECT * FROM t WHERE a = ? AND b IN (?+) AND c = ?",
+                SqlFingerprint.of("SELECT * FROM t\n  WHERE a = 'it''s' AND b IN (1, 2, 3) AND c = 4.5;"));
+        assertEquals("SELECT col1, t2.x FROM t2 WHERE id IN (?+) LIMIT ?",
+                SqlFingerprint.of("SELECT col1, t2.x FROM t2 WHERE id IN (?, ?,?) LIMIT ?"));
+        assertEquals("SELECT ?::json", SqlFingerprint.of("SELECT '[]'::json"));
+    }
+}
@@ -0,0 +1,59 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationRunnerTest {
+
+    @Test
+    void testMigrationsAreOrderedAndLoadable() {
+        int previous = 0;
+        for (MigrationRunner.Migration migration : MigrationRunner.MIGRATIONS) {
+            assertTrue(migration.version() > previous, "Versions should be strictly ascending");
+            previous = migration.version();
+            assertFalse(MigrationRunner.load(migration).isBlank(), "Script should exist: " + migration.resource());
+        }
+    }
+
+    @Test
+    void testAllMigrationsPendingOnEmptyDatabase() {
+        List<MigrationRunner.Migration> pending = MigrationRunner.pendingMigrations(Map.of());
+        assertEquals(MigrationRunner.MIGRATIONS, pending);
+    }
+
+    @Test
+    void testOnlyMissingMigrationsArePending() {
+        MigrationRunner.Migration first = MigrationRunner.MIGRATIONS.get(0);
+        String checksum = MigrationRunner.checksum(MigrationRunner.load(first));
+
+        List<MigrationRunner.Migration> pending =
+                MigrationRunner.pendingMigrations(Map.of(first.version(), checksum));
+
+        assertEquals(MigrationRunner.MIGRATIONS.size() - 1, pending.size());
+        assertFalse(pending.contains(first));
+    }
+
+    @Test
+    void testChangedMigrationIsRejected() {
+        MigrationRunner.Migration first = MigrationRunner.MIGRATIONS.get(0);
+        assertThrows(DataAccessException.class,
+                () -> MigrationRunner.pendingMigrations(Map.of(first.version(), "changed")));
+    }
+
+    @Test
+    void testMigrationsAreIdempotent() {
+        for (MigrationRunner.Migration migration : MigrationRunner.MIGRATIONS) {
+            String script = MigrationRunner.load(migration);
+            assertFalse(script.contains("DROP TABLE"), "Migrations must not drop data: " + migration.resource());
+            for (String line : script.split("\n")) {
+                if (line.startsWith("CREATE TABLE") || line.startsWith("CREATE INDEX") || line.startsWith("CREATE EXTENSION")) {
+                    assertTrue(line.contains("IF NOT EXISTS"), "Statement should be idempotent: " + line);
+                }
+            }
+        }
+    }
+}
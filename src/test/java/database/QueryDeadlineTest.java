@@ -0,0 +1,99 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.jdbc.PgStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QueryDeadlineTest {
+
+    private LongSupplier originalClock;
+    private long now;
+    private Connection connection;
+    private PreparedStatement statement;
+    private PgStatement pgStatement;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        originalClock = QueryDeadline.clock;
+        now = 5_000_000_000L;
+        QueryDeadline.clock = () -> now;
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        pgStatement = mock(PgStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.unwrap(PgStatement.class)).thenReturn(pgStatement);
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryDeadline.clear();
+        QueryDeadline.clock = originalClock;
+    }
+
+    @Test
+    void testNoQueryTimeoutWithoutDeadline() throws SQLException {
+        assertEquals(-1, QueryDeadline.remainingMillis());
+        InstrumentedConnection.wrap(connection).prepareStatement("SELECT 1").executeQuery();
+
+        verify(statement).executeQuery();
+        verify(pgStatement, never()).setQueryTimeoutMs(anyLong());
+    }
+
+    @Test
+    void testRemainingTimeBecomesQueryTimeout() throws SQLException {
+        QueryDeadline.start(Duration.ofMillis(200));
+        Connection guarded = InstrumentedConnection.wrap(connection);
+        PreparedStatement ps = guarded.prepareStatement("SELECT 1");
+        ps.setInt(1, 1);
+        verify(pgStatement, never()).setQueryTimeoutMs(anyLong());
+
+        now += Duration.ofMillis(50).toNanos();
+        ps.executeQuery();
+
+        verify(pgStatement).setQueryTimeoutMs(150);
+        verify(statement).executeQuery();
+    }
+
+    @Test
+    void testPassedDeadlineSkipsTheStatement() throws SQLException {
+        QueryDeadline.start(Duration.ofMillis(200));
+        PreparedStatement ps = InstrumentedConnection.wrap(connection).prepareStatement("SELECT 1");
+        long exceeded = QueryDeadline.getExceededCount();
+
+        now += Duration.ofMillis(300).toNanos();
+
+        assertThrows(DeadlineExceededException.class, ps::executeUpdate);
+        verify(statement, never()).executeUpdate();
+        assertEquals(exceeded + 1, QueryDeadline.getExceededCount());
+    }
+
+    @Test
+    void testCanceledStatementIsDeadlineExceeded() throws SQLException {
+        when(statement.executeQuery()).thenThrow(new SQLException("canceling statement due to user request", QueryDeadline.QUERY_CANCELED));
+        QueryDeadline.start(Duration.ofSeconds(2));
+        PreparedStatement ps = InstrumentedConnection.wrap(connection).prepareStatement("SELECT pg_sleep(5)");
+
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class, ps::executeQuery);
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+
+    @Test
+    void testOtherErrorsAreUnchanged() throws SQLException {
+        when(statement.executeUpdate()).thenThrow(new SQLException("duplicate key", "23505"));
+        QueryDeadline.start(Duration.ofSeconds(2));
+        PreparedStatement ps = InstrumentedConnection.wrap(connection).prepareStatement("INSERT");
+
+        SQLException e = assertThrows(SQLException.class, ps::executeUpdate);
+        assertEquals("23505", e.getSQLState());
+    }
+}
@@ -0,0 +1,77 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadRoutingTest {
+
+    private LongSupplier originalClock;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        originalClock = ReadRouting.clock;
+        now = 1_000_000_000_000L;
+        ReadRouting.clock = () -> now;
+        ReadRouting.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadRouting.clear();
+        ReadRouting.clock = originalClock;
+        ReadRouting.reset();
+    }
+
+    @Test
+    void testWriterReadsFromPrimaryWithinWindow() {
+        ReadRouting.bindUser(1);
+        assertFalse(ReadRouting.mustReadPrimary());
+
+        ReadRouting.recordWrite();
+        assertTrue(ReadRouting.mustReadPrimary());
+
+        now += ReadRouting.WINDOW_NANOS + 1;
+        assertFalse(ReadRouting.mustReadPrimary());
+    }
+
+    @Test
+    void testOtherUsersStillReadFromReplica() {
+        ReadRouting.bindUser(1);
+        ReadRouting.recordWrite();
+
+        ReadRouting.bindUser(2);
+        assertFalse(ReadRouting.mustReadPrimary());
+
+        ReadRouting.clear();
+        assertFalse(ReadRouting.mustReadPrimary());
+    }
+
+    @Test
+    void testAnonymousWriteIsNotRecorded() {
+        ReadRouting.recordWrite();
+
+        ReadRouting.bindUser(1);
+        assertFalse(ReadRouting.mustReadPrimary());
+    }
+
+    @Test
+    void testChangeIsRecentWithinWindow() {
+        long changedAt = ReadRouting.now();
+        assertTrue(ReadRouting.withinWindow(changedAt));
+
+        now += ReadRouting.WINDOW_NANOS + 1;
+        assertFalse(ReadRouting.withinWindow(changedAt));
+    }
+
+    @Test
+    void testReplicaIsNotUsedWithoutConfiguration() {
+        assertFalse(DatabaseManager.INSTANCE.hasReplica());
+        assertFalse(DatabaseManager.INSTANCE.mayReadStaleData(ReadRouting.now()));
+    }
+}
@@ -0,0 +1,218 @@
+package database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UnitOfWorkTest {
+
+    private Supplier<Connection> originalSource;
+    private Supplier<Connection> originalReadSource;
+    private Connection connection;
+    private int opened;
+    private int readOpened;
+
+    @BeforeEach
+    void setUp() {
+        originalSource = UnitOfWork.connectionSource;
+        originalReadSource = UnitOfWork.readConnectionSource;
+        connection = mock(Connection.class);
+        UnitOfWork.connectionSource = () -> {
+            opened++;
+            return connection;
+        };
+        UnitOfWork.readConnectionSource = () -> {
+            readOpened++;
+            return connection;
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        UnitOfWork.connectionSource = originalSource;
+        UnitOfWork.readConnectionSource = originalReadSource;
+        assertNull(UnitOfWork.current(), "Every unit of work should be closed");
+    }
+
+    @Test
+    void testConnectionIsOnlyTakenWhenNeeded() {
+        try (UnitOfWork work = new UnitOfWork()) {
+            work.commitTransaction();
+        }
+        assertEquals(0, opened);
+    }
+
+    @Test
+    void testRepositoryCallsShareOneConnectionAndCommitOnce() throws SQLException {
+        try (UnitOfWork work = new UnitOfWork()) {
+            try (Connection first = DatabaseManager.INSTANCE.getConnection()) {
+                first.prepareStatement("SELECT 1");
+                first.commit();
+            }
+            try (Connection second = DatabaseManager.INSTANCE.getConnection()) {
+                second.prepareStatement("SELECT 2");
+            }
+            verify(connection, never()).close();
+            work.commitTransaction();
+        }
+
+        assertEquals(1, opened);
+        verify(connection).setAutoCommit(false);
+        verify(connection).prepareStatement("SELECT 1");
+        verify(connection).prepareStatement("SELECT 2");
+        verify(connection, times(1)).commit();
+        verify(connection, never()).rollback();
+        verify(connection).close();
+    }
+
+    @Test
+    void testCloseWithoutCommitRollsBack() throws SQLException {
+        try (UnitOfWork work = new UnitOfWork()) {
+            work.getConnection();
+        }
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(connection).close();
+    }
+
+    @Test
+    void testNestedRollbackOnlyUndoesNestedWork() throws SQLException {
+        Savepoint savepoint = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(savepoint);
+
+        try (UnitOfWork outer = new UnitOfWork()) {
+            outer.getConnection();
+            try (UnitOfWork inner = new UnitOfWork()) {
+                assertTrue(inner.isNested());
+                inner.getConnection();
+            }
+            assertSame(outer, UnitOfWork.current());
+            outer.commitTransaction();
+        }
+
+        verify(connection).rollback(savepoint);
+        verify(connection, never()).rollback();
+        verify(connection).commit();
+    }
+
+    @Test
+    void testRollbackOfMiddleUnitUndoesWorkOfItsNestedUnits() throws SQLException {
+        Savepoint middleSavepoint = mock(Savepoint.class);
+        Savepoint childSavepoint = mock(Savepoint.class);
+        when(connection.setSavepoint()).thenReturn(middleSavepoint).thenReturn(childSavepoint);
+
+        try (UnitOfWork outer = new UnitOfWork()) {
+            outer.getConnection();
+            try (UnitOfWork middle = new UnitOfWork()) {
+                try (UnitOfWork child = new UnitOfWork()) {
+                    child.prepareStatement("INSERT child");
+                    child.commitTransaction();
+                }
+                middle.rollbackTransaction();
+            }
+            outer.commitTransaction();
+        }
+
+        verify(connection, times(2)).setSavepoint();
+        verify(connection).rollback(middleSavepoint);
+        verify(connection, never()).rollback(childSavepoint);
+        verify(connection, never()).rollback();
+        verify(connection).commit();
+    }
+
+    @Test
+    void testRollbackOfMiddleUnitBeforeOuterUnitUsedTheConnection() throws SQLException {
+        try (UnitOfWork outer = new UnitOfWork()) {
+            try (UnitOfWork middle = new UnitOfWork()) {
+                try (UnitOfWork child = new UnitOfWork()) {
+                    child.prepareStatement("INSERT child");
+                    child.commitTransaction();
+                }
+                middle.rollbackTransaction();
+            }
+            outer.commitTransaction();
+        }
+
+        // the transaction started below the middle unit, so it only holds work of that unit
+        InOrder order = inOrder(connection);
+        order.verify(connection).prepareStatement("INSERT child");
+        order.verify(connection).rollback();
+        order.verify(connection).commit();
+        verify(connection, never()).setSavepoint();
+    }
+
+    @Test
+    void testNestedCommitIsDeferredToOuterUnit() throws SQLException {
+        try (UnitOfWork outer = new UnitOfWork()) {
+            try (UnitOfWork inner = new UnitOfWork()) {
+                inner.getConnection();
+                inner.commitTransaction();
+            }
+            verify(connection, never()).commit();
+            outer.commitTransaction();
+        }
+        verify(connection).commit();
+        verify(connection, never()).setSavepoint();
+    }
+
+    @Test
+    void testReadOnlyUnit() throws SQLException {
+        try (UnitOfWork work = UnitOfWork.readOnly()) {
+            assertTrue(work.isReadOnly());
+            work.getConnection();
+            try (UnitOfWork nested = UnitOfWork.readOnly()) {
+                assertTrue(nested.isReadOnly());
+            }
+            assertThrows(DataAccessException.class, UnitOfWork::new);
+            work.commitTransaction();
+        }
+        assertEquals(0, opened);
+        assertEquals(1, readOpened);
+        verify(connection).setReadOnly(true);
+    }
+
+    @Test
+    void testAfterCommitActions() {
+        List<String> actions = new ArrayList<>();
+
+        UnitOfWork.afterCommit(() -> actions.add("immediately"));
+        try (UnitOfWork work = new UnitOfWork()) {
+            UnitOfWork.afterCommit(() -> actions.add("committed"));
+            try (UnitOfWork nested = new UnitOfWork()) {
+                UnitOfWork.afterCommit(() -> actions.add("rolled back"));
+            }
+            assertEquals(List.of("immediately"), actions);
+            work.commitTransaction();
+        }
+
+        assertEquals(List.of("immediately", "committed"), actions);
+    }
+
+    @Test
+    void testRollbackByRepositoryCodeFailsTheCommit() throws SQLException {
+        try (UnitOfWork work = new UnitOfWork()) {
+            work.getConnection().rollback();
+            assertThrows(DataAccessException.class, work::commitTransaction);
+        }
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    void testOuterUnitCannotBeUsedWhileNestedUnitIsOpen() {
+        try (UnitOfWork outer = new UnitOfWork(); UnitOfWork inner = new UnitOfWork()) {
+            assertThrows(DataAccessException.class, outer::getConnection);
+        }
+    }
+}
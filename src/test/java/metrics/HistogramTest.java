@@ -0,0 +1,44 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void testDurationsAreCountedInInclusiveBuckets() {
+        Histogram histogram = new Histogram(new double[] {0.01, 0.1, 1});
+        histogram.record(5_000_000L);     // 5 ms
+        histogram.record(10_000_000L);    // exactly on the 10 ms bound
+        histogram.record(50_000_000L);    // 50 ms
+        histogram.record(3_000_000_000L); // 3 s, above every bound
+
+        assertArrayEquals(new long[] {2, 3, 3, 4}, histogram.getCumulativeCounts());
+        assertEquals(4, histogram.getCount());
+        assertEquals(3.065, histogram.getSumSeconds(), 1e-9);
+    }
+
+    @Test
+    void testBoundsMustBeAscending() {
+        assertThrows(IllegalArgumentException.class, () -> new Histogram(new double[] {0.1, 0.1}));
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNothing() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) histogram.record(i * 1_000L);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(80_000, histogram.getCount());
+    }
+}
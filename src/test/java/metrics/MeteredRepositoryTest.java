@@ -0,0 +1,97 @@
+package metrics;
+
+import database.DataAccessException;
+import model.MediaEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.IMediaEntryRepository;
+import persistence.RowSink;
+import persistence.WriteResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MeteredRepositoryTest {
+
+    private Metrics metrics;
+    private IMediaEntryRepository delegate;
+    private IMediaEntryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.resetInstance();
+        metrics = Metrics.getInstance();
+        delegate = mock(IMediaEntryRepository.class);
+        repository = MeteredRepository.wrap(IMediaEntryRepository.class, delegate, "MediaEntryRepository", metrics);
+    }
+
+    @Test
+    void testReturnedListsCountAsRows() {
+        when(delegate.getAllMediaEntries()).thenReturn(List.of(new MediaEntry(), new MediaEntry()));
+
+        assertEquals(2, repository.getAllMediaEntries().size());
+        repository.getAllMediaEntries();
+
+        QueryMetrics query = metrics.query("MediaEntryRepository.getAllMediaEntries");
+        assertEquals(2, query.getLatency().getCount());
+        assertEquals(4, query.getRows());
+    }
+
+    @Test
+    void testWriteResultsAreNotRows() {
+        when(delegate.deleteMediaEntry(1, 2)).thenReturn(WriteResult.OK);
+
+        assertEquals(WriteResult.OK, repository.deleteMediaEntry(1, 2));
+
+        QueryMetrics query = metrics.query("MediaEntryRepository.deleteMediaEntry");
+        assertEquals(1, query.getLatency().getCount());
+        assertEquals(0, query.getRows());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamedRowsAreCounted() throws Exception {
+        doAnswer(invocation -> {
+            RowSink<MediaEntry> sink = invocation.getArgument(2);
+            sink.accept(new MediaEntry());
+            sink.accept(new MediaEntry());
+            sink.accept(new MediaEntry());
+            return null;
+        }).when(delegate).streamSearchAndFilterMediaEntries(anyMap(), any(), any());
+
+        List<MediaEntry> received = new ArrayList<>();
+        repository.streamSearchAndFilterMediaEntries(Map.of(), null, received::add);
+
+        assertEquals(3, received.size());
+        assertEquals(3, metrics.query("MediaEntryRepository.streamSearchAndFilterMediaEntries").getRows());
+    }
+
+    @Test
+    void testFailuresAreCountedAndRethrown() {
+        when(delegate.getMediaEntryByID(5)).thenThrow(new DataAccessException("down"));
+
+        assertThrows(DataAccessException.class, () -> repository.getMediaEntryByID(5));
+
+        QueryMetrics query = metrics.query("MediaEntryRepository.getMediaEntryByID");
+        assertEquals(1, query.getErrors());
+        assertEquals(1, query.getLatency().getCount());
+    }
+
+    @Test
+    void testFailureResultsAreCountedAsErrors() {
+        when(delegate.deleteMediaEntry(1, 2)).thenReturn(WriteResult.FAILED);
+        when(delegate.deleteMediaEntry(3, 2)).thenReturn(WriteResult.NOT_FOUND);
+
+        assertEquals(WriteResult.FAILED, repository.deleteMediaEntry(1, 2));
+        assertEquals(WriteResult.NOT_FOUND, repository.deleteMediaEntry(3, 2));
+
+        QueryMetrics query = metrics.query("MediaEntryRepository.deleteMediaEntry");
+        assertEquals(1, query.getErrors());
+        assertEquals(2, query.getLatency().getCount());
+    }
+}
@@ -0,0 +1,59 @@
+package metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    private Metrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.resetInstance();
+        metrics = Metrics.getInstance();
+    }
+
+    @Test
+    void testRoutesAreRecordedByTemplateAndStatus() {
+        RouteMetrics route = metrics.route("GET", "/api/media/{id:int}");
+        assertSame(route, metrics.route("GET", "/api/media/{id:int}"));
+
+        metrics.requestStarted();
+        metrics.requestStarted();
+        assertEquals(2, metrics.getInFlight());
+        metrics.requestFinished(route, 200, 2_000_000L);
+        metrics.requestFinished(route, 404, 500_000L);
+        assertEquals(0, metrics.getInFlight());
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE mrp_http_request_duration_seconds histogram\n"));
+        assertTrue(text.contains("mrp_http_request_duration_seconds_bucket{method=\"GET\",route=\"/api/media/{id:int}\",le=\"0.001\"} 1\n"));
+        assertTrue(text.contains("mrp_http_request_duration_seconds_bucket{method=\"GET\",route=\"/api/media/{id:int}\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("mrp_http_request_duration_seconds_count{method=\"GET\",route=\"/api/media/{id:int}\"} 2\n"));
+        assertTrue(text.contains("mrp_http_responses_total{method=\"GET\",route=\"/api/media/{id:int}\",status=\"404\"} 1\n"));
+        assertTrue(text.contains("mrp_http_requests_in_flight 0\n"));
+    }
+
+    @Test
+    void testRegisteredValuesAreReadAtScrapeTime() {
+        long[] hits = {3};
+        metrics.counter("mrp_cache_hits_total", "cache=\"media\"", "Cache hits", () -> hits[0]);
+        metrics.gauge("mrp_db_pool_connections", "pool=\"replica\"", "Connections", () -> Double.NaN);
+        hits[0] = 7;
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE mrp_cache_hits_total counter\nmrp_cache_hits_total{cache=\"media\"} 7\n"));
+        assertFalse(text.contains("pool=\"replica\""), "NaN values are skipped");
+        assertThrows(IllegalArgumentException.class,
+                () -> metrics.gauge("mrp_cache_hits_total", "", "Wrong type", () -> 1));
+    }
+
+    @Test
+    void testFormatting() {
+        assertEquals("5", Metrics.format(5.0));
+        assertEquals("0.25", Metrics.format(0.25));
+        assertEquals("a\\\"b\\\\c\\n", Metrics.escape("a\"b\\c\n"));
+    }
+}
@@ -0,0 +1,138 @@
+package persistence;
+
+import model.MediaEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CachingMediaEntryRepositoryTest {
+
+    private IMediaEntryRepository delegate;
+    private AtomicLong now;
+    private CachingMediaEntryRepository cache;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(IMediaEntryRepository.class);
+        when(delegate.getMediaEntryByID(anyInt())).thenAnswer(invocation -> mediaEntry(invocation.getArgument(0)));
+        now = new AtomicLong();
+        cache = new CachingMediaEntryRepository(delegate, 3, Duration.ofMinutes(5), now::get);
+    }
+
+    @Test
+    void testRepeatedReadIsServedFromCache() {
+        MediaEntry first = cache.getMediaEntryByID(1);
+        MediaEntry second = cache.getMediaEntryByID(1);
+
+        assertEquals("Movie 1", second.getTitle());
+        assertEquals(List.of("Action"), second.getGenres());
+        assertNotSame(first, second, "Callers should get their own copy");
+        verify(delegate, times(1)).getMediaEntryByID(1);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testChangingReturnedEntryDoesNotChangeCache() {
+        cache.getMediaEntryByID(1).setTitle("changed");
+        assertEquals("Movie 1", cache.getMediaEntryByID(1).getTitle());
+    }
+
+    @Test
+    void testMissingEntryIsNotCached() {
+        when(delegate.getMediaEntryByID(99)).thenReturn(null);
+
+        assertNull(cache.getMediaEntryByID(99));
+        assertNull(cache.getMediaEntryByID(99));
+        verify(delegate, times(2)).getMediaEntryByID(99);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testEntryExpiresAfterTtl() {
+        cache.getMediaEntryByID(1);
+        now.addAndGet(Duration.ofMinutes(5).toNanos());
+        cache.getMediaEntryByID(1);
+
+        verify(delegate, times(2)).getMediaEntryByID(1);
+    }
+
+    @Test
+    void testUpdateInvalidatesEntry() {
+        cache.getMediaEntryByID(1);
+        cache.getMediaEntryByID(2);
+        when(delegate.updateMediaEntry(eq(1), any(), any(), any(), any(), anyInt(), anyInt(), anyInt())).thenReturn(WriteResult.OK);
+
+        assertEquals(WriteResult.OK, cache.updateMediaEntry(1, "New", "desc", "movie", List.of("Drama"), 2020, 12, 1));
+        cache.getMediaEntryByID(1);
+        cache.getMediaEntryByID(2);
+
+        verify(delegate, times(2)).getMediaEntryByID(1);
+        verify(delegate, times(1)).getMediaEntryByID(2);
+    }
+
+    @Test
+    void testDeleteInvalidatesEntry() {
+        cache.getMediaEntryByID(1);
+        when(delegate.deleteMediaEntry(1, 1)).thenReturn(WriteResult.OK);
+
+        assertEquals(WriteResult.OK, cache.deleteMediaEntry(1, 1));
+        when(delegate.getMediaEntryByID(1)).thenReturn(null);
+        assertNull(cache.getMediaEntryByID(1));
+    }
+
+    @Test
+    void testInvalidateForRatingChange() {
+        cache.getMediaEntryByID(1);
+        cache.invalidate(1);
+        cache.getMediaEntryByID(1);
+
+        verify(delegate, times(2)).getMediaEntryByID(1);
+    }
+
+    @Test
+    void testCacheIsBoundedAndKeepsFrequentlyUsedEntries() {
+        for (int i = 0; i < 5; i++) {
+            cache.getMediaEntryByID(1);
+            cache.getMediaEntryByID(2);
+            cache.getMediaEntryByID(3);
+        }
+        // new entries are only admitted once they are used more often than a cached one
+        for (int i = 0; i < 10; i++) {
+            cache.getMediaEntryByID(4);
+        }
+        for (int id = 5; id < 50; id++) {
+            cache.getMediaEntryByID(id);
+        }
+
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        clearInvocations(delegate);
+        cache.getMediaEntryByID(4);
+        verify(delegate, never()).getMediaEntryByID(4);
+    }
+
+    @Test
+    void testOtherMethodsAreDelegated() {
+        cache.getAllMediaEntries();
+        cache.setFavoriteStatus(1, 2);
+        cache.getRecommendationByGenre(1);
+
+        verify(delegate).getAllMediaEntries();
+        verify(delegate).setFavoriteStatus(1, 2);
+        verify(delegate).getRecommendationByGenre(1);
+    }
+
+    private static MediaEntry mediaEntry(int id) {
+        MediaEntry mediaEntry = new MediaEntry("Movie " + id, "desc", "movie", 2020, List.of("Action"), 12, 1);
+        mediaEntry.setMediaentryid(id);
+        return mediaEntry;
+    }
+}
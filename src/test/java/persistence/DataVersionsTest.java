@@ -0,0 +1,108 @@
+package persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataVersionsTest {
+
+    private DataVersions versions;
+
+    @BeforeEach
+    void setUp() {
+        DataVersions.resetInstance();
+        versions = DataVersions.getInstance();
+    }
+
+    @Test
+    void testMediaEntryChangeOnlyChangesThatEntry() {
+        long media = versions.getMediaVersion();
+        long leaderboard = versions.getLeaderboardVersion();
+
+        versions.mediaEntryChanged(1);
+
+        assertTrue(versions.getMediaVersion() > media, "Search results change with every entry");
+        assertTrue(versions.getMediaEntryVersion(1) > 0);
+        assertEquals(0, versions.getMediaEntryVersion(2));
+        assertEquals(leaderboard, versions.getLeaderboardVersion());
+    }
+
+    @Test
+    void testRatingChangeAlsoChangesLeaderboard() {
+        versions.mediaEntryChanged(1);
+        long entry = versions.getMediaEntryVersion(1);
+        long leaderboard = versions.getLeaderboardVersion();
+
+        versions.ratingsChanged(1);
+
+        assertTrue(versions.getMediaEntryVersion(1) > entry);
+        assertTrue(versions.getLeaderboardVersion() > leaderboard);
+    }
+
+    @Test
+    void testAddedMediaAndProfiles() {
+        versions.mediaAdded();
+        versions.profilesChanged();
+
+        assertEquals(1, versions.getMediaVersion());
+        assertEquals(1, versions.getLeaderboardVersion());
+        assertEquals(0, versions.getMediaEntryVersion(1), "Existing entries keep their version");
+    }
+
+    @Test
+    void testChangedDataKeepsItsTagWithoutReplica() {
+        String entry = versions.mediaEntryTag(1);
+        String leaderboard = versions.leaderboardTag();
+
+        versions.ratingsChanged(1);
+
+        // without a replica every read sees the change, so the new versions are tagged right away
+        assertNotEquals(entry, versions.mediaEntryTag(1));
+        assertNotEquals(leaderboard, versions.leaderboardTag());
+        assertEquals(versions.tag("media", versions.getMediaVersion()), versions.mediaTag());
+        assertEquals(versions.tag("media-2", 0), versions.mediaEntryTag(2));
+    }
+
+    @Test
+    void testDeletedEntryIsForgotten() {
+        versions.mediaEntryChanged(1);
+        long untouched = versions.getMediaEntryVersion(2);
+        long leaderboard = versions.getLeaderboardVersion();
+
+        versions.mediaEntryDeleted(1);
+
+        assertEquals(0, versions.mediaEntryCount());
+        assertTrue(versions.getMediaEntryVersion(1) > untouched, "The deleted entry must not match its old ETag");
+        assertTrue(versions.getLeaderboardVersion() > leaderboard, "Its ratings were deleted");
+    }
+
+    @Test
+    void testOldEntriesAreEvictedToTheFloor() {
+        int originalMax = DataVersions.maxEntries;
+        DataVersions.maxEntries = 4;
+        try {
+            DataVersions.resetInstance();
+            versions = DataVersions.getInstance();
+            for (int id = 1; id <= 4; id++) versions.mediaEntryChanged(id);
+            long newest = versions.getMediaEntryVersion(4);
+
+            versions.mediaEntryChanged(5);
+
+            assertTrue(versions.mediaEntryCount() <= 4);
+            assertEquals(newest, versions.getMediaEntryVersion(4), "Newer entries keep their version");
+            for (int id = 1; id <= 3; id++) {
+                assertTrue(versions.getMediaEntryVersion(id) >= id, "An evicted entry never goes back to an older version");
+            }
+            assertTrue(versions.getMediaEntryVersion(99) > 0, "Entries without their own version share the floor");
+        } finally {
+            DataVersions.maxEntries = originalMax;
+        }
+    }
+
+    @Test
+    void testTagContainsEpoch() {
+        String tag = versions.tag("media-1", 5);
+        assertEquals("media-1-" + Long.toString(versions.getEpoch(), 36) + "-5", tag);
+    }
+}
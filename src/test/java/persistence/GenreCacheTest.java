@@ -0,0 +1,124 @@
+package persistence;
+
+import database.UnitOfWork;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class GenreCacheTest {
+
+    private GenreCache cache;
+    private Connection conn;
+    private PreparedStatement ps;
+    private ResultSet rs;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        cache = new GenreCache();
+        conn = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        rs = mock(ResultSet.class);
+        when(conn.prepareStatement(anyString())).thenReturn(ps);
+        when(conn.createArrayOf(eq("text"), any())).thenReturn(mock(Array.class));
+        when(ps.executeQuery()).thenReturn(rs);
+    }
+
+    @Test
+    void testUnknownGenresAreResolvedInOneStatement() throws SQLException {
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString("name")).thenReturn("Action", "Drama");
+        when(rs.getInt("genreid")).thenReturn(1, 2);
+
+        List<Integer> ids = cache.resolve(conn, List.of("Action", "Drama", "Action"));
+
+        assertEquals(List.of(1, 2), ids);
+        assertEquals(2, cache.size());
+        verify(ps, times(1)).executeQuery();
+        verify(conn).createArrayOf("text", new Object[] {"Action", "Drama"});
+    }
+
+    @Test
+    void testCachedGenresDoNotQueryTheDatabase() throws SQLException {
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("name")).thenReturn("Action");
+        when(rs.getInt("genreid")).thenReturn(1);
+        cache.resolve(conn, List.of("Action"));
+        clearInvocations(conn);
+        clearInvocations(ps);
+
+        assertEquals(List.of(1), cache.resolve(conn, List.of("Action")));
+        verifyNoInteractions(ps);
+        verify(conn, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    void testOnlyMissingGenresAreQueried() throws SQLException {
+        when(rs.next()).thenReturn(true, false, true, false);
+        when(rs.getString("name")).thenReturn("Action", "Drama");
+        when(rs.getInt("genreid")).thenReturn(1, 2);
+        cache.resolve(conn, List.of("Action"));
+
+        assertEquals(List.of(1, 2), cache.resolve(conn, List.of("Action", "Drama")));
+        verify(conn).createArrayOf("text", new Object[] {"Drama"});
+    }
+
+    @Test
+    void testGenresAreOnlyCachedAfterCommit() throws SQLException {
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("name")).thenReturn("Action");
+        when(rs.getInt("genreid")).thenReturn(1);
+
+        try (UnitOfWork work = new UnitOfWork()) {
+            cache.resolve(conn, List.of("Action"));
+            assertEquals(0, cache.size());
+            work.commitTransaction();
+        }
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testGenresOfRolledBackTransactionAreNotCached() throws SQLException {
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("name")).thenReturn("Action");
+        when(rs.getInt("genreid")).thenReturn(1);
+
+        try (UnitOfWork work = new UnitOfWork()) {
+            assertEquals(List.of(1), cache.resolve(conn, List.of("Action")));
+        }
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testUnresolvedGenreFails() throws SQLException {
+        when(rs.next()).thenReturn(false);
+
+        assertThrows(SQLException.class, () -> cache.resolve(conn, List.of("Action")));
+        verify(ps, times(2)).executeQuery();
+    }
+
+    @Test
+    void testClearForgetsGenres() throws SQLException {
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("name")).thenReturn("Action");
+        when(rs.getInt("genreid")).thenReturn(1);
+        cache.resolve(conn, List.of("Action"));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,120 @@
+package restserver.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCompressionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Server server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.stop(0);
+    }
+
+    @Test
+    void testNegotiate() {
+        assertEquals("gzip", ResponseCompression.negotiate("gzip, deflate, br"));
+        assertEquals("deflate", ResponseCompression.negotiate("deflate"));
+        assertEquals("deflate", ResponseCompression.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("gzip", ResponseCompression.negotiate("*"));
+        assertEquals("deflate", ResponseCompression.negotiate("gzip;q=0, *;q=0.1"));
+        assertNull(ResponseCompression.negotiate("br, identity"));
+        assertNull(ResponseCompression.negotiate("gzip;q=0, deflate;q=0"));
+        assertNull(ResponseCompression.negotiate(null));
+    }
+
+    @Test
+    void testCompressRoundTrip() throws Exception {
+        byte[] body = largeBody().getBytes(StandardCharsets.UTF_8);
+
+        byte[] gzip = ResponseCompression.compress(body, "gzip", 6);
+        byte[] deflate = ResponseCompression.compress(body, "deflate", 1);
+
+        assertTrue(gzip.length < body.length / 4, "Repetitive JSON should compress well");
+        assertArrayEquals(body, new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes());
+        assertArrayEquals(body, new InflaterInputStream(new ByteArrayInputStream(deflate)).readAllBytes());
+    }
+
+    @Test
+    void testFixedLengthBodyIsCompressed() throws Exception {
+        String body = largeBody();
+        HttpResponse<byte[]> response = serve(new Response(HttpStatus.OK, ContentType.JSON, body), "gzip");
+
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("Accept-Encoding", response.headers().firstValue("Vary").orElse(null));
+        assertEquals(String.valueOf(response.body().length), response.headers().firstValue("Content-Length").orElse(null));
+        assertEquals(body, decode(response, new GZIPInputStream(new ByteArrayInputStream(response.body()))));
+    }
+
+    @Test
+    void testSmallBodyIsNotCompressed() throws Exception {
+        HttpResponse<byte[]> response = serve(new Response(HttpStatus.OK, ContentType.JSON, "{}"), "gzip");
+
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        assertEquals("{}", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testStreamedBodyIsCompressed() throws Exception {
+        List<Map<String, Object>> items = largeItems();
+        HttpResponse<byte[]> response = serve(StreamingResponse.json(HttpStatus.OK, objectMapper, items), "deflate");
+
+        assertEquals("deflate", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null));
+        String json = decode(response, new InflaterInputStream(new ByteArrayInputStream(response.body())));
+        assertEquals(items, objectMapper.readValue(json, List.class));
+    }
+
+    @Test
+    void testSmallStreamedBodyIsSentWithLength() throws Exception {
+        HttpResponse<byte[]> response = serve(StreamingResponse.json(HttpStatus.OK, objectMapper, List.of("a")), "gzip");
+
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        assertEquals("5", response.headers().firstValue("Content-Length").orElse(null));
+        assertEquals("[\"a\"]", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    private static List<Map<String, Object>> largeItems() {
+        return java.util.stream.IntStream.range(0, 500)
+                .mapToObj(i -> Map.<String, Object>of("id", i, "description", "A long description of movie " + i))
+                .toList();
+    }
+
+    private String largeBody() throws Exception {
+        return objectMapper.writeValueAsString(largeItems());
+    }
+
+    private static String decode(HttpResponse<byte[]> response, InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private HttpResponse<byte[]> serve(Response response, String acceptEncoding) throws Exception {
+        server = new Server(0, 128, Server.ExecutorMode.VIRTUAL, 0, 0);
+        server.start(Map.of("/", exchange -> response.send(exchange)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/"))
+                .header("Accept-Encoding", acceptEncoding)
+                .GET().build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,270 @@
+package restserver.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import database.DataAccessException;
+import database.DeadlineExceededException;
+import database.QueryDeadline;
+import database.ReadRouting;
+import metrics.Metrics;
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+import restserver.http.Method;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+
+    private Server server;
+    private Router router;
+    private final AtomicInteger handlerCalls = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong(1);
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        User alice = new User("alice", "pw");
+        alice.setUserid(1);
+        User carol = new User("carol", "pw");
+        carol.setUserid(2);
+        router = new Router(token -> switch (token) {
+            case "alice-mrpToken" -> alice;
+            case "carol-mrpToken" -> carol;
+            default -> null;
+        });
+
+        router.addPublic(Method.POST, "/api/users/login", RouteHandler.readOnly(request -> ok("login " + request.getBody())));
+        router.add(Method.GET, "/api/media", request -> ok("search " + request.getQueryParams().get("title")));
+        router.add(Method.GET, "/api/media/{id:int}", request -> ok("media " + request.getPathInt("id")));
+        router.add(Method.DELETE, "/api/media/{id:int}", request -> ok("delete " + request.getPathInt("id")));
+        router.add(Method.POST, "/api/media/{id:int}/rate",
+                request -> ok("rate " + request.getPathInt("id") + " by " + request.getUser().getUsername()));
+        router.add(Method.GET, "/api/media/popular", request -> ok("popular"));
+        router.add(Method.GET, "/api/tags/{name}", request -> ok("tag " + request.getPathVariable("name")));
+        router.add(Method.GET, "/api/fail", request -> { throw new IllegalStateException("boom"); });
+        router.add(Method.GET, "/api/slow", RouteHandler.withDeadline(Duration.ofMillis(200), request -> {
+            assertTrue(QueryDeadline.remainingMillis() > 0);
+            throw new DeadlineExceededException("too slow");
+        }));
+        router.add(Method.GET, "/api/busy", request -> {
+            assertFalse(QueryDeadline.isActive(), "Routes without deadline have no time budget");
+            throw new DataAccessException("Database connection failed", new SQLTransientConnectionException("timeout"));
+        });
+        router.addPublic(Method.GET, "/api/versioned/{id:int}", request -> {
+            handlerCalls.incrementAndGet();
+            return ok("versioned " + request.getPathInt("id"));
+        }, CachePolicy.versioned("public, max-age=10", request -> request.getPathInt("id") + "-" + version.get()));
+
+        router.addPublic(Method.GET, "/api/leaderboard", request -> ok("primary " + ReadRouting.mustReadPrimary()));
+
+        router.add(Method.GET, "/api/stream", request -> StreamingResponse.jsonStream(HttpStatus.OK, new ObjectMapper(), generator -> {
+            generator.writeStartArray();
+            for (int i = 0; i < 5000; i++) generator.writeNumber(i);
+            throw new DataAccessException("Streaming query failed");
+        }));
+
+        router.add(Method.GET, "/api/stream/slow", RouteHandler.withDeadline(Duration.ofMillis(200),
+                request -> StreamingResponse.jsonStream(HttpStatus.OK, new ObjectMapper(), generator -> {
+                    generator.writeStartArray();
+                    // the query of a streamed route runs while the response is sent
+                    assertTrue(QueryDeadline.isActive());
+                    throw new DeadlineExceededException("too slow");
+                })));
+
+        server = new Server(0, 128, Server.ExecutorMode.VIRTUAL, 0, 0);
+        server.start(Map.of("/", router));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testTypedPathVariable() throws Exception {
+        HttpResponse<String> response = send("GET", "/api/media/42", true);
+        assertEquals(200, response.statusCode());
+        assertEquals("media 42", response.body());
+    }
+
+    @Test
+    void testNestedRouteWithBodyAndUser() throws Exception {
+        assertEquals("rate 7 by alice", send("POST", "/api/media/7/rate", true).body());
+    }
+
+    @Test
+    void testLiteralSegmentWinsOverVariable() throws Exception {
+        assertEquals("popular", send("GET", "/api/media/popular", true).body());
+        assertEquals("tag drama", send("GET", "/api/tags/drama", true).body());
+    }
+
+    @Test
+    void testQueryParamsAndTrailingSlash() throws Exception {
+        assertEquals("search matrix", send("GET", "/api/media/?title=matrix", true).body());
+    }
+
+    @Test
+    void testUnknownPathIsNotFound() throws Exception {
+        assertEquals(404, send("GET", "/api/unknown", true).statusCode());
+        assertEquals(404, send("GET", "/api/media/abc", true).statusCode(), "Non-numeric id should not match {id:int}");
+        assertEquals(404, send("GET", "/api/media/99999999999", true).statusCode(), "Too large id should not match {id:int}");
+        assertEquals(404, send("GET", "/api/media/1/unknown", true).statusCode());
+    }
+
+    @Test
+    void testWrongMethodIsNotAllowed() throws Exception {
+        HttpResponse<String> response = send("PUT", "/api/media/1/rate", true);
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(null));
+        assertEquals(405, send("PATCH", "/api/media/1", true).statusCode());
+    }
+
+    @Test
+    void testAuthentication() throws Exception {
+        assertEquals(401, send("GET", "/api/media/1", false).statusCode());
+        assertEquals(200, send("POST", "/api/users/login", false).statusCode(), "Public routes need no token");
+
+        HttpRequest invalidToken = HttpRequest.newBuilder(uri("/api/media/1"))
+                .header("Authorization", "Bearer bob-mrpToken").GET().build();
+        assertEquals(401, client.send(invalidToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void testPublicRouteReadsOwnWritesWithToken() throws Exception {
+        assertEquals(200, send("POST", "/api/media/1/rate", true).statusCode());
+
+        assertEquals("primary true", send("GET", "/api/leaderboard", true).body());
+        assertEquals("primary false", send("GET", "/api/leaderboard", false).body());
+    }
+
+    @Test
+    void testReadOnlyRouteIsNotRecordedAsWrite() throws Exception {
+        // carol only writes in this test, the writes of alice in other tests do not interfere
+        HttpRequest login = HttpRequest.newBuilder(uri("/api/users/login"))
+                .header("Authorization", "Bearer carol-mrpToken").POST(HttpRequest.BodyPublishers.ofString("{}")).build();
+        assertEquals(200, client.send(login, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest leaderboard = HttpRequest.newBuilder(uri("/api/leaderboard"))
+                .header("Authorization", "Bearer carol-mrpToken").GET().build();
+        assertEquals("primary false", client.send(leaderboard, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    @Test
+    void testHandlerExceptionIsInternalServerError() throws Exception {
+        assertEquals(500, send("GET", "/api/fail", true).statusCode());
+    }
+
+    @Test
+    void testExceededDeadlineIsGatewayTimeout() throws Exception {
+        HttpResponse<String> response = send("GET", "/api/slow", true);
+        assertEquals(504, response.statusCode());
+        assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    @Test
+    void testStreamedRouteExceedingDeadlineIsGatewayTimeout() throws Exception {
+        HttpResponse<String> response = send("GET", "/api/stream/slow", true);
+        assertEquals(504, response.statusCode());
+        assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(response.body().contains("Request took too long"));
+    }
+
+    @Test
+    void testExhaustedPoolIsServiceUnavailable() throws Exception {
+        HttpResponse<String> response = send("GET", "/api/busy", true);
+        assertEquals(503, response.statusCode());
+        assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    @Test
+    void testFailedStreamIsAbortedAndRecordedAsError() {
+        long errors = Metrics.getInstance().route("GET", "/api/stream").getStatusCount(500);
+
+        assertThrows(IOException.class, () -> send("GET", "/api/stream", true));
+        assertEquals(errors + 1, Metrics.getInstance().route("GET", "/api/stream").getStatusCount(500));
+        assertEquals(0, Metrics.getInstance().route("GET", "/api/stream").getStatusCount(200));
+    }
+
+    @Test
+    void testDuplicateRouteIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> router.add(Method.GET, "/api/media/{id:int}", request -> ok("again")));
+        assertThrows(IllegalArgumentException.class,
+                () -> router.add(Method.PUT, "/api/media/{mediaId}", request -> ok("conflict")));
+    }
+
+    @Test
+    void testMatchingETagIsNotModifiedWithoutCallingHandler() throws Exception {
+        HttpResponse<String> first = send("GET", "/api/versioned/3", false);
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        assertEquals("W/\"3-1\"", etag);
+        assertEquals("public, max-age=10", first.headers().firstValue("Cache-Control").orElse(null));
+        assertEquals(1, handlerCalls.get());
+
+        HttpResponse<String> second = client.send(HttpRequest.newBuilder(uri("/api/versioned/3"))
+                .header("If-None-Match", "\"other\", " + etag).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, second.statusCode());
+        assertEquals("", second.body());
+        assertEquals(etag, second.headers().firstValue("ETag").orElse(null));
+        assertEquals(1, handlerCalls.get(), "A 304 should not call the route handler");
+
+        version.incrementAndGet();
+        HttpResponse<String> changed = client.send(HttpRequest.newBuilder(uri("/api/versioned/3"))
+                .header("If-None-Match", etag).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, changed.statusCode());
+        assertEquals("versioned 3", changed.body());
+        assertEquals("W/\"3-2\"", changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    @Test
+    void testRoutesWithoutCachePolicyAreNotCached() throws Exception {
+        HttpResponse<String> response = send("GET", "/api/media/1", true);
+        assertEquals("no-cache", response.headers().firstValue("Cache-Control").orElse(null));
+        assertTrue(response.headers().firstValue("ETag").isEmpty());
+    }
+
+    @Test
+    void testETagMatching() {
+        assertTrue(CachePolicy.matches("W/\"a\"", "W/\"a\""));
+        assertTrue(CachePolicy.matches("\"a\"", "W/\"a\""), "GET compares ETags weakly");
+        assertTrue(CachePolicy.matches("*", "W/\"a\""));
+        assertFalse(CachePolicy.matches("W/\"b\"", "W/\"a\""));
+        assertFalse(CachePolicy.matches(null, "W/\"a\""));
+        assertFalse(CachePolicy.matches("*", null), "Routes without version are never matched");
+    }
+
+    @Test
+    void testRequestPathParts() {
+        Request request = new Request(URI.create("http://localhost/api//media/5/"));
+        assertEquals(java.util.List.of("api", "media", "5"), request.getPathParts());
+    }
+
+    private HttpResponse<String> send(String method, String path, boolean authenticated) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .method(method, HttpRequest.BodyPublishers.ofString("{}"));
+        if (authenticated) builder.header("Authorization", "Bearer alice-mrpToken");
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private static Response ok(String content) {
+        return new Response(HttpStatus.OK, ContentType.PLAIN_TEXT, content);
+    }
+}
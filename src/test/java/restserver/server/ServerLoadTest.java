@@ -0,0 +1,109 @@
+package restserver.server;
+
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how many requests the executor modes handle at the same time. Handlers block on a
+ * latch instead of sleeping, so the checks do not depend on timing; the throughput is measured
+ * by Main.ServerThroughputBenchmark.
+ */
+class ServerLoadTest {
+
+    private static final int CLIENTS = 16;
+
+    private Server server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (server != null) server.stop(0);
+    }
+
+    @Test
+    void virtualThreadsHandleAllRequestsAtOnce() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(CLIENTS);
+        startServer(Server.ExecutorMode.VIRTUAL, 0, arrived);
+
+        List<Future<Integer>> responses = sendRequests(CLIENTS);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS), "Every request should be in flight at the same time");
+        release.countDown();
+
+        for (Future<Integer> response : responses) assertEquals(200, response.get());
+        assertEquals(CLIENTS, maxInFlight.get());
+    }
+
+    @Test
+    void platformPoolHandlesAtMostPoolSizeRequestsAtOnce() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(4);
+        startServer(Server.ExecutorMode.PLATFORM, 4, arrived);
+
+        List<Future<Integer>> responses = sendRequests(CLIENTS);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS), "The pool threads should all be busy");
+        release.countDown();
+
+        // the queue has room for the remaining requests, so the dispatcher never runs one itself
+        for (Future<Integer> response : responses) assertEquals(200, response.get());
+        assertEquals(4, maxInFlight.get());
+    }
+
+    private void startServer(Server.ExecutorMode mode, int poolSize, CountDownLatch arrived) throws Exception {
+        HttpHandler blockingHandler = exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            arrived.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "{}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        };
+        server = new Server(0, 128, mode, poolSize, 100);
+        server.start(Map.of("/api/blocking", blockingHandler));
+    }
+
+    /**
+     * Sends one request from each of the given number of concurrent clients.
+     */
+    private List<Future<Integer>> sendRequests(int clients) {
+        URI uri = URI.create("http://localhost:" + server.getPort() + "/api/blocking");
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Integer>> responses = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            responses.add(pool.submit(() -> {
+                HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+                int status = connection.getResponseCode();
+                try (InputStream in = connection.getInputStream()) {
+                    in.readAllBytes();
+                }
+                return status;
+            }));
+        }
+        pool.shutdown();
+        return responses;
+    }
+}
@@ -0,0 +1,124 @@
+package restserver.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import restserver.http.ContentType;
+import restserver.http.HttpStatus;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Server server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.stop(0);
+    }
+
+    @Test
+    void testJsonValueIsStreamedChunked() throws Exception {
+        List<Map<String, Object>> items = List.of(Map.of("id", 1, "title", "Matrix"), Map.of("id", 2, "title", "Ümlaut"));
+        HttpResponse<String> response = serve(StreamingResponse.json(HttpStatus.OK, objectMapper, items));
+
+        assertEquals(200, response.statusCode());
+        assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null));
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals(items, objectMapper.readValue(response.body(), List.class));
+    }
+
+    @Test
+    void testLargeBodyIsWrittenWithoutBuildingIt() throws Exception {
+        int count = 200_000;
+        // the rows are generated while writing, the body never exists as a whole on the server
+        StreamingResponse streaming = StreamingResponse.jsonStream(HttpStatus.OK, objectMapper, generator -> {
+            generator.writeStartArray();
+            for (int i = 0; i < count; i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", i);
+                generator.writeStringField("title", "Movie " + i);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        });
+
+        HttpResponse<String> response = serve(streaming);
+
+        assertEquals(200, response.statusCode());
+        assertEquals(count, objectMapper.readValue(response.body(), List.class).size());
+    }
+
+    @Test
+    void testFailingWriterAbortsTheTransfer() {
+        StreamingResponse streaming = StreamingResponse.jsonStream(HttpStatus.OK, objectMapper, generator -> {
+            generator.writeStartArray();
+            for (int i = 0; i < 5000; i++) {
+                generator.writeNumber(i);
+            }
+            throw new IllegalStateException("query failed");
+        });
+
+        // a complete array would hide the missing rows, the client must see a broken transfer
+        assertThrows(IOException.class, () -> serve(streaming));
+    }
+
+    @Test
+    void testStalledClientTimesOut() throws Exception {
+        long originalTimeout = WriteTimeoutStream.timeoutMillis;
+        WriteTimeoutStream.timeoutMillis = 200;
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        StreamingResponse streaming = new StreamingResponse(HttpStatus.OK, ContentType.JSON, out -> {
+            byte[] chunk = new byte[64 * 1024];
+            for (int i = 0; i < 2048; i++) out.write(chunk);
+            out.close();
+        });
+        server = new Server(0, 128, Server.ExecutorMode.VIRTUAL, 0, 0);
+        server.start(Map.of("/", exchange -> {
+            try {
+                streaming.send(exchange);
+                failure.complete(null);
+            } catch (RuntimeException e) {
+                failure.complete(e);
+                throw e;
+            }
+        }));
+
+        // the client sends its request and never reads the 128 MB response
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            socket.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            Throwable error = failure.get(10, TimeUnit.SECONDS);
+            assertNotNull(error, "The write to a stalled client should fail");
+            assertInstanceOf(IOException.class, error.getCause());
+        } finally {
+            WriteTimeoutStream.timeoutMillis = originalTimeout;
+        }
+    }
+
+    @Test
+    void testGetContentRendersBody() {
+        StreamingResponse response = StreamingResponse.json(HttpStatus.OK, objectMapper, List.of("a", "b"));
+        assertEquals("[\"a\",\"b\"]", response.getContent());
+        assertEquals(200, response.getStatus());
+    }
+
+    private HttpResponse<String> serve(Response response) throws Exception {
+        server = new Server(0, 128, Server.ExecutorMode.VIRTUAL, 0, 0);
+        server.start(Map.of("/", exchange -> response.send(exchange)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/")).GET().build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -11,8 +11,11 @@ import restserver.http.ContentType;
 import restserver.http.HttpStatus;
 import restserver.server.Response;
 import service.ILeaderboardService;
+import persistence.IUserRepository;
+
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import static org.mockito.Mockito.*;
 
 class LeaderboardServiceTest {
@@ -64,4 +67,37 @@ class LeaderboardServiceTest {
 
         verify(leaderboardService, times(1)).getLeaderboard();
     }
+
+    @Test
+    void testGetLeaderboardWithPagingParameters() {
+        Profile user3 = new Profile(3, "carol", 2, 4.0, "drama", "carol@gmail.com");
+        when(leaderboardService.getLeaderboard(10, 20)).thenReturn(List.of(user3));
+
+        Response response = leaderboardController.getLeaderboard(Map.of("limit", "10", "offset", "20"));
+
+        assertEquals(HttpStatus.OK.code, response.getStatus());
+        assertTrue(response.getContent().contains("carol"));
+        verify(leaderboardService, times(1)).getLeaderboard(10, 20);
+    }
+
+    @Test
+    void testGetLeaderboardWithInvalidPagingParameters() {
+        Response response = leaderboardController.getLeaderboard(Map.of("limit", "ten"));
+
+        assertEquals(HttpStatus.BAD_REQUEST.code, response.getStatus());
+        verifyNoInteractions(leaderboardService);
+    }
+
+    @Test
+    void testServiceClampsPagingParameters() {
+        IUserRepository userRepository = mock(IUserRepository.class);
+        LeaderboardService service = LeaderboardService.getInstance(userRepository);
+
+        service.getLeaderboard();
+        service.getLeaderboard(-5, -1);
+        service.getLeaderboard(100_000, 40);
+
+        verify(userRepository, times(2)).getLeaderboard(LeaderboardService.DEFAULT_LIMIT, 0);
+        verify(userRepository).getLeaderboard(LeaderboardService.MAX_LIMIT, 40);
+    }
 }
@@ -1,11 +1,21 @@
 package service;
 
+import dto.ImportErrorDTO;
+import dto.ImportResultDTO;
+import dto.PageDTO;
 import model.MediaEntry;
 import model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import persistence.ExportFormat;
 import persistence.IMediaEntryRepository;
+import persistence.MediaEntryCursor;
+import persistence.RowSink;
+import persistence.RowStream;
+import persistence.WriteResult;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -81,7 +91,6 @@ class MediaEntryServiceTest {
         updated.setReleaseYear(2024);
         updated.setAgeRestriction(12);
 
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
         when(repository.updateMediaEntry(
                 eq(1),
                 anyString(),
@@ -91,11 +100,13 @@ class MediaEntryServiceTest {
                 anyInt(),
                 anyInt(),
                 anyInt()
-        )).thenReturn(true);
+        )).thenReturn(WriteResult.OK);
 
-        boolean result = service.editMediaEntry(1, updated, user);
+        WriteResult result = service.editMediaEntry(1, updated, user);
 
-        assertTrue(result, "Creator should be able to edit MediaEntry");
+        assertEquals(WriteResult.OK, result, "Creator should be able to edit MediaEntry");
+        verify(repository).updateMediaEntry(1, "Updated Title", "Updated Description", "movie", List.of("Action"), 2024, 12, 1);
+        verify(repository, never()).getMediaEntryByID(anyInt());
     }
 
     @Test
@@ -105,109 +116,106 @@ class MediaEntryServiceTest {
         User otherUser = new User();
         otherUser.setUserid(2);
 
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
+        when(repository.updateMediaEntry(eq(1), any(), any(), any(), any(), anyInt(), anyInt(), eq(2)))
+                .thenReturn(WriteResult.FORBIDDEN);
 
-        boolean result = service.editMediaEntry(1, updated, otherUser);
+        WriteResult result = service.editMediaEntry(1, updated, otherUser);
 
-        assertFalse(result, "Non-creator should not be able to edit MediaEntry");
+        assertEquals(WriteResult.FORBIDDEN, result, "Non-creator should not be able to edit MediaEntry");
     }
 
     @Test
     void testEditMediaEntryNonExistentId() {
-        when(repository.getMediaEntryByID(99)).thenReturn(null);
-        boolean result = service.editMediaEntry(99, mediaEntry, user);
-        assertFalse(result, "Editing non-existent media entry should fail");
+        when(repository.updateMediaEntry(eq(99), any(), any(), any(), any(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(WriteResult.NOT_FOUND);
+        WriteResult result = service.editMediaEntry(99, mediaEntry, user);
+        assertEquals(WriteResult.NOT_FOUND, result, "Editing non-existent media entry should fail");
     }
 
     @Test
     void testEditMediaEntryNullUser() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        boolean result = service.editMediaEntry(1, mediaEntry, null);
-        assertFalse(result, "Editing with null user should fail");
+        WriteResult result = service.editMediaEntry(1, mediaEntry, null);
+        assertEquals(WriteResult.FORBIDDEN, result, "Editing with null user should fail");
+        verifyNoInteractions(repository);
     }
 
     @Test
     void testEditMediaEntryRepositoryFailure() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        when(repository.updateMediaEntry(
-                anyInt(), anyString(), anyString(), anyString(), anyList(), anyInt(), anyInt(), anyInt()))
-                .thenReturn(false);
+        when(repository.updateMediaEntry(anyInt(), any(), any(), any(), any(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(WriteResult.FAILED);
 
-        boolean result = service.editMediaEntry(1, mediaEntry, user);
-        assertFalse(result, "Repository update failure should return false");
+        WriteResult result = service.editMediaEntry(1, mediaEntry, user);
+        assertEquals(WriteResult.FAILED, result, "Repository update failure should be reported");
     }
 
     @Test
     void testDeleteMediaEntry() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        when(repository.deleteMediaEntry(1)).thenReturn(true);
+        when(repository.deleteMediaEntry(1, 1)).thenReturn(WriteResult.OK);
 
-        boolean result = service.deleteMediaEntry(1, user);
+        WriteResult result = service.deleteMediaEntry(1, user);
 
-        assertTrue(result, "Creator should be able to delete MediaEntry");
-        verify(repository).deleteMediaEntry(1);
+        assertEquals(WriteResult.OK, result, "Creator should be able to delete MediaEntry");
+        verify(repository).deleteMediaEntry(1, 1);
+        verify(repository, never()).getMediaEntryByID(anyInt());
     }
 
     @Test
     void testDeleteMediaEntryNonExistent() {
-        when(repository.getMediaEntryByID(99)).thenReturn(null);
-        boolean result = service.deleteMediaEntry(99, user);
-        assertFalse(result, "Deleting non-existent media entry should fail");
+        when(repository.deleteMediaEntry(99, 1)).thenReturn(WriteResult.NOT_FOUND);
+        WriteResult result = service.deleteMediaEntry(99, user);
+        assertEquals(WriteResult.NOT_FOUND, result, "Deleting non-existent media entry should fail");
     }
 
     @Test
     void testDeleteMediaEntryNonCreator() {
         User otherUser = new User();
         otherUser.setUserid(2);
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
+        when(repository.deleteMediaEntry(1, 2)).thenReturn(WriteResult.FORBIDDEN);
 
-        boolean result = service.deleteMediaEntry(1, otherUser);
-        assertFalse(result, "Non-creator should not be able to delete");
+        WriteResult result = service.deleteMediaEntry(1, otherUser);
+        assertEquals(WriteResult.FORBIDDEN, result, "Non-creator should not be able to delete");
     }
 
     @Test
     void testDeleteMediaEntryRepositoryFailure() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        when(repository.deleteMediaEntry(1)).thenReturn(false);
+        when(repository.deleteMediaEntry(1, 1)).thenReturn(WriteResult.FAILED);
 
-        boolean result = service.deleteMediaEntry(1, user);
-        assertFalse(result, "Repository failure should result in false");
+        WriteResult result = service.deleteMediaEntry(1, user);
+        assertEquals(WriteResult.FAILED, result, "Repository failure should be reported");
     }
 
     @Test
     void testFavoriteAndUnFavoriteMediaEntry() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        when(repository.setFavoriteStatus(user.getUserid(), 1)).thenReturn(true);
-        when(repository.setUnFavoriteStatus(user.getUserid(), 1)).thenReturn(true);
+        when(repository.setFavoriteStatus(user.getUserid(), 1)).thenReturn(WriteResult.OK);
+        when(repository.setUnFavoriteStatus(user.getUserid(), 1)).thenReturn(WriteResult.OK);
 
-        boolean favResult = service.favoriteMediaEntry(1, user);
-        boolean unfavResult = service.unFavoriteMediaEntry(1, user);
+        WriteResult favResult = service.favoriteMediaEntry(1, user);
+        WriteResult unfavResult = service.unFavoriteMediaEntry(1, user);
 
-        assertTrue(favResult, "MediaEntry should be favorited successfully");
-        assertTrue(unfavResult, "MediaEntry should be unfavorited successfully");
+        assertEquals(WriteResult.OK, favResult, "MediaEntry should be favorited successfully");
+        assertEquals(WriteResult.OK, unfavResult, "MediaEntry should be unfavorited successfully");
+        verify(repository, never()).getMediaEntryByID(anyInt());
     }
 
     @Test
     void testFavoriteNonExistentMedia() {
-        when(repository.getMediaEntryByID(99)).thenReturn(null);
-        boolean result = service.favoriteMediaEntry(99, user);
-        assertFalse(result, "Favoriting non-existent media should fail");
+        when(repository.setFavoriteStatus(user.getUserid(), 99)).thenReturn(WriteResult.NOT_FOUND);
+        WriteResult result = service.favoriteMediaEntry(99, user);
+        assertEquals(WriteResult.NOT_FOUND, result, "Favoriting non-existent media should fail");
     }
 
     @Test
     void testFavoriteNullUser() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        boolean result = service.favoriteMediaEntry(1, null);
-        assertFalse(result, "Favoriting with null user should fail");
+        WriteResult result = service.favoriteMediaEntry(1, null);
+        assertEquals(WriteResult.FORBIDDEN, result, "Favoriting with null user should fail");
     }
 
     @Test
     void testFavoriteRepositoryFailure() {
-        when(repository.getMediaEntryByID(1)).thenReturn(mediaEntry);
-        when(repository.setFavoriteStatus(user.getUserid(), 1)).thenReturn(false);
+        when(repository.setFavoriteStatus(user.getUserid(), 1)).thenReturn(WriteResult.FAILED);
 
-        boolean result = service.favoriteMediaEntry(1, user);
-        assertFalse(result, "Repository failure should result in false");
+        WriteResult result = service.favoriteMediaEntry(1, user);
+        assertEquals(WriteResult.FAILED, result, "Repository failure should be reported");
     }
 
     @Test
@@ -273,4 +281,148 @@ class MediaEntryServiceTest {
         assertTrue(contentRec == null || contentRec.isEmpty(), "Null user should result in empty content recommendations");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFullSearchPassesMinRatingToRepository() {
+        when(repository.fullSearchAndFilterMediaEntries(Map.of("mediaType", "movie", "minRating", 4), "score"))
+                .thenReturn(List.of(mediaEntry));
+
+        List<MediaEntry> result = service.fullSearchAndFilterMediaEntries(null, null, "movie", -1, -1, 4, "score");
+
+        // the repository filters by rating, the result is not filtered again
+        assertEquals(List.of(mediaEntry), result);
+        verify(repository).fullSearchAndFilterMediaEntries(Map.of("mediaType", "movie", "minRating", 4), "score");
+    }
+
+    @Test
+    void testFullSearchWithoutMinRating() {
+        service.fullSearchAndFilterMediaEntries("Test", null, null, 2023, -1, -1, null);
+
+        verify(repository).fullSearchAndFilterMediaEntries(Map.of("title", "Test", "releaseYear", 2023), null);
+    }
+
+    @Test
+    void testStreamSearchWritesRowsFromRepository() throws Exception {
+        doAnswer(invocation -> {
+            RowSink<MediaEntry> sink = invocation.getArgument(2);
+            sink.accept(mediaEntry);
+            return null;
+        }).when(repository).streamSearchAndFilterMediaEntries(eq(Map.of("genre", "Action", "minRating", 2)), eq("year"), any());
+
+        RowStream<MediaEntry> rows = service.streamSearchAndFilterMediaEntries(null, "Action", null, -1, -1, 2, "year");
+        List<MediaEntry> result = new ArrayList<>();
+        rows.forEach(result::add);
+
+        assertEquals(List.of(mediaEntry), result);
+    }
+
+    @Test
+    void testStreamSearchRejectsUnknownSortWithoutQuery() throws Exception {
+        assertNull(service.streamSearchAndFilterMediaEntries(null, null, null, -1, -1, -1, "stars"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testImportSkipsInvalidRowsAndSetsCreator() throws Exception {
+        List<MediaEntry> imported = new ArrayList<>();
+        when(repository.importMediaEntries(any())).thenAnswer(invocation -> {
+            RowStream<MediaEntry> rows = invocation.getArgument(0);
+            rows.forEach(imported::add);
+            return imported.size();
+        });
+        MediaEntry untitled = new MediaEntry();
+        MediaEntry badGenre = new MediaEntry("Title", null, "movie", 2000, List.of(""), 0, 0);
+
+        ImportResultDTO result = service.importMediaEntries(
+                sink -> {
+                    sink.accept(mediaEntry);
+                    sink.accept(untitled);
+                    sink.accept(null);
+                    sink.accept(badGenre);
+                }, user);
+
+        assertEquals(List.of(mediaEntry), imported);
+        assertEquals(user.getUserid(), imported.get(0).getCreatorId());
+        assertEquals(1, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(List.of(2, 3, 4), result.getErrors().stream().map(ImportErrorDTO::getRow).toList());
+    }
+
+    @Test
+    void testImportWithoutUserOrFailedImport() throws Exception {
+        assertNull(service.importMediaEntries(sink -> sink.accept(mediaEntry), null));
+        verifyNoInteractions(repository);
+
+        when(repository.importMediaEntries(any())).thenReturn(-1);
+        assertNull(service.importMediaEntries(sink -> sink.accept(mediaEntry), user));
+    }
+
+    @Test
+    void testValidateImport() {
+        assertNull(MediaEntryService.validateImport(mediaEntry));
+        assertNotNull(MediaEntryService.validateImport(new MediaEntry(" ", null, null, 0, List.of(), 0, 0)));
+        assertNotNull(MediaEntryService.validateImport(new MediaEntry("x".repeat(256), null, null, 0, List.of(), 0, 0)));
+        assertNotNull(MediaEntryService.validateImport(new MediaEntry("Title", "a\0b", null, 0, List.of(), 0, 0)));
+        assertNotNull(MediaEntryService.validateImport(new MediaEntry("Title", null, null, -1, List.of(), 0, 0)));
+    }
+
+    @Test
+    void testExportPassesFiltersAndFormat() throws Exception {
+        OutputStream out = new ByteArrayOutputStream();
+        when(repository.exportMediaEntries(Map.of("genre", "Action", "minRating", 3), ExportFormat.CSV, out)).thenReturn(7L);
+
+        long rows = service.exportMediaEntries(null, "Action", "", -1, -1, 3, ExportFormat.parse("csv"), out);
+
+        assertEquals(7L, rows);
+        assertThrows(IllegalArgumentException.class, () -> ExportFormat.parse("xml"));
+    }
+
+    @Test
+    void testSearchPageFirstPage() {
+        PageDTO<MediaEntry> page = new PageDTO<>(List.of(mediaEntry), "cursor");
+        when(repository.searchMediaEntriesPage(Map.of("genre", "Action"), "title", null, 10)).thenReturn(page);
+
+        PageDTO<MediaEntry> result = service.searchMediaEntriesPage(null, "Action", null, -1, -1, -1, "title", null, 10);
+
+        assertSame(page, result);
+    }
+
+    @Test
+    void testSearchPagePassesCursorAndMinRating() {
+        String after = new MediaEntryCursor("score", "3.5", 7).encode();
+        when(repository.searchMediaEntriesPage(any(), any(), any(), anyInt())).thenReturn(new PageDTO<>(List.of(), null));
+
+        service.searchMediaEntriesPage(null, null, null, -1, -1, 3, "score", after, 10);
+
+        verify(repository).searchMediaEntriesPage(Map.of("minRating", 3), "score", new MediaEntryCursor("score", "3.5", 7), 10);
+    }
+
+    @Test
+    void testSearchPageClampsLimit() {
+        service.searchMediaEntriesPage(null, null, null, -1, -1, -1, null, null, 0);
+        service.searchMediaEntriesPage(null, null, null, -1, -1, -1, null, null, 100000);
+
+        verify(repository).searchMediaEntriesPage(Map.of(), null, null, MediaEntryService.DEFAULT_PAGE_SIZE);
+        verify(repository).searchMediaEntriesPage(Map.of(), null, null, MediaEntryService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    void testSearchPageRejectsInvalidCursor() {
+        String yearCursor = new MediaEntryCursor("year", "2020", 7).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.searchMediaEntriesPage(null, null, null, -1, -1, -1, "title", "not a cursor", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.searchMediaEntriesPage(null, null, null, -1, -1, -1, "title", yearCursor, 10),
+                "A cursor of another sort order should be rejected");
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        MediaEntryCursor cursor = new MediaEntryCursor("title", "Star Wars | Episode IV", 42);
+        assertEquals(cursor, MediaEntryCursor.decode(cursor.encode()));
+        assertThrows(IllegalArgumentException.class,
+                () -> MediaEntryCursor.decode(new MediaEntryCursor("score", "abc", 1).encode()));
+    }
+}
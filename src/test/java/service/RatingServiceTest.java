@@ -1,7 +1,6 @@
 package service;
 
 import dto.RatingHistoryDTO;
-import model.Rating;
 import model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,10 +8,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import persistence.IRatingRepository;
+import persistence.RowSink;
+import persistence.WriteResult;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,114 +44,107 @@ class RatingServiceTest {
     }
 
     @Test
-    void rateMediaEntry_valid_shouldReturnTrue() {
-        when(ratingRepository.rateMediaEntry(1, 5, "Great", user)).thenReturn(true);
-        boolean result = ratingService.rateMediaEntry(1, 5, "Great", user);
-        assertTrue(result);
+    void rateMediaEntry_valid_shouldReturnOk() {
+        when(ratingRepository.rateMediaEntry(1, 5, "Great", user)).thenReturn(WriteResult.OK);
+        assertEquals(WriteResult.OK, ratingService.rateMediaEntry(1, 5, "Great", user));
     }
 
     @Test
     void rateMediaEntry_invalidStars_shouldFail() {
-        boolean result = ratingService.rateMediaEntry(1, 6, "Bad", user);
-        assertFalse(result);
+        assertEquals(WriteResult.INVALID, ratingService.rateMediaEntry(1, 6, "Bad", user));
+        verifyNoInteractions(ratingRepository);
     }
 
     @Test
     void rateMediaEntry_nullUser_shouldFail() {
-        boolean result = ratingService.rateMediaEntry(1, 4, "Nice", null);
-        assertFalse(result);
+        assertEquals(WriteResult.FORBIDDEN, ratingService.rateMediaEntry(1, 4, "Nice", null));
+    }
+
+    @Test
+    void rateMediaEntry_alreadyRated_shouldReturnDuplicate() {
+        when(ratingRepository.rateMediaEntry(1, 4, "Again", user)).thenReturn(WriteResult.DUPLICATE);
+        assertEquals(WriteResult.DUPLICATE, ratingService.rateMediaEntry(1, 4, "Again", user));
     }
 
     @Test
     void updateRating_byCreator_shouldSucceed() {
-        when(ratingRepository.updateRating(1, 4, "Updated", user)).thenReturn(true);
-        boolean result = ratingService.updateRating(1, 4, "Updated", user);
-        assertTrue(result);
+        when(ratingRepository.updateRating(1, 4, "Updated", user)).thenReturn(WriteResult.OK);
+        assertEquals(WriteResult.OK, ratingService.updateRating(1, 4, "Updated", user));
     }
 
     @Test
     void updateRating_invalidStars_shouldFail() {
-        assertFalse(ratingService.updateRating(1, 0, "Bad", user));
-        assertFalse(ratingService.updateRating(1, 6, "Bad", user));
+        assertEquals(WriteResult.INVALID, ratingService.updateRating(1, 0, "Bad", user));
+        assertEquals(WriteResult.INVALID, ratingService.updateRating(1, 6, "Bad", user));
     }
 
     @Test
     void updateRating_nullUser_shouldFail() {
-        assertFalse(ratingService.updateRating(1, 3, "Update", null));
+        assertEquals(WriteResult.FORBIDDEN, ratingService.updateRating(1, 3, "Update", null));
     }
 
     @Test
     void deleteRating_creator_shouldSucceed() {
-        Rating rating = new Rating();
-        rating.setCreator(user.getUserid());
-        when(ratingRepository.getRatingById(1)).thenReturn(rating);
-        when(ratingRepository.deleteRating(1)).thenReturn(true);
-        assertTrue(ratingService.deleteRating(1, user));
+        when(ratingRepository.deleteRating(1, user)).thenReturn(WriteResult.OK);
+        assertEquals(WriteResult.OK, ratingService.deleteRating(1, user));
     }
 
     @Test
     void deleteRating_notCreator_shouldFail() {
-        Rating rating = new Rating();
-        rating.setCreator(2); // anderer User
-        when(ratingRepository.getRatingById(1)).thenReturn(rating);
-        assertFalse(ratingService.deleteRating(1, user));
+        when(ratingRepository.deleteRating(1, user)).thenReturn(WriteResult.FORBIDDEN);
+        assertEquals(WriteResult.FORBIDDEN, ratingService.deleteRating(1, user));
     }
 
     @Test
     void deleteRating_nullUser_shouldFail() {
-        assertFalse(ratingService.deleteRating(1, null));
+        assertEquals(WriteResult.FORBIDDEN, ratingService.deleteRating(1, null));
+        verifyNoInteractions(ratingRepository);
     }
 
     @Test
     void deleteRating_nonExistingRating_shouldFail() {
-        when(ratingRepository.getRatingById(1)).thenReturn(null);
-        assertFalse(ratingService.deleteRating(1, user));
+        when(ratingRepository.deleteRating(1, user)).thenReturn(WriteResult.NOT_FOUND);
+        assertEquals(WriteResult.NOT_FOUND, ratingService.deleteRating(1, user));
     }
 
     @Test
-    void likeRating_valid_shouldReturnTrue() {
-        when(ratingRepository.hasUserLikedRating(1, user.getUserid())).thenReturn(false);
-        when(ratingRepository.likeRating(1, user)).thenReturn(true);
-        assertTrue(ratingService.likeRating(1, user));
+    void likeRating_valid_shouldReturnOk() {
+        when(ratingRepository.likeRating(1, user)).thenReturn(WriteResult.OK);
+        assertEquals(WriteResult.OK, ratingService.likeRating(1, user));
     }
 
     @Test
     void likeRating_alreadyLiked_shouldFail() {
-        when(ratingRepository.hasUserLikedRating(1, user.getUserid())).thenReturn(true);
-        assertFalse(ratingService.likeRating(1, user));
+        when(ratingRepository.likeRating(1, user)).thenReturn(WriteResult.DUPLICATE);
+        assertEquals(WriteResult.DUPLICATE, ratingService.likeRating(1, user));
     }
 
     @Test
     void likeRating_nullUser_shouldFail() {
-        assertFalse(ratingService.likeRating(1, null));
+        assertEquals(WriteResult.FORBIDDEN, ratingService.likeRating(1, null));
     }
 
     @Test
     void confirmRatingComment_creator_shouldSucceed() {
-        Rating rating = new Rating();
-        rating.setCreator(user.getUserid());
-        when(ratingRepository.getRatingById(1)).thenReturn(rating);
-        when(ratingRepository.confirmRatingComment(1)).thenReturn(true);
-        assertTrue(ratingService.confirmRatingComment(1, user));
+        when(ratingRepository.confirmRatingComment(1, user)).thenReturn(WriteResult.OK);
+        assertEquals(WriteResult.OK, ratingService.confirmRatingComment(1, user));
     }
 
     @Test
     void confirmRatingComment_notCreator_shouldFail() {
-        Rating rating = new Rating();
-        rating.setCreator(2); // anderer User
-        when(ratingRepository.getRatingById(1)).thenReturn(rating);
-        assertFalse(ratingService.confirmRatingComment(1, user));
+        when(ratingRepository.confirmRatingComment(1, user)).thenReturn(WriteResult.FORBIDDEN);
+        assertEquals(WriteResult.FORBIDDEN, ratingService.confirmRatingComment(1, user));
     }
 
     @Test
     void confirmRatingComment_nullUser_shouldFail() {
-        assertFalse(ratingService.confirmRatingComment(1, null));
+        assertEquals(WriteResult.FORBIDDEN, ratingService.confirmRatingComment(1, null));
     }
 
     @Test
     void confirmRatingComment_nonExistingRating_shouldFail() {
-        when(ratingRepository.getRatingById(1)).thenReturn(null);
-        assertFalse(ratingService.confirmRatingComment(1, user));
+        when(ratingRepository.confirmRatingComment(1, user)).thenReturn(WriteResult.NOT_FOUND);
+        assertEquals(WriteResult.NOT_FOUND, ratingService.confirmRatingComment(1, user));
     }
 
     @Test
@@ -168,4 +167,24 @@ class RatingServiceTest {
     void getRatingHistory_nullUser_shouldFail() {
         assertNull(ratingService.getRatingHistory(1, null));
     }
+
+    @Test
+    void streamRatingHistory_self_shouldStreamRows() throws Exception {
+        RatingHistoryDTO entry = new RatingHistoryDTO();
+        doAnswer(invocation -> {
+            RowSink<RatingHistoryDTO> sink = invocation.getArgument(1);
+            sink.accept(entry);
+            return null;
+        }).when(ratingRepository).streamRatingHistory(eq(1), any());
+
+        List<RatingHistoryDTO> result = new ArrayList<>();
+        ratingService.streamRatingHistory(1, user).forEach(result::add);
+        assertEquals(List.of(entry), result);
+    }
+
+    @Test
+    void streamRatingHistory_otherUser_shouldFail() {
+        assertNull(ratingService.streamRatingHistory(2, user));
+        assertNull(ratingService.streamRatingHistory(1, null));
+    }
 }
@@ -0,0 +1,180 @@
+package service;
+
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenStoreTest {
+
+    private AtomicLong now;
+    private TokenStore tokenStore;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        tokenStore = new TokenStore(Duration.ofMinutes(60), Duration.ofMinutes(10), 3, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenStore.close();
+    }
+
+    @Test
+    void testPutAndGet() {
+        User user = new User("alice", "pw");
+        tokenStore.put("alice-mrpToken", user);
+
+        assertSame(user, tokenStore.get("alice-mrpToken"));
+        assertNull(tokenStore.get("unknown-mrpToken"));
+        assertNull(tokenStore.get(null));
+        assertEquals(1, tokenStore.getLiveSessions());
+    }
+
+    @Test
+    void testIdleSessionExpires() {
+        tokenStore.put("alice-mrpToken", new User("alice", "pw"));
+
+        now.addAndGet(Duration.ofMinutes(9).toNanos());
+        assertNotNull(tokenStore.get("alice-mrpToken"), "Used session should stay alive");
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertNull(tokenStore.get("alice-mrpToken"), "Idle session should expire");
+        assertEquals(0, tokenStore.getLiveSessions());
+        assertEquals(1, tokenStore.getEvictions());
+    }
+
+    @Test
+    void testSessionExpiresAfterTtlEvenWhenUsed() {
+        tokenStore.put("alice-mrpToken", new User("alice", "pw"));
+
+        for (int i = 0; i < 7; i++) {
+            now.addAndGet(Duration.ofMinutes(9).toNanos());
+            tokenStore.get("alice-mrpToken");
+        }
+        assertNull(tokenStore.get("alice-mrpToken"), "Session should expire after its time to live");
+    }
+
+    @Test
+    void testSweepRemovesExpiredSessions() {
+        tokenStore.put("alice-mrpToken", new User("alice", "pw"));
+        tokenStore.put("bob-mrpToken", new User("bob", "pw"));
+        now.addAndGet(Duration.ofMinutes(5).toNanos());
+        tokenStore.put("carol-mrpToken", new User("carol", "pw"));
+
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals(2, tokenStore.sweep());
+        assertEquals(1, tokenStore.getLiveSessions());
+    }
+
+    @Test
+    void testStoreIsBoundedAndEvictsLeastRecentlyUsed() {
+        tokenStore.put("a", new User("a", "pw"));
+        now.incrementAndGet();
+        tokenStore.put("b", new User("b", "pw"));
+        now.incrementAndGet();
+        tokenStore.put("c", new User("c", "pw"));
+        now.incrementAndGet();
+        tokenStore.get("a");
+
+        tokenStore.put("d", new User("d", "pw"));
+
+        assertEquals(3, tokenStore.getLiveSessions());
+        assertNull(tokenStore.get("b"), "Least recently used session should be evicted");
+        assertNotNull(tokenStore.get("a"));
+        assertEquals(1, tokenStore.getEvictions());
+    }
+
+    @Test
+    void testExpiredSessionIsEvictedBeforeUsedOnes() {
+        tokenStore.put("a", new User("a", "pw"));
+        now.addAndGet(Duration.ofMinutes(5).toNanos());
+        tokenStore.put("b", new User("b", "pw"));
+        tokenStore.put("c", new User("c", "pw"));
+        now.addAndGet(Duration.ofMinutes(6).toNanos());
+        tokenStore.get("b");
+        tokenStore.get("c");
+
+        tokenStore.put("d", new User("d", "pw"));
+
+        assertEquals(3, tokenStore.getLiveSessions());
+        assertNotNull(tokenStore.get("b"));
+        assertNotNull(tokenStore.get("c"));
+        assertNotNull(tokenStore.get("d"));
+    }
+
+    @Test
+    void testBoundHoldsForConcurrentLogins() throws Exception {
+        TokenStore store = new TokenStore(Duration.ofMinutes(60), Duration.ofMinutes(10), 50, System::nanoTime);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    int maxLive = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        String token = "user" + thread + "-" + i;
+                        store.put(token, new User(token, "pw"));
+                        maxLive = Math.max(maxLive, store.getLiveSessions());
+                    }
+                    return maxLive;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertTrue(future.get() <= 50, "The store should never hold more than maxSessions");
+            }
+            assertEquals(50, store.getLiveSessions());
+            assertEquals(8000 - 50, store.getEvictions());
+        } finally {
+            pool.shutdownNow();
+            store.close();
+        }
+    }
+
+    @Test
+    void testLookupMetrics() {
+        tokenStore.put("a", new User("a", "pw"));
+        tokenStore.get("a");
+        tokenStore.get("x");
+
+        assertEquals(2, tokenStore.getLookups());
+        assertTrue(tokenStore.getAverageLookupNanos() > 0);
+        assertTrue(tokenStore.getMaxLookupNanos() > 0);
+    }
+
+    @Test
+    void testConcurrentAccess() throws Exception {
+        TokenStore store = new TokenStore(Duration.ofMinutes(60), Duration.ofMinutes(10), 1000, System::nanoTime);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String token = "user" + thread + "-" + (i % 50);
+                        store.put(token, new User(token, "pw"));
+                        assertNotNull(store.get(token));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            assertEquals(400, store.getLiveSessions());
+        } finally {
+            pool.shutdownNow();
+            store.close();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import persistence.IUserRepository;
+import persistence.RowSink;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,6 +38,8 @@ class UserServiceTest {
         // createUser() to simulate creating a new user and profile in the database
         when(userRepository.createUser(any())).thenAnswer(invocation -> {
             User user = invocation.getArgument(0);
+            // the unique constraint on the username
+            if (mockDb.containsKey(user.getUsername())) return false;
             int id = mockDb.size() + 1;
             user.setUserid(id);
             mockDb.put(user.getUsername(), user);
@@ -89,6 +92,7 @@ class UserServiceTest {
 
         boolean duplicate = userService.registerUser("testuser", "password123");
         assertFalse(duplicate, "Doppelte Registrierung sollte fehlschlagen");
+        verify(userRepository, never()).getAllUsers();
     }
 
     @Test
@@ -203,6 +207,23 @@ class UserServiceTest {
         assertNull(favorites, "Favorites-Abfrage ohne User sollte null zurückgeben");
     }
 
+    @Test
+    void testStreamFavorites() throws Exception {
+        userService.registerUser("streamuser", "pw");
+        User user = userService.getUserByUsername("streamuser");
+        MediaEntry favorite = new MediaEntry();
+        doAnswer(invocation -> {
+            RowSink<MediaEntry> sink = invocation.getArgument(1);
+            sink.accept(favorite);
+            return null;
+        }).when(userRepository).streamFavorites(eq(user.getUserid()), any());
+
+        List<MediaEntry> favorites = new ArrayList<>();
+        userService.streamFavorites(user.getUserid(), user).forEach(favorites::add);
+        assertEquals(List.of(favorite), favorites, "Favoriten sollten aus dem Repository gestreamt werden");
+        assertNull(userService.streamFavorites(1, null), "Favorites-Stream ohne User sollte null zurückgeben");
+    }
+
     @Test
     void testDuplicateTokenHandling() {
         userService.registerUser("duplicateuser", "pw1");